@@ -0,0 +1,198 @@
+package com.eternitywall.ots.benchmarks;
+
+import com.eternitywall.ots.Calendar;
+import com.eternitywall.ots.LocalCalendar;
+import com.eternitywall.ots.Timestamp;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Load test of the calendar client against a {@link LocalCalendar}: concurrent clients submit digests, the calendar
+ * confirms them all in one block, and the clients fetch the upgraded timestamps. Throughput and latency percentiles
+ * of both phases are printed.
+ * <p>
+ * Run with {@code java -cp target/benchmarks.jar com.eternitywall.ots.benchmarks.CalendarLoad [name=value ...]},
+ * where the names are clients, requests (per client), latency (milliseconds added by the calendar), failures (the
+ * share of calls the calendar fails) and threads (of the calendar).
+ */
+public class CalendarLoad {
+
+    private int clients = 16;
+    private int requests = 1000;
+    private long latency = 0;
+    private double failures = 0;
+    private int threads = 16;
+
+    public static void main(String[] args) throws Exception {
+        // Without it, small answers wait for delayed acknowledgements and every call takes some 40 ms
+        if (System.getProperty("sun.net.httpserver.nodelay") == null) {
+            System.setProperty("sun.net.httpserver.nodelay", "true");
+        }
+
+        CalendarLoad load = new CalendarLoad();
+
+        for (String arg : args) {
+            String[] pair = arg.split("=", 2);
+
+            if (pair.length != 2) {
+                throw new IllegalArgumentException("Expected name=value, got " + arg);
+            }
+
+            switch (pair[0]) {
+                case "clients":
+                    load.clients = Integer.parseInt(pair[1]);
+                    break;
+                case "requests":
+                    load.requests = Integer.parseInt(pair[1]);
+                    break;
+                case "latency":
+                    load.latency = Long.parseLong(pair[1]);
+                    break;
+                case "failures":
+                    load.failures = Double.parseDouble(pair[1]);
+                    break;
+                case "threads":
+                    load.threads = Integer.parseInt(pair[1]);
+                    break;
+                default:
+                    throw new IllegalArgumentException("Unknown parameter " + pair[0]);
+            }
+        }
+
+        load.run();
+    }
+
+    private void run() throws Exception {
+        try (LocalCalendar calendar = new LocalCalendar(this.threads)) {
+            calendar.setLatency(this.latency);
+            calendar.setFailureRate(this.failures);
+            final String url = calendar.getUrl();
+            ExecutorService executor = Executors.newFixedThreadPool(this.clients);
+
+            try {
+                // Submit phase
+                List<Future<Phase>> submits = new ArrayList<>();
+                long start = System.nanoTime();
+
+                for (int c = 0; c < this.clients; c++) {
+                    final int client = c;
+
+                    submits.add(executor.submit(new Callable<Phase>() {
+                        @Override
+                        public Phase call() {
+                            Calendar calendar = new Calendar(url);
+                            Phase phase = new Phase();
+
+                            for (int i = 0; i < requests; i++) {
+                                byte[] digest = ByteBuffer.allocate(32).putInt(client).putInt(i).array();
+                                long begin = System.nanoTime();
+
+                                try {
+                                    Timestamp timestamp = calendar.submit(digest);
+                                    phase.latencies.add(System.nanoTime() - begin);
+                                    phase.commitments.add(timestamp.directlyVerified().get(0).msg);
+                                } catch (Exception e) {
+                                    phase.failed++;
+                                }
+                            }
+
+                            return phase;
+                        }
+                    }));
+                }
+
+                Phase submitted = Phase.join(submits);
+                report("submit", submitted, System.nanoTime() - start);
+
+                start = System.nanoTime();
+                int confirmed = calendar.confirm();
+                System.out.println(String.format(Locale.ROOT, "confirm: %d commitments in %.1f ms", confirmed, (System.nanoTime() - start) / 1e6));
+
+                // Upgrade phase, every client fetching the commitments it submitted
+                List<Future<Phase>> upgrades = new ArrayList<>();
+                start = System.nanoTime();
+
+                for (final Future<Phase> future : submits) {
+                    final List<byte[]> commitments = future.get().commitments;
+
+                    upgrades.add(executor.submit(new Callable<Phase>() {
+                        @Override
+                        public Phase call() {
+                            Calendar calendar = new Calendar(url);
+                            Phase phase = new Phase();
+
+                            for (byte[] commitment : commitments) {
+                                long begin = System.nanoTime();
+
+                                try {
+                                    calendar.getTimestamp(commitment);
+                                    phase.latencies.add(System.nanoTime() - begin);
+                                } catch (Exception e) {
+                                    phase.failed++;
+                                }
+                            }
+
+                            return phase;
+                        }
+                    }));
+                }
+
+                report("upgrade", Phase.join(upgrades), System.nanoTime() - start);
+            } finally {
+                executor.shutdownNow();
+            }
+        }
+    }
+
+    private static void report(String name, Phase phase, long nanos) {
+        long[] latencies = new long[phase.latencies.size()];
+
+        for (int i = 0; i < latencies.length; i++) {
+            latencies[i] = phase.latencies.get(i);
+        }
+
+        Arrays.sort(latencies);
+        double seconds = nanos / 1e9;
+
+        System.out.println(String.format(Locale.ROOT, "%s: %d ok, %d failed in %.2f s (%.0f/s), latency p50 %.2f ms, p95 %.2f ms, p99 %.2f ms, max %.2f ms",
+                name, latencies.length, phase.failed, seconds, latencies.length / seconds,
+                percentile(latencies, 0.50), percentile(latencies, 0.95), percentile(latencies, 0.99), percentile(latencies, 1)));
+    }
+
+    private static double percentile(long[] sorted, double p) {
+        if (sorted.length == 0) {
+            return 0;
+        }
+
+        int index = (int) Math.ceil(p * sorted.length) - 1;
+
+        return sorted[Math.max(0, index)] / 1e6;
+    }
+
+    private static class Phase {
+        final List<Long> latencies = new ArrayList<>();
+        final List<byte[]> commitments = new ArrayList<>();
+        int failed;
+
+        static Phase join(List<Future<Phase>> futures) throws Exception {
+            Phase total = new Phase();
+
+            for (Future<Phase> future : futures) {
+                Phase phase = future.get();
+                total.latencies.addAll(phase.latencies);
+                total.commitments.addAll(phase.commitments);
+                total.failed += phase.failed;
+            }
+
+            return total;
+        }
+    }
+}
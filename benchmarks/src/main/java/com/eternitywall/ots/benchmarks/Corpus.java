@@ -0,0 +1,118 @@
+package com.eternitywall.ots.benchmarks;
+
+import com.eternitywall.ots.DetachedTimestampFile;
+import com.eternitywall.ots.Timestamp;
+import com.eternitywall.ots.op.Op;
+import com.eternitywall.ots.op.OpAppend;
+import com.eternitywall.ots.op.OpSHA256;
+
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.List;
+
+/**
+ * The detached timestamp files of the examples directory, used as a realistic proof corpus.
+ */
+class Corpus {
+
+    /**
+     * Read every .ots file of a directory, in name order.
+     *
+     * @param directory The examples directory, relative to where the benchmarks run.
+     * @return The contents of the files.
+     * @throws IOException if the directory holds no .ots file or one can't be read.
+     */
+    static List<byte[]> read(String directory) throws IOException {
+        File[] files = new File(directory).listFiles(new FilenameFilter() {
+            @Override
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".ots");
+            }
+        });
+
+        if (files == null || files.length == 0) {
+            throw new IOException("No .ots files in " + new File(directory).getAbsolutePath());
+        }
+
+        Arrays.sort(files);
+        List<byte[]> proofs = new ArrayList<>();
+
+        for (File file : files) {
+            proofs.add(Files.readAllBytes(file.toPath()));
+        }
+
+        return proofs;
+    }
+
+    /**
+     * Deserialize the timestamps of the proofs.
+     *
+     * @param files The contents of .ots files.
+     * @return Their timestamps.
+     */
+    static List<Timestamp> timestamps(List<byte[]> files) {
+        List<Timestamp> timestamps = new ArrayList<>();
+
+        for (byte[] file : files) {
+            timestamps.add(DetachedTimestampFile.deserialize(file).getTimestamp());
+        }
+
+        return timestamps;
+    }
+
+    /**
+     * Build merged receipts out of the proofs: the digest of each forks into several paths, each with a nonce of its
+     * own appended and hashed, then followed by the whole proof again, as when the answers of several calendars are
+     * merged into one timestamp.
+     *
+     * @param files The contents of .ots files.
+     * @param ways  The number of paths each digest forks into.
+     * @return The merged timestamps.
+     * @throws Exception if a proof can't be merged.
+     */
+    static List<Timestamp> merged(List<byte[]> files, int ways) throws Exception {
+        List<Timestamp> merged = new ArrayList<>();
+
+        for (Timestamp proof : timestamps(files)) {
+            byte[] serialized = proof.serialize();
+            Timestamp root = new Timestamp(proof.msg);
+
+            for (int i = 0; i < ways; i++) {
+                Timestamp path = root.add(new OpAppend(new byte[]{(byte) i})).add(new OpSHA256());
+                path.merge(Timestamp.deserialize(serialized, path.msg));
+            }
+
+            merged.add(root);
+        }
+
+        return merged;
+    }
+
+    /**
+     * Replace the ops of every node by a default HashMap, as timestamps held them before OpMap.
+     *
+     * @param timestamp The root of the timestamp.
+     */
+    static void useHashMaps(Timestamp timestamp) {
+        Deque<Timestamp> stack = new ArrayDeque<>();
+        stack.push(timestamp);
+
+        while (!stack.isEmpty()) {
+            Timestamp node = stack.pop();
+            HashMap<Op, Timestamp> ops = new HashMap<>();
+            ops.putAll(node.ops);
+            node.ops = ops;
+
+            for (Timestamp child : ops.values()) {
+                stack.push(child);
+            }
+        }
+    }
+}
@@ -0,0 +1,97 @@
+package com.eternitywall.ots.benchmarks;
+
+import com.eternitywall.ots.DigestLongMap;
+import com.eternitywall.ots.DigestValue;
+import com.eternitywall.ots.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.HashMap;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Looking up commitments among many, from digest bytes as they come off the wire: through a HashMap keyed by hex, a
+ * HashMap keyed by {@link DigestValue}, and a {@link DigestLongMap}. The heap each takes is best seen with
+ * {@code -prof gc} or a heap histogram of the forked VM.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(value = 1, jvmArgsAppend = "-Xmx8g")
+@State(Scope.Thread)
+public class DigestMapBenchmark {
+
+    @Param({"1000000", "10000000"})
+    public int entries;
+
+    @Param({"hex", "value", "primitive"})
+    public String map;
+
+    private Map<String, Long> hexMap;
+    private Map<DigestValue, Long> valueMap;
+    private DigestLongMap primitiveMap;
+    private byte[][] queries;
+    private int next;
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        this.queries = new byte[1 << 16][];
+
+        switch (this.map) {
+            case "hex":
+                this.hexMap = new HashMap<>();
+                break;
+            case "value":
+                this.valueMap = new HashMap<>();
+                break;
+            case "primitive":
+                this.primitiveMap = new DigestLongMap();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown map " + this.map);
+        }
+
+        for (int i = 0; i < this.entries; i++) {
+            byte[] digest = new byte[32];
+            random.nextBytes(digest);
+
+            if (i < this.queries.length) {
+                this.queries[i] = digest;
+            }
+
+            if (this.hexMap != null) {
+                this.hexMap.put(Utils.bytesToHex(digest).toLowerCase(), (long) i);
+            } else if (this.valueMap != null) {
+                this.valueMap.put(DigestValue.of(digest), (long) i);
+            } else {
+                this.primitiveMap.put(DigestValue.of(digest), i);
+            }
+        }
+    }
+
+    @Benchmark
+    public long get() {
+        byte[] digest = this.queries[this.next++ & (this.queries.length - 1)];
+
+        if (this.hexMap != null) {
+            return this.hexMap.get(Utils.bytesToHex(digest).toLowerCase());
+        } else if (this.valueMap != null) {
+            return this.valueMap.get(DigestValue.of(digest));
+        } else {
+            return this.primitiveMap.get(digest, -1);
+        }
+    }
+}
@@ -0,0 +1,102 @@
+package com.eternitywall.ots.benchmarks;
+
+import com.eternitywall.ots.crypto.Digest;
+import com.eternitywall.ots.crypto.KeccakDigest;
+import com.eternitywall.ots.crypto.RIPEMD160Digest;
+import com.eternitywall.ots.op.OpCrypto;
+import com.eternitywall.ots.op.OpKECCAK256;
+import com.eternitywall.ots.op.OpRIPEMD160;
+import com.eternitywall.ots.op.OpSHA1;
+import com.eternitywall.ots.op.OpSHA256;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.DigestException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The hash ops on in-memory messages, from the 32 byte digests of a proof path up to file-sized buffers, and the
+ * digests behind them on their own: the JDK's MessageDigest for SHA1 and SHA256, the pure Java ones for RIPEMD160
+ * and KECCAK256.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HashBenchmark {
+
+    @Param({"sha1", "sha256", "ripemd160", "keccak256"})
+    public String algorithm;
+
+    @Param({"32", "64", "1024", "1048576"})
+    public int size;
+
+    private OpCrypto op;
+    private Digest digest;
+    private MessageDigest messageDigest;
+    private byte[] msg;
+    private byte[] out;
+
+    @Setup
+    public void setup() throws NoSuchAlgorithmException {
+        switch (this.algorithm) {
+            case "sha1":
+                this.op = new OpSHA1();
+                this.messageDigest = MessageDigest.getInstance(this.op._HASHLIB_NAME());
+                break;
+            case "sha256":
+                this.op = new OpSHA256();
+                this.messageDigest = MessageDigest.getInstance(this.op._HASHLIB_NAME());
+                break;
+            case "ripemd160":
+                this.op = new OpRIPEMD160();
+                this.digest = new RIPEMD160Digest();
+                break;
+            case "keccak256":
+                this.op = new OpKECCAK256();
+                this.digest = new KeccakDigest(256);
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown algorithm " + this.algorithm);
+        }
+
+        this.msg = new byte[this.size];
+        new Random(42).nextBytes(this.msg);
+        this.out = new byte[this.op._DIGEST_LENGTH()];
+    }
+
+    @Benchmark
+    public byte[] op() {
+        return this.op.call(this.msg);
+    }
+
+    /**
+     * The bare digest, reused across calls, without the op's per-call setup.
+     */
+    @Benchmark
+    public byte[] digest() throws DigestException {
+        if (this.messageDigest != null) {
+            this.messageDigest.update(this.msg, 0, this.msg.length);
+            this.messageDigest.digest(this.out, 0, this.out.length);
+        } else {
+            this.digest.update(this.msg, 0, this.msg.length);
+            this.digest.doFinal(this.out, 0);
+        }
+
+        return this.out;
+    }
+}
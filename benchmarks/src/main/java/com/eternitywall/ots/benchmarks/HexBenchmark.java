@@ -0,0 +1,91 @@
+package com.eternitywall.ots.benchmarks;
+
+import com.eternitywall.ots.Base64Coder;
+import com.eternitywall.ots.Hex;
+import com.eternitywall.ots.Utils;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hex encoding and decoding, as done for every digest shown by info and for every calendar and explorer request:
+ * through the Utils methods kept for compatibility, through {@link Hex} into preallocated arrays, and Base64 as used
+ * for the authentication of bitcoind requests.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class HexBenchmark {
+
+    @Param({"32", "4096"})
+    public int size;
+
+    private byte[] bytes;
+    private String hex;
+    private char[] chars;
+    private byte[] decoded;
+    private char[] base64;
+
+    @Setup
+    public void setup() {
+        this.bytes = new byte[this.size];
+        new Random(42).nextBytes(this.bytes);
+        this.hex = Utils.bytesToHex(this.bytes);
+        this.chars = new char[this.size * 2];
+        this.decoded = new byte[this.size];
+        this.base64 = Base64Coder.encode(this.bytes);
+    }
+
+    @Benchmark
+    public String bytesToHex() {
+        return Utils.bytesToHex(this.bytes);
+    }
+
+    @Benchmark
+    public byte[] hexToBytes() {
+        return Utils.hexToBytes(this.hex);
+    }
+
+    @Benchmark
+    public String encode() {
+        return Hex.encode(this.bytes);
+    }
+
+    @Benchmark
+    public char[] encodeInto() {
+        Hex.encode(this.bytes, 0, this.bytes.length, this.chars, 0, false);
+
+        return this.chars;
+    }
+
+    @Benchmark
+    public byte[] decodeInto() {
+        Hex.decode(this.hex, 0, this.hex.length(), this.decoded, 0);
+
+        return this.decoded;
+    }
+
+    @Benchmark
+    public char[] base64Encode() {
+        return Base64Coder.encode(this.bytes);
+    }
+
+    @Benchmark
+    public byte[] base64Decode() {
+        return Base64Coder.decode(this.base64);
+    }
+}
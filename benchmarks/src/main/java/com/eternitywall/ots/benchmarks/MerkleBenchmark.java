@@ -0,0 +1,69 @@
+package com.eternitywall.ots.benchmarks;
+
+import com.eternitywall.ots.Merkle;
+import com.eternitywall.ots.MerkleBuilder;
+import com.eternitywall.ots.Timestamp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Building a merkle tree over fresh leaves. Building adds ops to the leaves, so new leaves are made before every
+ * invocation, outside of the measurement; a tree takes long enough for that to cost little next to it.
+ * <p>
+ * The builder hashes node by node through OpSHA256, as does makeMerkleTree unless the VM runs vectorized
+ * {@link com.eternitywall.ots.crypto.SHA256Lanes} faster; the hashing alone is compared by {@link MerkleHashBenchmark}
+ * and {@link SHA256LanesBenchmark}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class MerkleBenchmark {
+
+    @Param({"1000", "100000", "1000000"})
+    public int leaves;
+
+    private List<Timestamp> timestamps;
+
+    @Setup(Level.Invocation)
+    public void setup() {
+        this.timestamps = new ArrayList<>(this.leaves);
+
+        for (int i = 0; i < this.leaves; i++) {
+            this.timestamps.add(new Timestamp(ByteBuffer.allocate(32).putInt(i).array()));
+        }
+    }
+
+    @Benchmark
+    public Timestamp makeMerkleTree() {
+        return Merkle.makeMerkleTree(this.timestamps);
+    }
+
+    @Benchmark
+    public Timestamp merkleBuilder() {
+        MerkleBuilder builder = new MerkleBuilder();
+
+        for (Timestamp timestamp : this.timestamps) {
+            builder.add(timestamp);
+        }
+
+        return builder.build();
+    }
+}
@@ -0,0 +1,85 @@
+package com.eternitywall.ots.benchmarks;
+
+import com.eternitywall.ots.crypto.SHA256Pair;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.nio.ByteBuffer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The hashing alone of a merkle tree, on bare digests without timestamps: every inner node through the JDK's
+ * MessageDigest, then through {@link SHA256Pair}. Which one wins depends on the JDK, run it under the one deployed.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(value = 1, jvmArgsAppend = "-Xmx4g")
+@State(Scope.Thread)
+public class MerkleHashBenchmark {
+
+    @Param({"1000", "1000000"})
+    public int leaves;
+
+    private byte[][] digests;
+    private MessageDigest sha256;
+
+    @Setup
+    public void setup() throws NoSuchAlgorithmException {
+        this.digests = new byte[this.leaves][];
+
+        for (int i = 0; i < this.leaves; i++) {
+            this.digests[i] = ByteBuffer.allocate(32).putInt(i).array();
+        }
+
+        this.sha256 = MessageDigest.getInstance("SHA-256");
+    }
+
+    @Benchmark
+    public byte[] messageDigest() {
+        byte[][] level = this.digests.clone();
+
+        for (int size = level.length; size > 1; size = (size + 1) / 2) {
+            for (int i = 0; i + 1 < size; i += 2) {
+                this.sha256.update(level[i]);
+                this.sha256.update(level[i + 1]);
+                level[i / 2] = this.sha256.digest();
+            }
+
+            if (size % 2 == 1) {
+                level[size / 2] = level[size - 1];
+            }
+        }
+
+        return level[0];
+    }
+
+    @Benchmark
+    public byte[] pair() {
+        byte[][] level = this.digests.clone();
+
+        for (int size = level.length; size > 1; size = (size + 1) / 2) {
+            for (int i = 0; i + 1 < size; i += 2) {
+                level[i / 2] = SHA256Pair.hash(level[i], level[i + 1]);
+            }
+
+            if (size % 2 == 1) {
+                level[size / 2] = level[size - 1];
+            }
+        }
+
+        return level[0];
+    }
+}
@@ -0,0 +1,106 @@
+package com.eternitywall.ots.benchmarks;
+
+import com.eternitywall.ots.Utils;
+import com.eternitywall.ots.crypto.SHA256MidstateCache;
+import com.eternitywall.ots.op.OpPrepend;
+import com.eternitywall.ots.op.OpSHA256;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * A prepend followed by sha256, the step shared by the calendar paths of many proofs, over prefixes reused with ever
+ * different messages: the concatenation then the hash, the two hashed without the concatenation, the op as it runs
+ * by default on this JDK, and the hash resumed from the state of the prefix kept in a {@link SHA256MidstateCache}.
+ * <p>
+ * With 16 prefixes the cache always hits; with 65536, more than its capacity, it always misses. The cache is shared
+ * by all threads, so the 4 thread variant shows the cost of its locks.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class MidstateBenchmark {
+
+    @Param({"32", "64", "128", "256"})
+    public int prefixLength;
+
+    @Param({"16", "65536"})
+    public int prefixes;
+
+    private final OpSHA256 sha256 = new OpSHA256();
+    private OpPrepend[] prepends;
+    private byte[][] msgs;
+    private int next;
+
+    @State(Scope.Benchmark)
+    public static class SharedCache {
+        final SHA256MidstateCache cache = new SHA256MidstateCache(1024);
+    }
+
+    @Setup
+    public void setup() {
+        Random random = new Random(42);
+        this.prepends = new OpPrepend[this.prefixes];
+
+        for (int i = 0; i < this.prefixes; i++) {
+            byte[] prefix = new byte[this.prefixLength];
+            random.nextBytes(prefix);
+            this.prepends[i] = new OpPrepend(prefix);
+        }
+
+        this.msgs = new byte[1024][32];
+
+        for (byte[] msg : this.msgs) {
+            random.nextBytes(msg);
+        }
+    }
+
+    @Benchmark
+    public byte[] concat() {
+        int i = this.next++;
+
+        return this.sha256.call(Utils.arraysConcat(this.prepends[i % this.prefixes].arg, this.msgs[i & 1023]));
+    }
+
+    @Benchmark
+    public byte[] fused() {
+        int i = this.next++;
+
+        return this.sha256.call(this.prepends[i % this.prefixes].arg, this.msgs[i & 1023]);
+    }
+
+    @Benchmark
+    public byte[] op() {
+        int i = this.next++;
+
+        return this.prepends[i % this.prefixes].callThenHash(this.msgs[i & 1023], this.sha256);
+    }
+
+    @Benchmark
+    public byte[] midstate(SharedCache shared) {
+        int i = this.next++;
+
+        return shared.cache.hash(this.prepends[i % this.prefixes].arg, this.msgs[i & 1023]);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public byte[] midstateThreads(SharedCache shared) {
+        return this.midstate(shared);
+    }
+}
@@ -0,0 +1,85 @@
+package com.eternitywall.ots.benchmarks;
+
+import com.eternitywall.ots.Hash;
+import com.eternitywall.ots.MultiHasher;
+import com.eternitywall.ots.op.OpCrypto;
+import com.eternitywall.ots.op.OpKECCAK256;
+import com.eternitywall.ots.op.OpRIPEMD160;
+import com.eternitywall.ots.op.OpSHA1;
+import com.eternitywall.ots.op.OpSHA256;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing a file from disk with all four algorithms, either one after another or in a single pass with
+ * {@link MultiHasher}. The file is written once per trial, so after the first iteration it is served from the page
+ * cache; {@code com.eternitywall.ots.op.FileHashBenchmark} compares the ways of reading it with one algorithm.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class MultiHashBenchmark {
+
+    @Param({"1048576", "268435456"})
+    public long size;
+
+    private File file;
+    private final OpCrypto[] all = {new OpSHA1(), new OpSHA256(), new OpRIPEMD160(), new OpKECCAK256()};
+
+    @Setup
+    public void setup() throws IOException {
+        this.file = File.createTempFile("otjava-benchmark", ".bin");
+        byte[] chunk = new byte[1048576];
+        Random random = new Random(42);
+
+        try (OutputStream out = new FileOutputStream(this.file)) {
+            for (long written = 0; written < this.size; written += chunk.length) {
+                random.nextBytes(chunk);
+                out.write(chunk, 0, (int) Math.min(chunk.length, this.size - written));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.file.delete();
+    }
+
+    @Benchmark
+    public void allSeparately(Blackhole blackhole) throws IOException, NoSuchAlgorithmException {
+        for (OpCrypto op : this.all) {
+            blackhole.consume(op.hashFd(this.file));
+        }
+    }
+
+    @Benchmark
+    public List<Hash> allSinglePass() throws IOException, NoSuchAlgorithmException {
+        MultiHasher hasher = new MultiHasher(OpSHA1._TAG, OpSHA256._TAG, OpRIPEMD160._TAG, OpKECCAK256._TAG);
+        hasher.setThreaded(true);
+
+        return hasher.hash(this.file);
+    }
+}
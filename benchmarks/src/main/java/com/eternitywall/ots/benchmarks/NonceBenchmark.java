@@ -0,0 +1,69 @@
+package com.eternitywall.ots.benchmarks;
+
+import com.eternitywall.ots.NonceProvider;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.security.SecureRandom;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The nonces of a batch of merkle leaves, in leaves per second: a new SecureRandom for every leaf as done before
+ * {@link NonceProvider}, the shared random provider, and the deterministic one. Run with {@code -t 4} for the
+ * contention of several threads stamping at once.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@Threads(1)
+@State(Scope.Thread)
+public class NonceBenchmark {
+
+    private static final int LEAVES = 1000;
+
+    private NonceProvider deterministic;
+
+    @Setup
+    public void setup() {
+        this.deterministic = NonceProvider.deterministic(new byte[32]);
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LEAVES)
+    public void secureRandomPerLeaf(Blackhole blackhole) {
+        for (int i = 0; i < LEAVES; i++) {
+            byte[] nonce = new byte[NonceProvider.NONCE_LENGTH];
+            new SecureRandom().nextBytes(nonce);
+            blackhole.consume(nonce);
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LEAVES)
+    public void random(Blackhole blackhole) {
+        for (int i = 0; i < LEAVES; i++) {
+            blackhole.consume(NonceProvider.random().nonce(i));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(LEAVES)
+    public void deterministic(Blackhole blackhole) {
+        for (int i = 0; i < LEAVES; i++) {
+            blackhole.consume(this.deterministic.nonce(i));
+        }
+    }
+}
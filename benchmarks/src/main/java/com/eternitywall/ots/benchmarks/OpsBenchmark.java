@@ -0,0 +1,73 @@
+package com.eternitywall.ots.benchmarks;
+
+import com.eternitywall.ots.Timestamp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * The walks that need the ops of every node in canonical order, serialize and equals, over timestamps whose nodes
+ * hold their ops in an OpMap or in the default HashMap used before it, which is sorted on every walk. The corpus is
+ * either the proofs of the examples directory or merged receipts built from them (see {@link Corpus#merged}). Each
+ * invocation walks the whole corpus; the memory they hold is measured by {@link OpsFootprint}.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class OpsBenchmark {
+
+    @Param("../examples")
+    public String examples;
+
+    @Param({"opMap", "hashMap"})
+    public String ops;
+
+    @Param({"examples", "merged"})
+    public String corpus;
+
+    private List<Timestamp> timestamps;
+    private List<Timestamp> copies;
+
+    @Setup
+    public void setup() throws Exception {
+        List<byte[]> files = Corpus.read(this.examples);
+        this.timestamps = this.corpus.equals("merged") ? Corpus.merged(files, 4) : Corpus.timestamps(files);
+        this.copies = this.corpus.equals("merged") ? Corpus.merged(files, 4) : Corpus.timestamps(files);
+
+        if (this.ops.equals("hashMap")) {
+            for (int i = 0; i < this.timestamps.size(); i++) {
+                Corpus.useHashMaps(this.timestamps.get(i));
+                Corpus.useHashMaps(this.copies.get(i));
+            }
+        }
+    }
+
+    @Benchmark
+    public void serialize(Blackhole blackhole) {
+        for (Timestamp timestamp : this.timestamps) {
+            blackhole.consume(timestamp.serialize());
+        }
+    }
+
+    @Benchmark
+    public void equals(Blackhole blackhole) {
+        for (int i = 0; i < this.timestamps.size(); i++) {
+            blackhole.consume(this.timestamps.get(i).equals(this.copies.get(i)));
+        }
+    }
+}
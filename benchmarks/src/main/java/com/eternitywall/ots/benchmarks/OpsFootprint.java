@@ -0,0 +1,69 @@
+package com.eternitywall.ots.benchmarks;
+
+import com.eternitywall.ots.Timestamp;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+
+/**
+ * Heap held by deserialized proofs, with the ops of their nodes in the OpMap a timestamp starts with and in the
+ * default HashMap used before it, over the proofs of the examples directory and over merged receipts built from
+ * them (see {@link Corpus#merged}). Many copies are held at once and the heap is measured after collecting garbage,
+ * so the figures are bytes per proof retained, messages and attestations included.
+ * <p>
+ * Run with {@code java -cp target/benchmarks.jar com.eternitywall.ots.benchmarks.OpsFootprint [examples [copies]]}
+ * from the benchmarks directory; the throughput of the same cases is measured by {@link OpsBenchmark}.
+ */
+public class OpsFootprint {
+
+    public static void main(String[] args) throws Exception {
+        String examples = args.length > 0 ? args[0] : "../examples";
+        int copies = args.length > 1 ? Integer.parseInt(args[1]) : 2000;
+        List<byte[]> files = Corpus.read(examples);
+
+        for (String corpus : new String[]{"examples", "merged"}) {
+            long opMap = footprint(files, corpus, false, copies);
+            long hashMap = footprint(files, corpus, true, copies);
+            System.out.println(String.format(Locale.ROOT, "%-8s OpMap %7d bytes/proof, HashMap %7d bytes/proof, %.0f%% less",
+                corpus, opMap, hashMap, 100.0 * (hashMap - opMap) / hashMap));
+        }
+    }
+
+    private static long footprint(List<byte[]> files, String corpus, boolean hashMaps, int copies) throws Exception {
+        long before = usedHeap();
+        List<Timestamp> held = new ArrayList<>(copies * files.size());
+
+        for (int i = 0; i < copies; i++) {
+            List<Timestamp> timestamps = corpus.equals("merged") ? Corpus.merged(files, 4) : Corpus.timestamps(files);
+
+            for (Timestamp timestamp : timestamps) {
+                if (hashMaps) {
+                    Corpus.useHashMaps(timestamp);
+                }
+
+                held.add(timestamp);
+            }
+        }
+
+        long after = usedHeap();
+
+        // Keeps the proofs reachable until measured
+        if (held.isEmpty()) {
+            throw new IllegalStateException("No proofs");
+        }
+
+        return (after - before) / held.size();
+    }
+
+    private static long usedHeap() throws InterruptedException {
+        Runtime runtime = Runtime.getRuntime();
+
+        for (int i = 0; i < 5; i++) {
+            System.gc();
+            Thread.sleep(50);
+        }
+
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,80 @@
+package com.eternitywall.ots.benchmarks;
+
+import com.eternitywall.ots.crypto.SHA256Lanes;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashes per second of a level of 64 byte merkle nodes: one at a time through the JDK's MessageDigest, in scalar
+ * {@link SHA256Lanes}, and in the lanes of {@link SHA256Lanes#newInstance()}, which are vectorized on Java 16 and
+ * later when the VM is started with {@code --add-modules jdk.incubator.vector}. Pass it with
+ * {@code -jvmArgsAppend "--add-modules jdk.incubator.vector"}, and {@code -XX:-UseSHA} as well to compare with a VM
+ * that has no SHA-256 intrinsic, which is where {@code Merkle} hashes with lanes.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class SHA256LanesBenchmark {
+
+    private static final int NODES = 1024;
+
+    private final byte[][] nodes = new byte[NODES][64];
+    private final byte[][] out = new byte[NODES][];
+    private final SHA256Lanes scalar = new SHA256Lanes();
+    private final SHA256Lanes lanes = SHA256Lanes.newInstance();
+    private MessageDigest sha256;
+
+    @Setup
+    public void setup() throws NoSuchAlgorithmException {
+        Random random = new Random(42);
+
+        for (byte[] node : this.nodes) {
+            random.nextBytes(node);
+        }
+
+        this.sha256 = MessageDigest.getInstance("SHA-256");
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NODES)
+    public byte[][] messageDigest() {
+        for (int i = 0; i < NODES; i++) {
+            this.out[i] = this.sha256.digest(this.nodes[i]);
+        }
+
+        return this.out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NODES)
+    public byte[][] scalarLanes() {
+        this.scalar.hash(this.nodes, 0, NODES, this.out);
+
+        return this.out;
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(NODES)
+    public byte[][] lanes() {
+        this.lanes.hash(this.nodes, 0, NODES, this.out);
+
+        return this.out;
+    }
+}
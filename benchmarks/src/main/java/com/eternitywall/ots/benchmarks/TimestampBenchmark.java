@@ -0,0 +1,92 @@
+package com.eternitywall.ots.benchmarks;
+
+import com.eternitywall.ots.DetachedTimestampFile;
+import com.eternitywall.ots.Timestamp;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Serialization, deserialization and merging of the proofs of the examples directory. Each invocation processes
+ * the whole corpus.
+ */
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 5, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+@State(Scope.Thread)
+public class TimestampBenchmark {
+
+    @Param("../examples")
+    public String examples;
+
+    private List<byte[]> files;
+    private List<byte[]> serialized;
+    private List<byte[]> digests;
+    private List<Timestamp> timestamps;
+
+    @Setup
+    public void setup() throws IOException {
+        this.files = Corpus.read(this.examples);
+        this.serialized = new ArrayList<>();
+        this.digests = new ArrayList<>();
+        this.timestamps = new ArrayList<>();
+
+        for (byte[] file : this.files) {
+            Timestamp timestamp = DetachedTimestampFile.deserialize(file).getTimestamp();
+            this.serialized.add(timestamp.serialize());
+            this.digests.add(timestamp.msg);
+            this.timestamps.add(timestamp);
+        }
+    }
+
+    @Benchmark
+    public void deserialize(Blackhole blackhole) {
+        for (int i = 0; i < this.serialized.size(); i++) {
+            blackhole.consume(Timestamp.deserialize(this.serialized.get(i), this.digests.get(i)));
+        }
+    }
+
+    @Benchmark
+    public void serialize(Blackhole blackhole) {
+        for (Timestamp timestamp : this.timestamps) {
+            blackhole.consume(timestamp.serialize());
+        }
+    }
+
+    /**
+     * Merge every proof into a freshly deserialized copy of itself, as an upgrade merges what a calendar returns into
+     * the proof it just read. Merging appends the attestations of the other side, so the target can't be reused
+     * across invocations; the time of {@link #deserialize} is part of this one.
+     */
+    @Benchmark
+    public void deserializeAndMerge(Blackhole blackhole) throws Exception {
+        for (int i = 0; i < this.serialized.size(); i++) {
+            Timestamp target = Timestamp.deserialize(this.serialized.get(i), this.digests.get(i));
+            target.merge(this.timestamps.get(i));
+            blackhole.consume(target);
+        }
+    }
+
+    @Benchmark
+    public void detachedRoundTrip(Blackhole blackhole) {
+        for (byte[] file : this.files) {
+            blackhole.consume(DetachedTimestampFile.deserialize(file).serialize());
+        }
+    }
+}
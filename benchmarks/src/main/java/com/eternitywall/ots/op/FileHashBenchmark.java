@@ -0,0 +1,121 @@
+package com.eternitywall.ots.op;
+
+import org.openjdk.jmh.annotations.AuxCounters;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Hashing a file from disk with one algorithm: through a FileInputStream into a heap array, as hashFd(File) used to,
+ * and through the buffered and the memory-mapped FileChannel paths of {@link OpCrypto#hashFd(File)}, which picks
+ * between the two by size. It sits in the package of OpCrypto to force either path. Besides files per second, the
+ * {@code bytes} counter reports the throughput in bytes per second. The file is written once per trial, so after the
+ * first iteration it is served from the page cache.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3)
+@Measurement(iterations = 5)
+@Fork(1)
+@State(Scope.Thread)
+public class FileHashBenchmark {
+
+    // The region hashFd(File) maps at a time, larger than the files hashed here
+    private static final int MAP_REGION_SIZE = 256 * 1024 * 1024;
+
+    @Param({"sha1", "sha256", "ripemd160"})
+    public String algorithm;
+
+    @Param({"1048576", "268435456"})
+    public long size;
+
+    private File file;
+    private OpCrypto op;
+
+    /**
+     * The bytes hashed in each iteration, which JMH reports per second.
+     */
+    @AuxCounters(AuxCounters.Type.OPERATIONS)
+    @State(Scope.Thread)
+    public static class Bytes {
+        public long bytes;
+
+        @Setup(Level.Iteration)
+        public void reset() {
+            this.bytes = 0;
+        }
+    }
+
+    @Setup
+    public void setup() throws IOException {
+        switch (this.algorithm) {
+            case "sha1":
+                this.op = new OpSHA1();
+                break;
+            case "sha256":
+                this.op = new OpSHA256();
+                break;
+            case "ripemd160":
+                this.op = new OpRIPEMD160();
+                break;
+            default:
+                throw new IllegalArgumentException("Unknown algorithm " + this.algorithm);
+        }
+
+        this.file = File.createTempFile("otjava-benchmark", ".bin");
+        byte[] chunk = new byte[1048576];
+        Random random = new Random(42);
+
+        try (OutputStream out = new FileOutputStream(this.file)) {
+            for (long written = 0; written < this.size; written += chunk.length) {
+                random.nextBytes(chunk);
+                out.write(chunk, 0, (int) Math.min(chunk.length, this.size - written));
+            }
+        }
+    }
+
+    @TearDown
+    public void tearDown() {
+        this.file.delete();
+    }
+
+    @Benchmark
+    public byte[] stream(Bytes bytes) throws IOException, NoSuchAlgorithmException {
+        bytes.bytes += this.size;
+
+        return this.op.hashFd(new FileInputStream(this.file));
+    }
+
+    @Benchmark
+    public byte[] buffered(Bytes bytes) throws IOException, NoSuchAlgorithmException {
+        bytes.bytes += this.size;
+
+        return this.op.hashFd(this.file, Long.MAX_VALUE, MAP_REGION_SIZE);
+    }
+
+    @Benchmark
+    public byte[] mapped(Bytes bytes) throws IOException, NoSuchAlgorithmException {
+        bytes.bytes += this.size;
+
+        return this.op.hashFd(this.file, 0, MAP_REGION_SIZE);
+    }
+}
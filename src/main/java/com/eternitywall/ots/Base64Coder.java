@@ -117,24 +117,28 @@ public static char[] encode (byte[] in, int iLen) {
 * @return      A character array containing the Base64 encoded data.
 */
 public static char[] encode (byte[] in, int iOff, int iLen) {
-   int oDataLen = (iLen*4+2)/3;       // output length without padding
    int oLen = ((iLen+2)/3)*4;         // output length including padding
    char[] out = new char[oLen];
    int ip = iOff;
    int iEnd = iOff + iLen;
+   int iFull = iOff + iLen - iLen%3;  // end of the whole 3 byte groups
    int op = 0;
-   while (ip < iEnd) {
+   // Whole groups, without the padding checks
+   while (ip < iFull) {
+      int bits = (in[ip] & 0xff) << 16 | (in[ip+1] & 0xff) << 8 | (in[ip+2] & 0xff);
+      ip += 3;
+      out[op++] = map1[bits >>> 18];
+      out[op++] = map1[(bits >>> 12) & 0x3F];
+      out[op++] = map1[(bits >>> 6) & 0x3F];
+      out[op++] = map1[bits & 0x3F]; }
+   // The last 1 or 2 bytes, padded
+   if (ip < iEnd) {
       int i0 = in[ip++] & 0xff;
-      int i1 = ip < iEnd ? in[ip++] & 0xff : 0;
-      int i2 = ip < iEnd ? in[ip++] & 0xff : 0;
-      int o0 = i0 >>> 2;
-      int o1 = ((i0 &   3) << 4) | (i1 >>> 4);
-      int o2 = ((i1 & 0xf) << 2) | (i2 >>> 6);
-      int o3 = i2 & 0x3F;
-      out[op++] = map1[o0];
-      out[op++] = map1[o1];
-      out[op] = op < oDataLen ? map1[o2] : '='; op++;
-      out[op] = op < oDataLen ? map1[o3] : '='; op++; }
+      int i1 = ip < iEnd ? in[ip] & 0xff : 0;
+      out[op++] = map1[i0 >>> 2];
+      out[op++] = map1[((i0 & 3) << 4) | (i1 >>> 4)];
+      out[op++] = iLen%3 == 2 ? map1[(i1 & 0xf) << 2] : '=';
+      out[op] = '='; }
    return out; }
 
 /**
@@ -200,28 +204,33 @@ public static byte[] decode (char[] in, int iOff, int iLen) {
    byte[] out = new byte[oLen];
    int ip = iOff;
    int iEnd = iOff + iLen;
+   int iFull = iOff + iLen - iLen%4;  // end of the whole 4 character groups
    int op = 0;
-   while (ip < iEnd) {
+   // Whole groups, the characters out of range of map2 or not in it show as a negative value
+   while (ip < iFull) {
+      int bits = value(in[ip]) << 18 | value(in[ip+1]) << 12 | value(in[ip+2]) << 6 | value(in[ip+3]);
+      ip += 4;
+      if (bits < 0)
+         throw new IllegalArgumentException("Illegal character in Base64 encoded data.");
+      out[op++] = (byte)(bits >>> 16);
+      out[op++] = (byte)(bits >>> 8);
+      out[op++] = (byte)bits; }
+   // The last 2 or 3 characters, before the padding
+   if (ip < iEnd) {
       int i0 = in[ip++];
-      int i1 = in[ip++];
+      int i1 = ip < iEnd ? in[ip++] : '=';
       int i2 = ip < iEnd ? in[ip++] : 'A';
-      int i3 = ip < iEnd ? in[ip++] : 'A';
-      if (i0 > 127 || i1 > 127 || i2 > 127 || i3 > 127)
-         throw new IllegalArgumentException("Illegal character in Base64 encoded data.");
-      int b0 = map2[i0];
-      int b1 = map2[i1];
-      int b2 = map2[i2];
-      int b3 = map2[i3];
-      if (b0 < 0 || b1 < 0 || b2 < 0 || b3 < 0)
+      int bits = value(i0) << 18 | value(i1) << 12 | value(i2) << 6;
+      if (bits < 0 || i1 == '=')
          throw new IllegalArgumentException("Illegal character in Base64 encoded data.");
-      int o0 = ( b0       <<2) | (b1>>>4);
-      int o1 = ((b1 & 0xf)<<4) | (b2>>>2);
-      int o2 = ((b2 &   3)<<6) |  b3;
-      out[op++] = (byte)o0;
-      if (op<oLen) out[op++] = (byte)o1;
-      if (op<oLen) out[op++] = (byte)o2; }
+      out[op++] = (byte)(bits >>> 16);
+      if (op<oLen) out[op] = (byte)(bits >>> 8); }
    return out; }
 
+// The value of a Base64 character, with the sign bit set if it is none.
+private static int value (int c) {
+   return c < 128 ? map2[c] : -1; }
+
 // Dummy constructor.
 private Base64Coder() {}
 
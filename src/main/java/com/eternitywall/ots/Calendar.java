@@ -64,6 +64,8 @@ public class Calendar {
      */
     public Timestamp submit(byte[] digest) throws UrlException {
         String submitUrl = url + "/digest";
+        Metrics metrics = Metrics.get();
+        Metrics.Span span = metrics.start(Metrics.CALENDAR_SUBMIT, url);
 
         try {
             Map<String, String> headers = new HashMap<>();
@@ -72,7 +74,7 @@ public class Calendar {
             headers.put("Content-Type", "application/x-www-form-urlencoded");
 
             if (key != null) {
-                String signature = key.signMessage(Utils.bytesToHex(digest).toLowerCase());
+                String signature = key.signMessage(Hex.encode(digest));
                 headers.put("x-signature", signature);
             }
 
@@ -80,8 +82,11 @@ public class Calendar {
             Request task = new Request(obj);
             task.setData(digest);
             task.setHeaders(headers);
+            metrics.count(Metrics.BYTES_SENT, url, digest.length);
             Response response = task.call();
+            countStatus(metrics, response);
             byte[] body = response.getBytes();
+            metrics.count(Metrics.BYTES_RECEIVED, url, body.length);
 
             if (body.length > 10000) {
                 throw new ExceededSizeException("Calendar response exceeded size limit 10000 bytes");
@@ -92,6 +97,8 @@ public class Calendar {
             return Timestamp.deserialize(ctx, digest);
         } catch (Exception e) {
             throw new UrlException("Could not submit digest to remote calendar at URL: " + submitUrl, e);
+        } finally {
+            span.end();
         }
     }
 
@@ -103,7 +110,9 @@ public class Calendar {
      * @throws UrlException if url is not reachable.
      */
     public Timestamp getTimestamp(byte[] commitment) throws UrlException {
-        String timestampUrl = url + "/timestamp/" + Utils.bytesToHex(commitment).toLowerCase();
+        String timestampUrl = url + "/timestamp/" + Hex.encode(commitment);
+        Metrics metrics = Metrics.get();
+        Metrics.Span span = metrics.start(Metrics.CALENDAR_UPGRADE, url);
 
         try {
             Map<String, String> headers = new HashMap<>();
@@ -115,7 +124,9 @@ public class Calendar {
             Request task = new Request(obj);
             task.setHeaders(headers);
             Response response = task.call();
+            countStatus(metrics, response);
             byte[] body = response.getBytes();
+            metrics.count(Metrics.BYTES_RECEIVED, url, body.length);
 
             if (body.length > 10000) {
                 throw new ExceededSizeException("Calendar response exceeded size limit 10000 bytes");
@@ -130,6 +141,18 @@ public class Calendar {
             return Timestamp.deserialize(ctx, commitment);
         } catch (Exception e) {
             throw new UrlException("Could not get timestamp from remote calendar at URL: " + timestampUrl, e);
+        } finally {
+            span.end();
         }
     }
+
+    /**
+     * Report the status of a calendar response to the metrics.
+     *
+     * @param metrics  The metrics.
+     * @param response The response.
+     */
+    static void countStatus(Metrics metrics, Response response) {
+        metrics.count(Metrics.HTTP_STATUS, response.getStatus() == null ? "error" : response.getStatus().toString(), 1);
+    }
 }
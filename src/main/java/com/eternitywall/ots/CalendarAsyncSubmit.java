@@ -55,28 +55,38 @@ public class CalendarAsyncSubmit implements Callable<Optional<Timestamp>> {
         headers.put("Content-Type", "application/x-www-form-urlencoded");
 
         if (key != null) {
-            String signature = key.signMessage(Utils.bytesToHex(digest).toLowerCase());
+            String signature = key.signMessage(Hex.encode(digest));
             headers.put("x-signature", signature);
         }
 
-        URL obj = new URL(url + "/digest");
-        Request task = new Request(obj);
-        task.setData(digest);
-        task.setHeaders(headers);
-        Response response = task.call();
+        Metrics metrics = Metrics.get();
+        Metrics.Span span = metrics.start(Metrics.CALENDAR_SUBMIT, url);
 
-        if (response.isOk()) {
-            byte[] body = response.getBytes();
-            StreamDeserializationContext ctx = new StreamDeserializationContext(body);
-            Timestamp timestamp = Timestamp.deserialize(ctx, digest);
-            Optional<Timestamp> of = Optional.of(timestamp);
-            queue.add(of);
+        try {
+            URL obj = new URL(url + "/digest");
+            Request task = new Request(obj);
+            task.setData(digest);
+            task.setHeaders(headers);
+            metrics.count(Metrics.BYTES_SENT, url, digest.length);
+            Response response = task.call();
+            Calendar.countStatus(metrics, response);
 
-            return of;
-        }
+            if (response.isOk()) {
+                byte[] body = response.getBytes();
+                metrics.count(Metrics.BYTES_RECEIVED, url, body.length);
+                StreamDeserializationContext ctx = new StreamDeserializationContext(body);
+                Timestamp timestamp = Timestamp.deserialize(ctx, digest);
+                Optional<Timestamp> of = Optional.of(timestamp);
+                queue.add(of);
+
+                return of;
+            }
 
-        queue.add(Optional.<Timestamp>absent());
+            queue.add(Optional.<Timestamp>absent());
 
-        return Optional.absent();
+            return Optional.absent();
+        } finally {
+            span.end();
+        }
     }
 }
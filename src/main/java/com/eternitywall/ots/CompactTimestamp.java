@@ -0,0 +1,584 @@
+package com.eternitywall.ots;
+
+import com.eternitywall.ots.attestation.BitcoinBlockHeaderAttestation;
+import com.eternitywall.ots.attestation.TimeAttestation;
+import com.eternitywall.ots.op.Op;
+import com.eternitywall.ots.op.OpBinary;
+
+import java.io.IOException;
+import java.util.AbstractMap;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Compact, read-only representation of a {@link Timestamp} tree.
+ * <p>
+ * A Timestamp allocates a list of attestations and a map of ops for every node, which dominates the heap
+ * footprint of a typical proof made of a single path of 30-60 edges. Here the nodes are instead stored in
+ * parallel primitive arrays: node messages share one byte pool, children are linked through index lists,
+ * attestations are grouped per node in one array and each distinct op is stored only once in an op table.
+ * <p>
+ * Children and attestations are kept in canonical (sorted) order, so serialization produces exactly the
+ * same bytes as {@link Timestamp#serialize()} for the equivalent tree.
+ *
+ * @see Timestamp
+ */
+public class CompactTimestamp {
+
+    private static final int NONE = -1;
+
+    private final Op[] opTable;
+    private final byte[] msgPool;
+    private final int[] msgOffsets;          // nodeCount + 1 entries, node i uses [msgOffsets[i], msgOffsets[i + 1])
+    private final int[] opIndex;             // Index into opTable of the op leading to the node, NONE for the root
+    private final int[] firstChild;
+    private final int[] nextSibling;
+    private final TimeAttestation[] attestations;
+    private final int[] attestationOffsets;  // nodeCount + 1 entries, like msgOffsets
+
+    private CompactTimestamp(Builder builder) {
+        int nodeCount = builder.nodeCount;
+
+        this.opTable = builder.opTable.toArray(new Op[builder.opTable.size()]);
+        this.msgPool = Arrays.copyOf(builder.msgPool, builder.msgPoolLength);
+        this.msgOffsets = Arrays.copyOf(builder.msgOffsets, nodeCount + 1);
+        this.opIndex = Arrays.copyOf(builder.opIndex, nodeCount);
+        this.firstChild = Arrays.copyOf(builder.firstChild, nodeCount);
+        this.nextSibling = Arrays.copyOf(builder.nextSibling, nodeCount);
+        this.attestations = new TimeAttestation[builder.attestationCount];
+        this.attestationOffsets = new int[nodeCount + 1];
+
+        // Group the attestations per node (counting sort), then put each group in canonical order
+        for (int i = 0; i < builder.attestationCount; i++) {
+            this.attestationOffsets[builder.attestationNodes[i] + 1]++;
+        }
+
+        for (int node = 0; node < nodeCount; node++) {
+            this.attestationOffsets[node + 1] += this.attestationOffsets[node];
+        }
+
+        int[] cursor = Arrays.copyOf(this.attestationOffsets, nodeCount);
+
+        for (int i = 0; i < builder.attestationCount; i++) {
+            this.attestations[cursor[builder.attestationNodes[i]]++] = builder.attestations[i];
+        }
+
+        for (int node = 0; node < nodeCount; node++) {
+            if (this.attestationOffsets[node + 1] - this.attestationOffsets[node] > 1) {
+                Arrays.sort(this.attestations, this.attestationOffsets[node], this.attestationOffsets[node + 1]);
+            }
+
+            sortChildren(node);
+        }
+    }
+
+    /**
+     * Build the compact representation of a timestamp tree.
+     *
+     * @param timestamp - The timestamp to convert.
+     * @return The compact timestamp.
+     */
+    public static CompactTimestamp from(Timestamp timestamp) {
+        Builder builder = new Builder();
+        List<Timestamp> stamps = new ArrayList<>();
+        List<Integer> parents = new ArrayList<>();
+        List<Op> ops = new ArrayList<>();
+        stamps.add(timestamp);
+        parents.add(NONE);
+        ops.add(null);
+
+        // Depth first, in pre-order, so the nodes of a path end up next to each other
+        while (!stamps.isEmpty()) {
+            int last = stamps.size() - 1;
+            Timestamp stamp = stamps.remove(last);
+            int parent = parents.remove(last);
+            Op op = ops.remove(last);
+            int node = builder.addNode(parent, op, stamp.msg);
+
+            for (TimeAttestation attestation : stamp.attestations) {
+                builder.addAttestation(node, attestation);
+            }
+
+            for (Map.Entry<Op, Timestamp> entry : stamp.sortedOps()) {
+                stamps.add(entry.getValue());
+                parents.add(node);
+                ops.add(entry.getKey());
+            }
+        }
+
+        return new CompactTimestamp(builder);
+    }
+
+    /**
+     * Deserialize a timestamp straight into the compact representation, without building Timestamp objects.
+     *
+     * @param ots        - The serialized byte array.
+     * @param initialMsg - The initial message.
+     * @return The deserialized compact timestamp.
+     * @see Timestamp#deserialize(byte[], byte[])
+     */
+    public static CompactTimestamp deserialize(byte[] ots, byte[] initialMsg) {
+        return deserialize(new StreamDeserializationContext(ots), initialMsg);
+    }
+
+    /**
+     * Deserialize a timestamp straight into the compact representation, without building Timestamp objects.
+     *
+     * @param ctx        - The stream deserialization context.
+     * @param initialMsg - The initial message.
+     * @return The deserialized compact timestamp.
+     * @see Timestamp#deserialize(StreamDeserializationContext, byte[])
+     */
+    public static CompactTimestamp deserialize(StreamDeserializationContext ctx, byte[] initialMsg) {
+        Builder builder = new Builder();
+        int[] nodes = new int[16];
+        byte[][] msgs = new byte[16][];
+        boolean[] done = new boolean[16];
+        int depth = 0;
+
+        nodes[0] = builder.addNode(NONE, null, initialMsg);
+        msgs[0] = initialMsg;
+        depth++;
+
+        while (depth > 0) {
+            int top = depth - 1;
+
+            if (done[top]) {
+                msgs[top] = null;
+                depth--;
+                continue;
+            }
+
+            byte tag = ctx.readBytes(1)[0];
+
+            if ((tag & 0xff) == 0xff) {
+                tag = ctx.readBytes(1)[0];
+            } else {
+                done[top] = true;   // The last item of this node
+            }
+
+            if ((tag & 0xff) == 0x00) {
+                builder.addAttestation(nodes[top], TimeAttestation.deserialize(ctx));
+            } else {
+                Op op = Op.deserializeFromTag(ctx, tag);
+                byte[] result = op.call(msgs[top]);
+
+                if (depth == nodes.length) {
+                    nodes = Arrays.copyOf(nodes, depth * 2);
+                    msgs = Arrays.copyOf(msgs, depth * 2);
+                    done = Arrays.copyOf(done, depth * 2);
+                }
+
+                nodes[depth] = builder.addNode(nodes[top], op, result);
+                msgs[depth] = result;
+                done[depth] = false;
+                depth++;
+            }
+        }
+
+        return new CompactTimestamp(builder);
+    }
+
+    /**
+     * Convert back to a regular, mutable timestamp tree.
+     *
+     * @return The equivalent Timestamp.
+     */
+    public Timestamp toTimestamp() {
+        Timestamp[] stamps = new Timestamp[this.size()];
+
+        for (int node = this.size() - 1; node >= 0; node--) {
+            Timestamp stamp = new Timestamp(this.getMsg(node));
+
+            for (int i = this.attestationOffsets[node]; i < this.attestationOffsets[node + 1]; i++) {
+                stamp.attestations.add(this.attestations[i]);
+            }
+
+            stamps[node] = stamp;
+        }
+
+        for (int node = 0; node < this.size(); node++) {
+            for (int child = this.firstChild[node]; child != NONE; child = this.nextSibling[child]) {
+                stamps[node].ops.put(this.opTable[this.opIndex[child]], stamps[child]);
+            }
+        }
+
+        return stamps[0];
+    }
+
+    /**
+     * Return the number of nodes in the tree.
+     *
+     * @return The number of nodes.
+     */
+    public int size() {
+        return this.opIndex.length;
+    }
+
+    /**
+     * Return the digest of the timestamp.
+     *
+     * @return The byte[] digest of the root node.
+     */
+    public byte[] getDigest() {
+        return this.getMsg(0);
+    }
+
+    /**
+     * Return a copy of the message of a node.
+     *
+     * @param node - The node index, 0 being the root.
+     * @return The message of the node.
+     */
+    public byte[] getMsg(int node) {
+        return Arrays.copyOfRange(this.msgPool, this.msgOffsets[node], this.msgOffsets[node + 1]);
+    }
+
+    /**
+     * Serialize the timestamp, in the same format as {@link Timestamp#serialize()}.
+     *
+     * @return The byte array of the serialized timestamp
+     */
+    public byte[] serialize() {
+        StreamSerializationContext ctx = new StreamSerializationContext();
+        serialize(ctx);
+
+        return ctx.getOutput();
+    }
+
+    /**
+     * Serialize the timestamp, in the same format as {@link Timestamp#serialize(StreamSerializationContext)}.
+     *
+     * @param ctx - The stream serialization context.
+     */
+    public void serialize(StreamSerializationContext ctx) {
+        int[] nextChild = new int[16];   // Per depth: the next child to serialize
+        int depth = 0;
+
+        nextChild[depth++] = serializeNode(ctx, 0);
+
+        while (depth > 0) {
+            int child = nextChild[depth - 1];
+
+            if (child == NONE) {
+                depth--;
+                continue;
+            }
+
+            nextChild[depth - 1] = this.nextSibling[child];
+
+            if (this.nextSibling[child] != NONE) {
+                ctx.writeBytes(new byte[]{(byte) 0xff});
+            }
+
+            this.opTable[this.opIndex[child]].serialize(ctx);
+
+            if (depth == nextChild.length) {
+                nextChild = Arrays.copyOf(nextChild, depth * 2);
+            }
+
+            nextChild[depth++] = serializeNode(ctx, child);
+        }
+    }
+
+    /**
+     * Write the attestations of a node and the empty-ops marker if needed.
+     *
+     * @return The first child of the node, whose subtree must be written next.
+     */
+    private int serializeNode(StreamSerializationContext ctx, int node) {
+        int start = this.attestationOffsets[node];
+        int end = this.attestationOffsets[node + 1];
+
+        for (int i = start; i < end - 1; i++) {
+            ctx.writeBytes(new byte[]{(byte) 0xff, (byte) 0x00});
+            this.attestations[i].serialize(ctx);
+        }
+
+        if (this.firstChild[node] == NONE) {
+            ctx.writeByte((byte) 0x00);
+
+            if (end > start) {
+                this.attestations[end - 1].serialize(ctx);
+            }
+        } else if (end > start) {
+            ctx.writeBytes(new byte[]{(byte) 0xff, (byte) 0x00});
+            this.attestations[end - 1].serialize(ctx);
+        }
+
+        return this.firstChild[node];
+    }
+
+    /**
+     * Iterate over all attestations.
+     *
+     * @return Returns list of (msg, attestation)
+     * @see Timestamp#allAttestations()
+     */
+    public List<Map.Entry<byte[], TimeAttestation>> allAttestations() {
+        List<Map.Entry<byte[], TimeAttestation>> list = new ArrayList<>();
+
+        for (int node = 0; node < this.size(); node++) {
+            if (this.attestationOffsets[node + 1] > this.attestationOffsets[node]) {
+                byte[] msg = this.getMsg(node);
+
+                for (int i = this.attestationOffsets[node]; i < this.attestationOffsets[node + 1]; i++) {
+                    list.add(new AbstractMap.SimpleImmutableEntry<>(msg, this.attestations[i]));
+                }
+            }
+        }
+
+        return list;
+    }
+
+    /**
+     * Returns a set of all Attestations.
+     *
+     * @return Set of all timestamp attestations.
+     */
+    public Set<TimeAttestation> getAttestations() {
+        return new HashSet<>(Arrays.asList(this.attestations));
+    }
+
+    /**
+     * Determine if timestamp is complete and can be verified.
+     *
+     * @return True if the timestamp is complete, False otherwise.
+     */
+    public boolean isTimestampComplete() {
+        for (TimeAttestation attestation : this.attestations) {
+            if (attestation instanceof BitcoinBlockHeaderAttestation) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /**
+     * Return as tree hierarchical object.
+     *
+     * @param indent    - Initial hierarchical indention.
+     * @param verbosity - Verbose option.
+     * @return The output string, identical to {@link Timestamp#strTree(int, boolean)}.
+     */
+    public String strTree(int indent, boolean verbosity) {
+        StringBuilder builder = new StringBuilder();
+
+        try {
+            this.strTree(builder, indent, verbosity);
+        } catch (IOException e) {
+            // Appending to a StringBuilder doesn't fail
+            throw new IllegalStateException(e);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Write as tree hierarchical object, line by line.
+     *
+     * @param out       - The output.
+     * @param indent    - Initial hierarchical indention.
+     * @param verbosity - Verbose option.
+     * @throws IOException if the output fails.
+     * @see Timestamp#strTree(Appendable, int, boolean)
+     */
+    public void strTree(Appendable out, int indent, boolean verbosity) throws IOException {
+        int[] nodes = new int[16];
+        int[] parents = new int[16];
+        int[] indents = new int[16];
+        int depth = 0;
+
+        nodes[depth] = 0;
+        parents[depth] = NONE;
+        indents[depth++] = indent;
+
+        while (depth > 0) {
+            depth--;
+            int node = nodes[depth];
+            int parent = parents[depth];
+            int nodeIndent = indents[depth];
+            byte[] msg = this.getMsg(node);
+
+            if (parent != NONE) {
+                // A fork indents its branches, a single op continues at the same level
+                boolean fork = isFork(parent);
+                strOp(out, fork ? nodeIndent - 1 : nodeIndent, fork, verbosity, this.getMsg(parent), node, msg);
+            }
+
+            for (int i = this.attestationOffsets[node]; i < this.attestationOffsets[node + 1]; i++) {
+                TimeAttestation attestation = this.attestations[i];
+                Timestamp.appendIndention(out, nodeIndent);
+                out.append("verify ").append(attestation.toString()).append('\n');
+
+                if (attestation instanceof BitcoinBlockHeaderAttestation) {
+                    Timestamp.appendIndention(out, nodeIndent);
+                    out.append("# Bitcoin block merkle root ");
+                    Hex.encode(Utils.arrayReverse(msg), out);
+                    out.append('\n');
+                }
+            }
+
+            int childIndent = isFork(node) ? nodeIndent + 1 : nodeIndent;
+            int childCount = 0;
+
+            for (int child = this.firstChild[node]; child != NONE; child = this.nextSibling[child]) {
+                childCount++;
+            }
+
+            if (depth + childCount > nodes.length) {
+                int capacity = Math.max(nodes.length * 2, depth + childCount);
+                nodes = Arrays.copyOf(nodes, capacity);
+                parents = Arrays.copyOf(parents, capacity);
+                indents = Arrays.copyOf(indents, capacity);
+            }
+
+            // Push in reverse, so the first child is popped first
+            int slot = depth + childCount - 1;
+
+            for (int child = this.firstChild[node]; child != NONE; child = this.nextSibling[child]) {
+                nodes[slot] = child;
+                parents[slot] = node;
+                indents[slot--] = childIndent;
+            }
+
+            depth += childCount;
+        }
+    }
+
+    private boolean isFork(int node) {
+        return this.firstChild[node] != NONE && this.nextSibling[this.firstChild[node]] != NONE;
+    }
+
+    private void strOp(Appendable out, int indent, boolean fork, boolean verbosity, byte[] msg, int child, byte[] result) throws IOException {
+        Op op = this.opTable[this.opIndex[child]];
+        byte[] curPar = null;
+
+        if (op instanceof OpBinary) {
+            curPar = ((OpBinary) op).arg;
+        }
+
+        Timestamp.appendTransactionId(out, indent, msg);
+        Timestamp.appendIndention(out, indent);
+        out.append(fork ? " -> " : "").append(op.toString().toLowerCase());
+        Timestamp.appendResult(out, verbosity, curPar, result);
+        out.append('\n');
+    }
+
+    private void sortChildren(int node) {
+        if (this.firstChild[node] == NONE || this.nextSibling[this.firstChild[node]] == NONE) {
+            return;
+        }
+
+        List<Integer> children = new ArrayList<>();
+        boolean sorted = true;
+
+        for (int child = this.firstChild[node]; child != NONE; child = this.nextSibling[child]) {
+            if (!children.isEmpty() && this.opTable[this.opIndex[children.get(children.size() - 1)]].compareTo(this.opTable[this.opIndex[child]]) > 0) {
+                sorted = false;
+            }
+
+            children.add(child);
+        }
+
+        if (sorted) {
+            return;
+        }
+
+        Collections.sort(children, new Comparator<Integer>() {
+            @Override
+            public int compare(Integer a, Integer b) {
+                return opTable[opIndex[a]].compareTo(opTable[opIndex[b]]);
+            }
+        });
+
+        this.firstChild[node] = children.get(0);
+
+        for (int i = 0; i < children.size(); i++) {
+            this.nextSibling[children.get(i)] = i + 1 < children.size() ? children.get(i + 1) : NONE;
+        }
+    }
+
+    private static class Builder {
+        List<Op> opTable = new ArrayList<>();
+        Map<Op, Integer> opIndices = new HashMap<>();
+        int nodeCount = 0;
+        byte[] msgPool = new byte[256];
+        int msgPoolLength = 0;
+        int[] msgOffsets = new int[17];
+        int[] opIndex = new int[16];
+        int[] firstChild = new int[16];
+        int[] lastChild = new int[16];
+        int[] nextSibling = new int[16];
+        int attestationCount = 0;
+        TimeAttestation[] attestations = new TimeAttestation[4];
+        int[] attestationNodes = new int[4];
+
+        int addNode(int parent, Op op, byte[] msg) {
+            int node = this.nodeCount++;
+
+            if (node == this.opIndex.length) {
+                int capacity = node * 2;
+                this.msgOffsets = Arrays.copyOf(this.msgOffsets, capacity + 1);
+                this.opIndex = Arrays.copyOf(this.opIndex, capacity);
+                this.firstChild = Arrays.copyOf(this.firstChild, capacity);
+                this.lastChild = Arrays.copyOf(this.lastChild, capacity);
+                this.nextSibling = Arrays.copyOf(this.nextSibling, capacity);
+            }
+
+            if (this.msgPoolLength + msg.length > this.msgPool.length) {
+                this.msgPool = Arrays.copyOf(this.msgPool, Math.max(this.msgPool.length * 2, this.msgPoolLength + msg.length));
+            }
+
+            System.arraycopy(msg, 0, this.msgPool, this.msgPoolLength, msg.length);
+            this.msgPoolLength += msg.length;
+            this.msgOffsets[node + 1] = this.msgPoolLength;
+            this.firstChild[node] = NONE;
+            this.lastChild[node] = NONE;
+            this.nextSibling[node] = NONE;
+
+            if (parent == NONE) {
+                this.opIndex[node] = NONE;
+            } else {
+                Integer index = this.opIndices.get(op);
+
+                if (index == null) {
+                    index = this.opTable.size();
+                    this.opTable.add(op);
+                    this.opIndices.put(op, index);
+                }
+
+                this.opIndex[node] = index;
+
+                if (this.lastChild[parent] == NONE) {
+                    this.firstChild[parent] = node;
+                } else {
+                    this.nextSibling[this.lastChild[parent]] = node;
+                }
+
+                this.lastChild[parent] = node;
+            }
+
+            return node;
+        }
+
+        void addAttestation(int node, TimeAttestation attestation) {
+            if (this.attestationCount == this.attestations.length) {
+                this.attestations = Arrays.copyOf(this.attestations, this.attestationCount * 2);
+                this.attestationNodes = Arrays.copyOf(this.attestationNodes, this.attestationCount * 2);
+            }
+
+            this.attestations[this.attestationCount] = attestation;
+            this.attestationNodes[this.attestationCount] = node;
+            this.attestationCount++;
+        }
+    }
+}
@@ -0,0 +1,273 @@
+package com.eternitywall.ots;
+
+import java.util.Arrays;
+
+/**
+ * Map from 32 byte digests to longs, such as from commitments to the offsets of their proofs, sized for tens of
+ * millions of entries.
+ * <p>
+ * The entries are kept by open addressing with linear probing in flat arrays: the four words of each key side by
+ * side in one long[], the values in another, and a bit per slot telling whether it is used. An entry thus takes
+ * 40 bytes per slot and no object at all, where a HashMap&lt;String, Long&gt; keyed by hex takes some 200 bytes
+ * over four objects. The table doubles once three quarters full, and removal shifts the following entries back
+ * rather than leaving tombstones.
+ * <p>
+ * Not thread-safe.
+ */
+public class DigestLongMap {
+
+    /**
+     * The largest number of slots, keeping the key array within the largest Java array.
+     */
+    private static final int MAX_CAPACITY = 1 << 28;
+
+    private long[] keys;
+    private long[] values;
+    private long[] used;
+    private int mask;
+    private int size;
+    private int threshold;
+
+    /**
+     * Create an empty map.
+     */
+    public DigestLongMap() {
+        this(16);
+    }
+
+    /**
+     * Create an empty map that holds a number of entries before growing.
+     *
+     * @param expected The number of entries expected.
+     */
+    public DigestLongMap(int expected) {
+        int capacity = 16;
+
+        while (capacity < MAX_CAPACITY && capacity / 4 * 3 < expected) {
+            capacity <<= 1;
+        }
+
+        this.allocate(capacity);
+    }
+
+    /**
+     * Return the number of entries.
+     *
+     * @return The number of entries.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Tell whether a digest has a value.
+     *
+     * @param key The digest.
+     * @return true if the digest has a value.
+     */
+    public boolean containsKey(DigestValue key) {
+        return this.find(key.w0, key.w1, key.w2, key.w3) >= 0;
+    }
+
+    /**
+     * Get the value of a digest.
+     *
+     * @param key     The digest.
+     * @param missing The value to return if the digest has none.
+     * @return The value, or missing.
+     */
+    public long get(DigestValue key, long missing) {
+        int slot = this.find(key.w0, key.w1, key.w2, key.w3);
+
+        return slot >= 0 ? this.values[slot] : missing;
+    }
+
+    /**
+     * Get the value of a digest given as bytes, without making a {@link DigestValue} of it.
+     *
+     * @param digest  The 32 byte digest.
+     * @param missing The value to return if the digest has none, or isn't 32 bytes.
+     * @return The value, or missing.
+     */
+    public long get(byte[] digest, long missing) {
+        if (digest.length != DigestValue.LENGTH) {
+            return missing;
+        }
+
+        int slot = this.find(DigestValue.word(digest, 0), DigestValue.word(digest, 8), DigestValue.word(digest, 16), DigestValue.word(digest, 24));
+
+        return slot >= 0 ? this.values[slot] : missing;
+    }
+
+    /**
+     * Set the value of a digest.
+     *
+     * @param key   The digest.
+     * @param value The value.
+     * @throws IllegalStateException if the map is full.
+     */
+    public void put(DigestValue key, long value) {
+        int slot = this.find(key.w0, key.w1, key.w2, key.w3);
+
+        if (slot >= 0) {
+            this.values[slot] = value;
+
+            return;
+        }
+
+        if (this.size >= this.threshold) {
+            this.grow();
+        }
+
+        this.insert(key.w0, key.w1, key.w2, key.w3, value);
+        this.size++;
+    }
+
+    /**
+     * Remove the value of a digest.
+     *
+     * @param key The digest.
+     * @return true if the digest had a value.
+     */
+    public boolean remove(DigestValue key) {
+        int slot = this.find(key.w0, key.w1, key.w2, key.w3);
+
+        if (slot < 0) {
+            return false;
+        }
+
+        // Move back every following entry of the run that could have been placed at the freed slot
+        int free = slot;
+        int next = (free + 1) & this.mask;
+
+        while (this.isUsed(next)) {
+            int home = this.slot(next);
+
+            // The entry stays if its home lies cyclically within (free, next]
+            if (((next - home) & this.mask) >= ((next - free) & this.mask)) {
+                this.move(next, free);
+                free = next;
+            }
+
+            next = (next + 1) & this.mask;
+        }
+
+        this.used[free >>> 6] &= ~(1L << free);
+        this.size--;
+
+        return true;
+    }
+
+    /**
+     * Remove every entry, keeping the capacity.
+     */
+    public void clear() {
+        Arrays.fill(this.used, 0);
+        this.size = 0;
+    }
+
+    /**
+     * Receiver of the entries of a map.
+     */
+    public interface Visitor {
+
+        /**
+         * Called for every entry, in no particular order.
+         *
+         * @param key   The digest.
+         * @param value Its value.
+         */
+        void visit(DigestValue key, long value);
+    }
+
+    /**
+     * Visit every entry. The map must not be changed meanwhile.
+     *
+     * @param visitor The receiver of the entries.
+     */
+    public void forEach(Visitor visitor) {
+        for (int slot = 0; slot <= this.mask; slot++) {
+            if (this.isUsed(slot)) {
+                int k = slot * 4;
+                visitor.visit(new DigestValue(this.keys[k], this.keys[k + 1], this.keys[k + 2], this.keys[k + 3]), this.values[slot]);
+            }
+        }
+    }
+
+    private int find(long w0, long w1, long w2, long w3) {
+        int slot = DigestValue.hash(w0, w1, w2, w3) & this.mask;
+
+        while (this.isUsed(slot)) {
+            int k = slot * 4;
+
+            if (this.keys[k] == w0 && this.keys[k + 1] == w1 && this.keys[k + 2] == w2 && this.keys[k + 3] == w3) {
+                return slot;
+            }
+
+            slot = (slot + 1) & this.mask;
+        }
+
+        return -1;
+    }
+
+    private void insert(long w0, long w1, long w2, long w3, long value) {
+        int slot = DigestValue.hash(w0, w1, w2, w3) & this.mask;
+
+        while (this.isUsed(slot)) {
+            slot = (slot + 1) & this.mask;
+        }
+
+        int k = slot * 4;
+        this.keys[k] = w0;
+        this.keys[k + 1] = w1;
+        this.keys[k + 2] = w2;
+        this.keys[k + 3] = w3;
+        this.values[slot] = value;
+        this.used[slot >>> 6] |= 1L << slot;
+    }
+
+    private boolean isUsed(int slot) {
+        return (this.used[slot >>> 6] & (1L << slot)) != 0;
+    }
+
+    /**
+     * Return the slot the key held at a slot hashes to.
+     */
+    private int slot(int at) {
+        int k = at * 4;
+
+        return DigestValue.hash(this.keys[k], this.keys[k + 1], this.keys[k + 2], this.keys[k + 3]) & this.mask;
+    }
+
+    private void move(int from, int to) {
+        System.arraycopy(this.keys, from * 4, this.keys, to * 4, 4);
+        this.values[to] = this.values[from];
+    }
+
+    private void allocate(int capacity) {
+        this.keys = new long[capacity * 4];
+        this.values = new long[capacity];
+        this.used = new long[Math.max(1, capacity >>> 6)];
+        this.mask = capacity - 1;
+        this.threshold = capacity / 4 * 3;
+    }
+
+    private void grow() {
+        if (this.mask + 1 >= MAX_CAPACITY) {
+            throw new IllegalStateException("DigestLongMap full at " + this.size + " entries");
+        }
+
+        long[] oldKeys = this.keys;
+        long[] oldValues = this.values;
+        long[] oldUsed = this.used;
+        int oldCapacity = this.mask + 1;
+        this.allocate(oldCapacity * 2);
+
+        for (int slot = 0; slot < oldCapacity; slot++) {
+            if ((oldUsed[slot >>> 6] & (1L << slot)) != 0) {
+                int k = slot * 4;
+                this.insert(oldKeys[k], oldKeys[k + 1], oldKeys[k + 2], oldKeys[k + 3], oldValues[slot]);
+            }
+        }
+    }
+}
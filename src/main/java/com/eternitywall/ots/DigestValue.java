@@ -0,0 +1,179 @@
+package com.eternitywall.ots;
+
+/**
+ * A 32 byte digest as a value: immutable, with equals and hashCode over its content, so that it can key maps and
+ * sets where a byte[] can't.
+ * <p>
+ * The bytes are held as four big-endian longs, so comparing two digests takes four comparisons, and ordering them
+ * by {@link #compareTo(DigestValue)} is the unsigned lexicographic order of their bytes.
+ */
+public final class DigestValue implements Comparable<DigestValue> {
+
+    /**
+     * The length of a digest.
+     */
+    public static final int LENGTH = 32;
+
+    final long w0;
+    final long w1;
+    final long w2;
+    final long w3;
+
+    DigestValue(long w0, long w1, long w2, long w3) {
+        this.w0 = w0;
+        this.w1 = w1;
+        this.w2 = w2;
+        this.w3 = w3;
+    }
+
+    /**
+     * Make the value of a digest.
+     *
+     * @param digest The 32 byte digest.
+     * @return The value.
+     * @throws IllegalArgumentException if the digest isn't 32 bytes.
+     */
+    public static DigestValue of(byte[] digest) {
+        if (digest.length != LENGTH) {
+            throw new IllegalArgumentException("Digest of " + digest.length + " bytes, expected " + LENGTH);
+        }
+
+        return DigestValue.of(digest, 0);
+    }
+
+    /**
+     * Make the value of the 32 bytes of an array from an offset.
+     *
+     * @param bytes  The array.
+     * @param offset The offset of the digest.
+     * @return The value.
+     */
+    public static DigestValue of(byte[] bytes, int offset) {
+        return new DigestValue(word(bytes, offset), word(bytes, offset + 8), word(bytes, offset + 16), word(bytes, offset + 24));
+    }
+
+    /**
+     * Parse a digest written in hex, in either case.
+     *
+     * @param hex The 64 hex digits.
+     * @return The value.
+     * @throws IllegalArgumentException if the string isn't 64 hex digits.
+     */
+    public static DigestValue fromHex(String hex) {
+        return DigestValue.of(Hex.decode(hex));
+    }
+
+    /**
+     * Return the bytes of the digest.
+     *
+     * @return A new 32 byte array.
+     */
+    public byte[] toBytes() {
+        byte[] bytes = new byte[LENGTH];
+        this.writeTo(bytes, 0);
+
+        return bytes;
+    }
+
+    /**
+     * Write the bytes of the digest into an array.
+     *
+     * @param bytes  The array.
+     * @param offset The offset to write at.
+     */
+    public void writeTo(byte[] bytes, int offset) {
+        putWord(bytes, offset, this.w0);
+        putWord(bytes, offset + 8, this.w1);
+        putWord(bytes, offset + 16, this.w2);
+        putWord(bytes, offset + 24, this.w3);
+    }
+
+    /**
+     * Tell whether the digest is the given bytes.
+     *
+     * @param digest The bytes.
+     * @return true if they are the 32 bytes of this digest.
+     */
+    public boolean matches(byte[] digest) {
+        return digest.length == LENGTH && this.w0 == word(digest, 0) && this.w1 == word(digest, 8)
+                && this.w2 == word(digest, 16) && this.w3 == word(digest, 24);
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (!(other instanceof DigestValue)) {
+            return false;
+        }
+
+        DigestValue that = (DigestValue) other;
+
+        return this.w0 == that.w0 && this.w1 == that.w1 && this.w2 == that.w2 && this.w3 == that.w3;
+    }
+
+    @Override
+    public int hashCode() {
+        return hash(this.w0, this.w1, this.w2, this.w3);
+    }
+
+    @Override
+    public int compareTo(DigestValue other) {
+        int cmp = compareUnsigned(this.w0, other.w0);
+
+        if (cmp == 0) {
+            cmp = compareUnsigned(this.w1, other.w1);
+        }
+
+        if (cmp == 0) {
+            cmp = compareUnsigned(this.w2, other.w2);
+        }
+
+        if (cmp == 0) {
+            cmp = compareUnsigned(this.w3, other.w3);
+        }
+
+        return cmp;
+    }
+
+    /**
+     * Return the digest in lower case hex.
+     */
+    @Override
+    public String toString() {
+        return Hex.encode(this.toBytes());
+    }
+
+    /**
+     * Hash the words of a digest. Every word is mixed in, so that keys which aren't uniformly random, such as
+     * digests sharing a prefix, still spread over a table.
+     */
+    static int hash(long w0, long w1, long w2, long w3) {
+        long h = w0 * 0x9e3779b97f4a7c15L + w1;
+        h = h * 0x9e3779b97f4a7c15L + w2;
+        h = h * 0x9e3779b97f4a7c15L + w3;
+        h = (h ^ (h >>> 32)) * 0x9e3779b97f4a7c15L;
+
+        return (int) (h >>> 32);
+    }
+
+    static long word(byte[] bytes, int offset) {
+        long word = 0;
+
+        for (int i = 0; i < 8; i++) {
+            word = (word << 8) | (bytes[offset + i] & 0xff);
+        }
+
+        return word;
+    }
+
+    private static void putWord(byte[] bytes, int offset, long word) {
+        for (int i = 7; i >= 0; i--) {
+            bytes[offset + i] = (byte) word;
+            word >>>= 8;
+        }
+    }
+
+    private static int compareUnsigned(long a, long b) {
+        // Long.compareUnsigned is Java 8
+        return a == b ? 0 : (a + Long.MIN_VALUE < b + Long.MIN_VALUE ? -1 : 1);
+    }
+}
@@ -5,11 +5,13 @@ import com.eternitywall.ots.op.OpKECCAK256;
 import com.eternitywall.ots.op.OpRIPEMD160;
 import com.eternitywall.ots.op.OpSHA1;
 import com.eternitywall.ots.op.OpSHA256;
+import com.eternitywall.ots.op.OpUnary;
 
 import java.io.File;
 import java.io.IOException;
 import java.io.InputStream;
 import java.security.NoSuchAlgorithmException;
+import java.util.List;
 
 public class Hash {
 
@@ -77,60 +79,44 @@ public class Hash {
     /**
      * Get the current Crypto operation.
      *
-     * @return The generated com.eternitywall.ots.OpCrypto object.
+     * @return The shared com.eternitywall.ots.OpCrypto object.
      */
     public OpCrypto getOp() {
-        if (this.algorithm == OpSHA1._TAG) {
-            return new OpSHA1();
-        } else if (this.algorithm == OpSHA256._TAG) {
-            return new OpSHA256();
-        } else if (this.algorithm == OpRIPEMD160._TAG) {
-            return new OpRIPEMD160();
-        } else if (this.algorithm == OpKECCAK256._TAG) {
-            return new OpKECCAK256();
-        }
-
-        return new OpSHA256();
+        return getOp(this.algorithm);
     }
 
     /**
      * Get Crypto operation from hashlib tag.
      *
      * @param algorithm The hashlib tag.
-     * @return The generated com.eternitywall.ots.OpCrypto object.
+     * @return The shared com.eternitywall.ots.OpCrypto object.
      */
     public static OpCrypto getOp(byte algorithm) {
-        if (algorithm == OpSHA1._TAG) {
-            return new OpSHA1();
-        } else if (algorithm == OpSHA256._TAG) {
-            return new OpSHA256();
-        } else if (algorithm == OpRIPEMD160._TAG) {
-            return new OpRIPEMD160();
-        } else if (algorithm == OpKECCAK256._TAG) {
-            return new OpKECCAK256();
+        OpUnary op = OpUnary.getInstance(algorithm);
+
+        if (op instanceof OpCrypto) {
+            return (OpCrypto) op;
         }
 
-        return new OpSHA256();
+        return (OpCrypto) OpUnary.getInstance(OpSHA256._TAG);
     }
 
     /**
      * Get Crypto operation from hashlib name.
      *
      * @param label The hashlib name.
-     * @return The generated com.eternitywall.ots.OpCrypto object.
+     * @return The shared com.eternitywall.ots.OpCrypto object.
      */
     public static OpCrypto getOp(String label) {
-        if (label.toLowerCase().equals(new OpSHA1()._TAG_NAME())) {
-            return new OpSHA1();
-        } else if (label.toLowerCase().equals(new OpSHA256()._TAG_NAME())) {
-            return new OpSHA256();
-        } else if (label.toLowerCase().equals(new OpRIPEMD160()._TAG_NAME())) {
-            return new OpRIPEMD160();
-        } else if (label.toLowerCase().equals(new OpKECCAK256()._TAG_NAME())) {
-            return new OpKECCAK256();
+        for (byte algorithm : new byte[]{OpSHA1._TAG, OpSHA256._TAG, OpRIPEMD160._TAG, OpKECCAK256._TAG}) {
+            OpCrypto op = getOp(algorithm);
+
+            if (label.toLowerCase().equals(op._TAG_NAME())) {
+                return op;
+            }
         }
 
-        return new OpSHA256();
+        return getOp(OpSHA256._TAG);
     }
 
     /**
@@ -165,6 +151,20 @@ public class Hash {
         return new Hash(value, algorithm);
     }
 
+    /**
+     * Build hashes from File, with several algorithms in a single read of the file.
+     *
+     * @param file       The File of data to hash.
+     * @param algorithms The hash algorithms.
+     * @return One com.eternitywall.ots.Hash per algorithm, in the same order.
+     * @throws IOException              desc
+     * @throws NoSuchAlgorithmException desc
+     * @see MultiHasher
+     */
+    public static List<Hash> from(File file, byte[] algorithms) throws IOException, NoSuchAlgorithmException {
+        return new MultiHasher(algorithms).hash(file);
+    }
+
     /**
      * Build hash from InputStream.
      *
@@ -190,6 +190,6 @@ public class Hash {
     public String toString() {
         return "com.eternitywall.ots.Hash\n" +
                "algorithm: " + this.getOp()._HASHLIB_NAME() + '\n' +
-               "value: " + Utils.bytesToHex(this.value) + '\n';
+               "value: " + Hex.encodeUpper(this.value) + '\n';
     }
 }
@@ -0,0 +1,177 @@
+package com.eternitywall.ots;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Hex encoding and decoding through lookup tables.
+ * <p>
+ * Encoding looks up the two digits of each byte at once, and decoding the value of each digit, so neither formats
+ * nor parses anything per byte. Besides the methods returning new strings and arrays, there are ones writing into
+ * arrays the caller allocates, and into an {@link Appendable} such as the output of info. Digests are written in
+ * lower case everywhere but in a few places kept in upper case for compatibility, see {@link Utils#bytesToHex(byte[])}.
+ */
+public final class Hex {
+
+    /**
+     * The two digits of every byte value, in lower and in upper case.
+     */
+    private static final char[] LOWER = new char[512];
+    private static final char[] UPPER = new char[512];
+
+    /**
+     * The value of every ASCII hex digit, -1 for other characters.
+     */
+    private static final byte[] VALUES = new byte[128];
+
+    static {
+        String lower = "0123456789abcdef";
+        String upper = "0123456789ABCDEF";
+
+        for (int b = 0; b < 256; b++) {
+            LOWER[2 * b] = lower.charAt(b >>> 4);
+            LOWER[2 * b + 1] = lower.charAt(b & 0xf);
+            UPPER[2 * b] = upper.charAt(b >>> 4);
+            UPPER[2 * b + 1] = upper.charAt(b & 0xf);
+        }
+
+        for (int c = 0; c < VALUES.length; c++) {
+            VALUES[c] = (byte) lower.indexOf(Character.toLowerCase((char) c));
+        }
+    }
+
+    private Hex() {
+    }
+
+    /**
+     * Encode bytes in lower case hex.
+     *
+     * @param bytes The bytes.
+     * @return The hex string.
+     */
+    public static String encode(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        encode(bytes, 0, bytes.length, chars, 0, false);
+
+        return new String(chars);
+    }
+
+    /**
+     * Encode bytes in upper case hex.
+     *
+     * @param bytes The bytes.
+     * @return The hex string.
+     */
+    public static String encodeUpper(byte[] bytes) {
+        char[] chars = new char[bytes.length * 2];
+        encode(bytes, 0, bytes.length, chars, 0, true);
+
+        return new String(chars);
+    }
+
+    /**
+     * Encode bytes in hex into an array.
+     *
+     * @param in     The bytes.
+     * @param inOff  The offset of the first byte.
+     * @param len    The number of bytes.
+     * @param out    The array, with room for 2 * len characters from outOff.
+     * @param outOff The offset to write at.
+     * @param upper  Write upper case digits.
+     */
+    public static void encode(byte[] in, int inOff, int len, char[] out, int outOff, boolean upper) {
+        char[] digits = upper ? UPPER : LOWER;
+
+        for (int i = 0; i < len; i++) {
+            int b = (in[inOff + i] & 0xff) << 1;
+            out[outOff++] = digits[b];
+            out[outOff++] = digits[b + 1];
+        }
+    }
+
+    /**
+     * Encode bytes in lower case hex to an output.
+     *
+     * @param bytes The bytes.
+     * @param out   The output.
+     * @throws IOException if the output fails.
+     */
+    public static void encode(byte[] bytes, Appendable out) throws IOException {
+        if (out instanceof StringBuilder) {
+            StringBuilder builder = (StringBuilder) out;
+            builder.ensureCapacity(builder.length() + bytes.length * 2);
+
+            for (byte b : bytes) {
+                int i = (b & 0xff) << 1;
+                builder.append(LOWER[i]).append(LOWER[i + 1]);
+            }
+
+            return;
+        }
+
+        // Others are written in chunks, a Writer in one call each
+        char[] chunk = new char[Math.min(bytes.length, 512) * 2];
+
+        for (int off = 0; off < bytes.length; off += chunk.length / 2) {
+            int len = Math.min(chunk.length / 2, bytes.length - off);
+            encode(bytes, off, len, chunk, 0, false);
+
+            if (out instanceof Writer) {
+                ((Writer) out).write(chunk, 0, len * 2);
+            } else {
+                for (int i = 0; i < len * 2; i++) {
+                    out.append(chunk[i]);
+                }
+            }
+        }
+    }
+
+    /**
+     * Decode hex, in either case.
+     *
+     * @param hex The hex string.
+     * @return The bytes.
+     * @throws IllegalArgumentException if the string is of odd length or holds anything but hex digits.
+     */
+    public static byte[] decode(CharSequence hex) {
+        if (hex.length() % 2 != 0) {
+            throw new IllegalArgumentException("Odd length hex string");
+        }
+
+        byte[] bytes = new byte[hex.length() / 2];
+        decode(hex, 0, hex.length(), bytes, 0);
+
+        return bytes;
+    }
+
+    /**
+     * Decode hex, in either case, into an array.
+     *
+     * @param hex    The hex string.
+     * @param start  The index of the first digit.
+     * @param end    The index after the last digit, an even number of digits after start.
+     * @param out    The array, with room for (end - start) / 2 bytes from outOff.
+     * @param outOff The offset to write at.
+     * @throws IllegalArgumentException if the characters aren't an even number of hex digits.
+     */
+    public static void decode(CharSequence hex, int start, int end, byte[] out, int outOff) {
+        if ((end - start) % 2 != 0) {
+            throw new IllegalArgumentException("Odd length hex string");
+        }
+
+        for (int i = start; i < end; i += 2) {
+            int high = value(hex.charAt(i));
+            int low = value(hex.charAt(i + 1));
+
+            if ((high | low) < 0) {
+                throw new IllegalArgumentException("Not a hex digit at " + (high < 0 ? i : i + 1));
+            }
+
+            out[outOff++] = (byte) ((high << 4) | low);
+        }
+    }
+
+    private static int value(char c) {
+        return c < 128 ? VALUES[c] : -1;
+    }
+}
@@ -0,0 +1,353 @@
+package com.eternitywall.ots;
+
+import com.eternitywall.ots.attestation.BitcoinBlockHeaderAttestation;
+import com.eternitywall.ots.attestation.PendingAttestation;
+import com.eternitywall.ots.op.OpAppend;
+import com.eternitywall.ots.op.OpPrepend;
+import com.eternitywall.ots.op.OpSHA256;
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * An in-process stand-in for a remote calendar server, for load and latency testing without the network.
+ * <p>
+ * It serves the two calls of the calendar protocol that {@link Calendar} and {@link CalendarAsyncSubmit} make:
+ * <ul>
+ * <li>POST /digest commits to the posted digest with a fresh nonce and answers with the path from the digest to the
+ * commitment, attested by a {@link PendingAttestation} of this server's url.</li>
+ * <li>GET /timestamp/&lt;commitment hex&gt; answers with the path from the commitment to a block header attestation
+ * once the commitment is confirmed, and with 404 before that.</li>
+ * </ul>
+ * {@link #confirm()} plays the part of the block: it aggregates every pending commitment into a merkle tree and
+ * attests its tip with a synthetic {@link BitcoinBlockHeaderAttestation}. The attestations are not in any real block,
+ * so verifying them against a node fails; stamping and upgrading work as against a live calendar.
+ * <p>
+ * A fixed latency and a failure rate can be injected; a failed call is answered with 503. For latencies below some
+ * 40 ms to be meaningful, run with -Dsun.net.httpserver.nodelay=true, as the server otherwise waits for delayed
+ * acknowledgements.
+ */
+public class LocalCalendar implements Closeable {
+
+    private static final Logger log = LoggerFactory.getLogger(LocalCalendar.class);
+
+    private final HttpServer server;
+    private final ExecutorService executor;
+    private final String url;
+    private final Random random = new Random();
+    private final Object confirming = new Object();
+
+    private final Map<DigestValue, byte[]> pending = new LinkedHashMap<>();
+    private final Map<DigestValue, Timestamp> commitments = new HashMap<>();
+    private int height;
+    private int submitted;
+
+    private volatile long latency;
+    private volatile double failureRate;
+
+    /**
+     * Start a calendar on a free port of the loopback interface.
+     *
+     * @param threads The number of requests served at once.
+     * @throws IOException if the server can't be started.
+     */
+    public LocalCalendar(int threads) throws IOException {
+        this(0, threads);
+    }
+
+    /**
+     * Start a calendar on the loopback interface.
+     *
+     * @param port    The port, or 0 for a free one.
+     * @param threads The number of requests served at once.
+     * @throws IOException if the server can't be started.
+     */
+    public LocalCalendar(int port, int threads) throws IOException {
+        this.server = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), port), 1024);
+        this.executor = Executors.newFixedThreadPool(threads);
+        this.url = "http://127.0.0.1:" + this.server.getAddress().getPort();
+        this.height = 1;
+
+        this.server.createContext("/digest", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleDigest(exchange);
+            }
+        });
+        this.server.createContext("/timestamp/", new HttpHandler() {
+            @Override
+            public void handle(HttpExchange exchange) throws IOException {
+                handleTimestamp(exchange);
+            }
+        });
+        this.server.setExecutor(this.executor);
+        this.server.start();
+    }
+
+    /**
+     * Get the url of the calendar, to pass wherever a calendar url is expected.
+     *
+     * @return The url.
+     */
+    public String getUrl() {
+        return this.url;
+    }
+
+    /**
+     * Delay every answer.
+     *
+     * @param millis The delay in milliseconds.
+     */
+    public void setLatency(long millis) {
+        this.latency = millis;
+    }
+
+    /**
+     * Fail a share of the calls with 503.
+     *
+     * @param failureRate The share of calls that fail, from 0 to 1.
+     */
+    public void setFailureRate(double failureRate) {
+        this.failureRate = failureRate;
+    }
+
+    /**
+     * Set the seed of the nonces and of the injected failures, for reproducible runs.
+     *
+     * @param seed The seed.
+     */
+    public void setSeed(long seed) {
+        synchronized (this.random) {
+            this.random.setSeed(seed);
+        }
+    }
+
+    /**
+     * Get the number of digests submitted so far.
+     *
+     * @return The number of successful submissions.
+     */
+    public synchronized int getSubmitted() {
+        return this.submitted;
+    }
+
+    /**
+     * Get the number of commitments waiting for {@link #confirm()}.
+     *
+     * @return The number of pending commitments.
+     */
+    public synchronized int getPending() {
+        return this.pending.size();
+    }
+
+    /**
+     * Aggregate every pending commitment into a merkle tree and attest its tip in a new synthetic block.
+     *
+     * @return The number of commitments confirmed.
+     */
+    public int confirm() {
+        synchronized (this.confirming) {
+            List<byte[]> batch;
+            int blockHeight;
+
+            synchronized (this) {
+                if (this.pending.isEmpty()) {
+                    return 0;
+                }
+
+                batch = new ArrayList<>(this.pending.values());
+                blockHeight = this.height++;
+            }
+
+            MerkleBuilder builder = new MerkleBuilder();
+            List<Timestamp> leaves = new ArrayList<>(batch.size());
+
+            for (byte[] commitment : batch) {
+                Timestamp leaf = new Timestamp(commitment);
+                leaves.add(leaf);
+                builder.add(leaf);
+            }
+
+            // Stand-ins for the transaction around the tip and the merkle path of the transaction in the block
+            Timestamp block = builder.build()
+                    .add(new OpPrepend(this.nextBytes(32)))
+                    .add(new OpAppend(this.nextBytes(32)))
+                    .add(new OpSHA256())
+                    .add(new OpSHA256());
+            block.attestations.add(new BitcoinBlockHeaderAttestation(blockHeight));
+
+            synchronized (this) {
+                // Commitments stay pending until they can be served confirmed
+                for (Timestamp leaf : leaves) {
+                    DigestValue key = DigestValue.of(leaf.msg);
+                    this.pending.remove(key);
+                    this.commitments.put(key, leaf);
+                }
+            }
+
+            log.debug("Confirmed {} commitment(s) in block {}", batch.size(), blockHeight);
+
+            return batch.size();
+        }
+    }
+
+    /**
+     * Stop serving.
+     */
+    @Override
+    public void close() {
+        this.server.stop(0);
+        this.executor.shutdownNow();
+    }
+
+    private void handleDigest(HttpExchange exchange) throws IOException {
+        if (!this.admit(exchange)) {
+            return;
+        }
+
+        if (!"POST".equals(exchange.getRequestMethod())) {
+            this.respond(exchange, 405, "Method not allowed");
+
+            return;
+        }
+
+        byte[] digest = readAll(exchange.getRequestBody());
+
+        if (digest.length == 0 || digest.length > 64) {
+            this.respond(exchange, 400, "Digest must be 1 to 64 bytes");
+
+            return;
+        }
+
+        Timestamp timestamp = new Timestamp(digest);
+        Timestamp commitment = timestamp.add(new OpAppend(this.nextBytes(16))).add(new OpSHA256());
+        commitment.attestations.add(new PendingAttestation(this.url.getBytes(StandardCharsets.UTF_8)));
+
+        synchronized (this) {
+            this.pending.put(DigestValue.of(commitment.msg), commitment.msg);
+            this.submitted++;
+        }
+
+        this.respond(exchange, 200, timestamp.serialize());
+    }
+
+    private void handleTimestamp(HttpExchange exchange) throws IOException {
+        if (!this.admit(exchange)) {
+            return;
+        }
+
+        String hex = exchange.getRequestURI().getPath().substring("/timestamp/".length());
+        DigestValue key;
+
+        try {
+            key = DigestValue.fromHex(hex);
+        } catch (IllegalArgumentException e) {
+            // Never a commitment of this calendar
+            this.respond(exchange, 404, "Not found");
+
+            return;
+        }
+
+        Timestamp timestamp;
+        boolean isPending;
+
+        synchronized (this) {
+            timestamp = this.commitments.get(key);
+            isPending = this.pending.containsKey(key);
+        }
+
+        if (timestamp != null) {
+            this.respond(exchange, 200, timestamp.serialize());
+        } else if (isPending) {
+            this.respond(exchange, 404, "Pending confirmation in Bitcoin blockchain");
+        } else {
+            this.respond(exchange, 404, "Not found");
+        }
+    }
+
+    /**
+     * Apply the injected latency and failures.
+     *
+     * @return true if the call goes on, false if it was failed.
+     */
+    private boolean admit(HttpExchange exchange) throws IOException {
+        long delay = this.latency;
+
+        if (delay > 0) {
+            try {
+                Thread.sleep(delay);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+            }
+        }
+
+        double failure;
+
+        synchronized (this.random) {
+            failure = this.random.nextDouble();
+        }
+
+        if (failure < this.failureRate) {
+            this.respond(exchange, 503, "Injected failure");
+
+            return false;
+        }
+
+        return true;
+    }
+
+    private byte[] nextBytes(int length) {
+        byte[] bytes = new byte[length];
+
+        synchronized (this.random) {
+            this.random.nextBytes(bytes);
+        }
+
+        return bytes;
+    }
+
+    private void respond(HttpExchange exchange, int status, String message) throws IOException {
+        this.respond(exchange, status, message.getBytes(StandardCharsets.UTF_8));
+    }
+
+    private void respond(HttpExchange exchange, int status, byte[] body) throws IOException {
+        exchange.sendResponseHeaders(status, body.length);
+
+        try (OutputStream out = exchange.getResponseBody()) {
+            out.write(body);
+        }
+    }
+
+    private static byte[] readAll(InputStream in) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int count;
+
+        while ((count = in.read(buffer)) != -1) {
+            out.write(buffer, 0, count);
+        }
+
+        in.close();
+
+        return out.toByteArray();
+    }
+}
@@ -0,0 +1,70 @@
+package com.eternitywall.ots;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Incremental version of {@link Merkle#makeMerkleTree(List)}.
+ * Leaves are added one at a time, and only the roots of the complete subtrees built so far (the peaks of the
+ * merkle-mountain-range) are kept, so a tree can be built while its leaves are still being produced. For the same
+ * leaves in the same order the result is identical to {@link Merkle#makeMerkleTree(List)}.
+ */
+public class MerkleBuilder {
+
+    private final List<Timestamp> peaks = new ArrayList<>();
+    private final List<Integer> heights = new ArrayList<>();
+    private int size = 0;
+
+    /**
+     * Add the next leaf of the tree.
+     *
+     * @param leaf - The leaf timestamp.
+     */
+    public void add(Timestamp leaf) {
+        Timestamp peak = leaf;
+        int height = 0;
+
+        // Merge equal sized subtrees, the way the pairs of each level are merged by makeMerkleTree
+        while (!this.peaks.isEmpty() && this.heights.get(this.heights.size() - 1) == height) {
+            Timestamp left = this.peaks.remove(this.peaks.size() - 1);
+            this.heights.remove(this.heights.size() - 1);
+            peak = Merkle.catSha256(left, peak);
+            height++;
+        }
+
+        this.peaks.add(peak);
+        this.heights.add(height);
+        this.size++;
+    }
+
+    /**
+     * Return the number of leaves added so far.
+     *
+     * @return The number of leaves.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /**
+     * Join the remaining subtrees and return the tip of the tree. No more leaves can be added afterwards.
+     * <p>
+     * makeMerkleTree carries the odd stamp at the end of a level up to the next one, which amounts to joining the
+     * subtrees from the smallest to the largest.
+     *
+     * @return The timestamp for the tip of the tree, or null if no leaves were added.
+     */
+    public Timestamp build() {
+        Metrics.get().record(Metrics.MERKLE_LEAVES, null, this.size());
+        Timestamp tip = null;
+
+        for (int i = this.peaks.size() - 1; i >= 0; i--) {
+            tip = tip == null ? this.peaks.get(i) : Merkle.catSha256(this.peaks.get(i), tip);
+        }
+
+        this.peaks.clear();
+        this.heights.clear();
+
+        return tip;
+    }
+}
@@ -0,0 +1,196 @@
+package com.eternitywall.ots;
+
+import java.util.Iterator;
+import java.util.ServiceLoader;
+
+/**
+ * Receiver of the timings and counts of the library, to export them to a metrics or tracing system.
+ * <p>
+ * The library reports to {@link #get()}: the implementation passed to {@link #set(Metrics)}, else the first one
+ * registered for {@link ServiceLoader} in META-INF/services/com.eternitywall.ots.Metrics, else one that discards
+ * everything. Every method does nothing by default, so an implementation overrides only what it exports.
+ * Implementations are called from many threads at once, some on hot paths, so they must be thread-safe and cheap.
+ * <p>
+ * Every report has a name, one of the constants of this class, and a tag refining it, such as a calendar url or a
+ * hash algorithm; the tag may be null.
+ */
+public abstract class Metrics {
+
+    /**
+     * Time of a submission to a calendar, tagged with the calendar url.
+     */
+    public static final String CALENDAR_SUBMIT = "calendar.submit";
+
+    /**
+     * Time of fetching an upgraded timestamp from a calendar, tagged with the calendar url.
+     */
+    public static final String CALENDAR_UPGRADE = "calendar.upgrade";
+
+    /**
+     * Count of HTTP responses from calendars, tagged with the status code, or "error" if none was received.
+     */
+    public static final String HTTP_STATUS = "http.status";
+
+    /**
+     * Count of bytes sent to calendars, tagged with the calendar url.
+     */
+    public static final String BYTES_SENT = "http.bytes.sent";
+
+    /**
+     * Count of bytes received from calendars, tagged with the calendar url.
+     */
+    public static final String BYTES_RECEIVED = "http.bytes.received";
+
+    /**
+     * Count of hash ops executed, on messages or whole files, tagged with the algorithm.
+     */
+    public static final String HASH_OPS = "ops.hash";
+
+    /**
+     * Number of leaves of each merkle tree built.
+     */
+    public static final String MERKLE_LEAVES = "merkle.leaves";
+
+    /**
+     * Time of deserializing a timestamp.
+     */
+    public static final String DESERIALIZE = "timestamp.deserialize";
+
+    /**
+     * Count of block headers found, tagged with the source: "bitcoin-node" or "insight".
+     */
+    public static final String HEADER_HIT = "headers.hit";
+
+    /**
+     * Count of block headers that a source failed to give, tagged with the source.
+     */
+    public static final String HEADER_MISS = "headers.miss";
+
+    /**
+     * Time of stamping, from building the merkle tree to the last calendar answer.
+     */
+    public static final String STAMP = "stamp";
+
+    /**
+     * Time of upgrading a timestamp.
+     */
+    public static final String UPGRADE = "upgrade";
+
+    /**
+     * Time of verifying a timestamp.
+     */
+    public static final String VERIFY = "verify";
+
+    private static final Metrics NOOP = new Metrics() {
+        @Override
+        public Span start(String name, String tag) {
+            return Span.NOOP;
+        }
+    };
+
+    private static volatile Metrics instance;
+
+    /**
+     * Get the metrics the library reports to.
+     *
+     * @return The metrics.
+     */
+    public static Metrics get() {
+        Metrics metrics = instance;
+
+        if (metrics == null) {
+            synchronized (Metrics.class) {
+                if (instance == null) {
+                    Iterator<Metrics> providers = ServiceLoader.load(Metrics.class).iterator();
+                    instance = providers.hasNext() ? providers.next() : NOOP;
+                }
+
+                metrics = instance;
+            }
+        }
+
+        return metrics;
+    }
+
+    /**
+     * Set the metrics the library reports to.
+     *
+     * @param metrics The metrics, or null to discard everything.
+     */
+    public static void set(Metrics metrics) {
+        instance = metrics == null ? NOOP : metrics;
+    }
+
+    /**
+     * Add to a counter.
+     *
+     * @param name  The name of the counter.
+     * @param tag   The tag, or null.
+     * @param delta The amount to add.
+     */
+    public void count(String name, String tag, long delta) {
+    }
+
+    /**
+     * Record a duration.
+     *
+     * @param name  The name of the timer.
+     * @param tag   The tag, or null.
+     * @param nanos The duration in nanoseconds.
+     */
+    public void time(String name, String tag, long nanos) {
+    }
+
+    /**
+     * Record a value of a distribution, such as a size.
+     *
+     * @param name  The name of the distribution.
+     * @param tag   The tag, or null.
+     * @param value The value.
+     */
+    public void record(String name, String tag, long value) {
+    }
+
+    /**
+     * Start timing an operation. The span reports its duration to {@link #time(String, String, long)} when ended;
+     * a tracing implementation can override this to open a span of its own.
+     *
+     * @param name The name of the timer.
+     * @param tag  The tag, or null.
+     * @return The span, to end once the operation is done.
+     */
+    public Span start(String name, String tag) {
+        return new Span(this, name, tag);
+    }
+
+    /**
+     * A timed operation.
+     */
+    public static class Span {
+
+        static final Span NOOP = new Span(null, null, null) {
+            @Override
+            public void end() {
+            }
+        };
+
+        private final Metrics metrics;
+        private final String name;
+        private final String tag;
+        private final long start;
+
+        protected Span(Metrics metrics, String name, String tag) {
+            this.metrics = metrics;
+            this.name = name;
+            this.tag = tag;
+            this.start = System.nanoTime();
+        }
+
+        /**
+         * End the operation and report its duration.
+         */
+        public void end() {
+            this.metrics.time(this.name, this.tag, System.nanoTime() - this.start);
+        }
+    }
+}
@@ -0,0 +1,237 @@
+package com.eternitywall.ots;
+
+import com.eternitywall.ots.op.OpCrypto;
+import com.eternitywall.ots.op.OpUnary;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+ * Hash data with several algorithms in a single pass.
+ * <p>
+ * The data is read once, in chunks, and every chunk is fed to one digest per algorithm. In threaded mode each digest
+ * runs on its own thread, fed from a small ring of chunk buffers, so hashing takes about as long as the slowest
+ * algorithm rather than the sum of all of them.
+ */
+public class MultiHasher {
+
+    private static final int CHUNK_SIZE = 1048576;
+    private static final int RING_SIZE = 4;
+
+    private final OpCrypto[] ops;
+    private boolean threaded = false;
+
+    /**
+     * Create a hasher.
+     *
+     * @param algorithms The tags of the crypto operations to hash with.
+     * @throws IllegalArgumentException if a tag is not a crypto operation.
+     */
+    public MultiHasher(byte... algorithms) {
+        this.ops = new OpCrypto[algorithms.length];
+
+        for (int i = 0; i < algorithms.length; i++) {
+            OpUnary op = OpUnary.getInstance(algorithms[i]);
+
+            if (!(op instanceof OpCrypto)) {
+                throw new IllegalArgumentException("Unknown hash algorithm tag: " + algorithms[i]);
+            }
+
+            this.ops[i] = (OpCrypto) op;
+        }
+    }
+
+    public boolean isThreaded() {
+        return this.threaded;
+    }
+
+    /**
+     * Set whether each digest is computed on its own thread.
+     *
+     * @param threaded - True to hash on one thread per algorithm.
+     */
+    public void setThreaded(boolean threaded) {
+        this.threaded = threaded;
+    }
+
+    /**
+     * Hash a file.
+     *
+     * @param file The file to hash.
+     * @return One hash per algorithm, in the order the algorithms were given.
+     * @throws IOException              if the file can't be read.
+     * @throws NoSuchAlgorithmException if no provider implements one of the hashes.
+     */
+    public List<Hash> hash(File file) throws IOException, NoSuchAlgorithmException {
+        try (InputStream inputStream = new FileInputStream(file)) {
+            return this.hash(inputStream);
+        }
+    }
+
+    /**
+     * Hash a stream, reading it to its end. The stream is not closed.
+     *
+     * @param inputStream The stream to hash.
+     * @return One hash per algorithm, in the order the algorithms were given.
+     * @throws IOException              if the stream can't be read.
+     * @throws NoSuchAlgorithmException if no provider implements one of the hashes.
+     */
+    public List<Hash> hash(InputStream inputStream) throws IOException, NoSuchAlgorithmException {
+        MessageDigest[] digests = new MessageDigest[this.ops.length];
+
+        for (int i = 0; i < this.ops.length; i++) {
+            digests[i] = this.ops[i].newDigest();
+        }
+
+        if (this.threaded && digests.length > 1) {
+            hashThreaded(inputStream, digests);
+        } else {
+            hashSequential(inputStream, digests);
+        }
+
+        List<Hash> hashes = new ArrayList<>();
+        Metrics metrics = Metrics.get();
+
+        for (int i = 0; i < this.ops.length; i++) {
+            hashes.add(new Hash(digests[i].digest(), this.ops[i]._TAG()));
+            metrics.count(Metrics.HASH_OPS, this.ops[i]._TAG_NAME(), 1);
+        }
+
+        return hashes;
+    }
+
+    private static void hashSequential(InputStream inputStream, MessageDigest[] digests) throws IOException {
+        byte[] chunk = new byte[CHUNK_SIZE];
+        int count = readFully(inputStream, chunk);
+
+        while (count >= 0) {
+            for (MessageDigest digest : digests) {
+                digest.update(chunk, 0, count);
+            }
+
+            count = readFully(inputStream, chunk);
+        }
+    }
+
+    /**
+     * The calling thread reads chunks into the ring, in order, and each digest thread consumes them in the same
+     * order. A slot is handed back to the reader once every digest thread is done with it; a negative length marks
+     * the end of the data.
+     */
+    private static void hashThreaded(InputStream inputStream, final MessageDigest[] digests) throws IOException {
+        final byte[][] ring = new byte[RING_SIZE][CHUNK_SIZE];
+        final int[] lengths = new int[RING_SIZE];
+        final AtomicInteger[] pending = new AtomicInteger[RING_SIZE];
+        final Semaphore free = new Semaphore(RING_SIZE);
+        final Semaphore[] available = new Semaphore[digests.length];
+        final AtomicReference<RuntimeException> failure = new AtomicReference<>();
+        Thread[] threads = new Thread[digests.length];
+
+        for (int slot = 0; slot < RING_SIZE; slot++) {
+            pending[slot] = new AtomicInteger();
+        }
+
+        for (int i = 0; i < digests.length; i++) {
+            final MessageDigest digest = digests[i];
+            final Semaphore chunks = available[i] = new Semaphore(0);
+
+            threads[i] = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    for (int slot = 0; ; slot = (slot + 1) % RING_SIZE) {
+                        chunks.acquireUninterruptibly();
+                        int length = lengths[slot];
+
+                        if (length < 0) {
+                            return;
+                        }
+
+                        try {
+                            digest.update(ring[slot], 0, length);
+                        } catch (RuntimeException e) {
+                            // Keep draining the ring, so that the reader doesn't wait forever
+                            failure.compareAndSet(null, e);
+                        }
+
+                        if (pending[slot].decrementAndGet() == 0) {
+                            free.release();
+                        }
+                    }
+                }
+            }, "ots-hash-" + digest.getAlgorithm());
+            threads[i].setDaemon(true);
+            threads[i].start();
+        }
+
+        for (int slot = 0, length = 0; length >= 0; slot = (slot + 1) % RING_SIZE) {
+            free.acquireUninterruptibly();
+            length = -1;
+
+            try {
+                length = readFully(inputStream, ring[slot]);
+            } finally {
+                // Publish the chunk, or the end of the data if reading failed
+                lengths[slot] = length;
+                pending[slot].set(digests.length);
+
+                for (Semaphore chunks : available) {
+                    chunks.release();
+                }
+            }
+        }
+
+        joinUninterruptibly(threads);
+
+        if (failure.get() != null) {
+            throw failure.get();
+        }
+    }
+
+    private static void joinUninterruptibly(Thread[] threads) {
+        boolean interrupted = false;
+
+        for (Thread thread : threads) {
+            while (thread.isAlive()) {
+                try {
+                    thread.join();
+                } catch (InterruptedException e) {
+                    interrupted = true;
+                }
+            }
+        }
+
+        if (interrupted) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    /**
+     * Fill a chunk from the stream, stopping early only at the end of the stream.
+     *
+     * @return The number of bytes read, or -1 if the stream was already at its end.
+     */
+    private static int readFully(InputStream inputStream, byte[] chunk) throws IOException {
+        int count = 0;
+
+        while (count < chunk.length) {
+            int read = inputStream.read(chunk, count, chunk.length - count);
+
+            if (read < 0) {
+                return count == 0 ? -1 : count;
+            }
+
+            count += read;
+        }
+
+        return count;
+    }
+}
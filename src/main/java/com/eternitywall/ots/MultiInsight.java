@@ -4,6 +4,8 @@ import com.eternitywall.http.Request;
 import com.eternitywall.http.Response;
 import org.json.JSONException;
 import org.json.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.net.URL;
 import java.util.ArrayList;
@@ -14,11 +16,10 @@ import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.BlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.logging.Logger;
 
 public class MultiInsight {
 
-    private static Logger log = Utils.getLogger(MultiInsight.class.getName());
+    private static final Logger log = LoggerFactory.getLogger(MultiInsight.class);
 
     private ExecutorService executor;
     private List<String> insightUrls;
@@ -85,7 +86,7 @@ public class MultiInsight {
                     blockHeader.setMerkleroot(merkleroot);
                     blockHeader.setTime(time);
                     blockHeader.setBlockHash(hash);
-                    log.info(take.getFromUrl() + " " + blockHeader);
+                    log.info("{} {}", take.getFromUrl(), blockHeader);
 
                     if (results.contains(blockHeader)) {
                         return blockHeader;
@@ -93,7 +94,7 @@ public class MultiInsight {
 
                     results.add(blockHeader);
                 } catch (JSONException e) {
-                    log.warning("Cannot parse merkleroot from body: " + jsonObject);
+                    log.warn("Cannot parse merkleroot from body: {}", jsonObject);
                 }
             }
         }
@@ -124,7 +125,7 @@ public class MultiInsight {
             if (take.isOk()) {
                 JSONObject jsonObject = take.getJson();
                 String blockHash = jsonObject.getString("blockHash");
-                log.info(take.getFromUrl() + " " + blockHash);
+                log.info("{} {}", take.getFromUrl(), blockHash);
 
                 if (results.contains(blockHash)) {
                     return blockHash;
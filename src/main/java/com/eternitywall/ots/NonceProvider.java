@@ -0,0 +1,144 @@
+package com.eternitywall.ots;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.nio.ByteBuffer;
+import java.security.GeneralSecurityException;
+import java.security.SecureRandom;
+import java.util.Arrays;
+
+/**
+ * Source of the nonces appended to the leaves of a merkle tree before stamping, see
+ * {@link OpenTimestamps#makeMerkleTree(java.util.List, NonceProvider)}.
+ * <p>
+ * {@link #random()} draws them from one SecureRandom shared by all threads, a block of nonces at a time into a
+ * buffer of each thread, rather than seeding a new SecureRandom for every leaf. {@link #deterministic(byte[])}
+ * derives the nonce of each leaf from a secret, HMAC-SHA256(secret, leaf) cut to {@link #NONCE_LENGTH} bytes, so that
+ * a batch can be stamped again with the same nonces. Its secret is what keeps the nonces, and so the other files of
+ * the batch, from being guessed: it must be random, kept private, and used for one batch only.
+ */
+public abstract class NonceProvider {
+
+    /**
+     * The length of a nonce.
+     */
+    public static final int NONCE_LENGTH = 16;
+
+    private static final NonceProvider random = new RandomNonceProvider();
+
+    /**
+     * Return the nonce of a leaf.
+     *
+     * @param leaf The index of the leaf in its batch, ignored by random providers.
+     * @return A new array of {@link #NONCE_LENGTH} bytes.
+     */
+    public abstract byte[] nonce(long leaf);
+
+    /**
+     * Get the random provider, shared by all threads.
+     *
+     * @return The random provider.
+     */
+    public static NonceProvider random() {
+        return random;
+    }
+
+    /**
+     * Create a provider deriving the nonces of a batch from a secret.
+     *
+     * @param secret The secret of the batch, of at least 16 bytes.
+     * @return The deterministic provider.
+     * @throws IllegalArgumentException if the secret is shorter than 16 bytes.
+     */
+    public static NonceProvider deterministic(byte[] secret) {
+        if (secret.length < NONCE_LENGTH) {
+            throw new IllegalArgumentException("Secret shorter than " + NONCE_LENGTH + " bytes");
+        }
+
+        return new HmacNonceProvider(secret);
+    }
+
+    /**
+     * Fill an array with random bytes from the SecureRandom shared by all threads.
+     *
+     * @param bytes The array to fill.
+     */
+    static void nextBytes(byte[] bytes) {
+        RandomNonceProvider.secureRandom.nextBytes(bytes);
+    }
+
+    private static class RandomNonceProvider extends NonceProvider {
+
+        /**
+         * SecureRandom is thread-safe, and seeding one is what costs.
+         */
+        private static final SecureRandom secureRandom = new SecureRandom();
+
+        private static final int BLOCK_SIZE = 64 * NONCE_LENGTH;
+
+        /**
+         * The random bytes drawn by each thread, used up from the position on.
+         */
+        private static final ThreadLocal<ByteBuffer> blocks = new ThreadLocal<ByteBuffer>() {
+            @Override
+            protected ByteBuffer initialValue() {
+                ByteBuffer block = ByteBuffer.allocate(BLOCK_SIZE);
+                block.position(BLOCK_SIZE);
+
+                return block;
+            }
+        };
+
+        @Override
+        public byte[] nonce(long leaf) {
+            ByteBuffer block = blocks.get();
+
+            if (!block.hasRemaining()) {
+                secureRandom.nextBytes(block.array());
+                block.clear();
+            }
+
+            byte[] nonce = new byte[NONCE_LENGTH];
+            block.get(nonce);
+
+            // Nothing stays behind once handed out
+            Arrays.fill(block.array(), block.position() - NONCE_LENGTH, block.position(), (byte) 0);
+
+            return nonce;
+        }
+    }
+
+    private static class HmacNonceProvider extends NonceProvider {
+
+        private final ThreadLocal<Mac> macs;
+
+        HmacNonceProvider(byte[] secret) {
+            final SecretKeySpec key = new SecretKeySpec(secret, "HmacSHA256");
+
+            this.macs = new ThreadLocal<Mac>() {
+                @Override
+                protected Mac initialValue() {
+                    try {
+                        Mac mac = Mac.getInstance("HmacSHA256");
+                        mac.init(key);
+
+                        return mac;
+                    } catch (GeneralSecurityException e) {
+                        // Every Java platform implements HmacSHA256
+                        throw new IllegalStateException(e);
+                    }
+                }
+            };
+
+            // Fail here rather than at the first leaf
+            this.macs.get();
+        }
+
+        @Override
+        public byte[] nonce(long leaf) {
+            byte[] mac = this.macs.get().doFinal(ByteBuffer.allocate(8).putLong(leaf).array());
+
+            return Arrays.copyOf(mac, NONCE_LENGTH);
+        }
+    }
+}
@@ -0,0 +1,209 @@
+package com.eternitywall.ots;
+
+import com.eternitywall.ots.op.Op;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.NoSuchElementException;
+import java.util.Set;
+
+/**
+ * The ops (edges) of a {@link Timestamp} node, iterated in canonical order.
+ * <p>
+ * It is the HashMap that {@link Timestamp#ops} has always been declared as, so every method of HashMap works on it
+ * as before. Two things differ. The table starts at a single slot and grows one entry at a time, where a default
+ * HashMap allocates sixteen slots for the single op of almost every node. And its entries, keys and values iterate
+ * in {@link Op#compareTo(Op)} order, the order the serialization format requires, so serialize, strTree and equals
+ * don't build sorted copies of their own.
+ */
+public class OpMap extends HashMap<Op, Timestamp> {
+
+    private static final Comparator<Map.Entry<Op, Timestamp>> KEY_ORDER = new Comparator<Map.Entry<Op, Timestamp>>() {
+        @Override
+        public int compare(Map.Entry<Op, Timestamp> a, Map.Entry<Op, Timestamp> b) {
+            return a.getKey().compareTo(b.getKey());
+        }
+    };
+
+    public OpMap() {
+        super(1, 1f);
+    }
+
+    public OpMap(Map<? extends Op, ? extends Timestamp> other) {
+        super(Math.max(1, other.size()), 1f);
+        this.putAll(other);
+    }
+
+    @Override
+    public Set<Map.Entry<Op, Timestamp>> entrySet() {
+        final Set<Map.Entry<Op, Timestamp>> entries = super.entrySet();
+
+        return new AbstractSet<Map.Entry<Op, Timestamp>>() {
+            @Override
+            public Iterator<Map.Entry<Op, Timestamp>> iterator() {
+                return OpMap.this.sortedEntries();
+            }
+
+            @Override
+            public int size() {
+                return entries.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return entries.contains(o);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                return entries.remove(o);
+            }
+
+            @Override
+            public void clear() {
+                entries.clear();
+            }
+        };
+    }
+
+    @Override
+    public Set<Op> keySet() {
+        return new AbstractSet<Op>() {
+            @Override
+            public Iterator<Op> iterator() {
+                final Iterator<Map.Entry<Op, Timestamp>> entries = OpMap.this.sortedEntries();
+
+                return new Iterator<Op>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Op next() {
+                        return entries.next().getKey();
+                    }
+
+                    @Override
+                    public void remove() {
+                        entries.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return OpMap.this.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return OpMap.this.containsKey(o);
+            }
+
+            @Override
+            public boolean remove(Object o) {
+                boolean contained = OpMap.this.containsKey(o);
+                OpMap.this.remove(o);
+
+                return contained;
+            }
+
+            @Override
+            public void clear() {
+                OpMap.this.clear();
+            }
+        };
+    }
+
+    @Override
+    public Collection<Timestamp> values() {
+        return new AbstractCollection<Timestamp>() {
+            @Override
+            public Iterator<Timestamp> iterator() {
+                final Iterator<Map.Entry<Op, Timestamp>> entries = OpMap.this.sortedEntries();
+
+                return new Iterator<Timestamp>() {
+                    @Override
+                    public boolean hasNext() {
+                        return entries.hasNext();
+                    }
+
+                    @Override
+                    public Timestamp next() {
+                        return entries.next().getValue();
+                    }
+
+                    @Override
+                    public void remove() {
+                        entries.remove();
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return OpMap.this.size();
+            }
+
+            @Override
+            public boolean contains(Object o) {
+                return OpMap.this.containsValue(o);
+            }
+
+            @Override
+            public void clear() {
+                OpMap.this.clear();
+            }
+        };
+    }
+
+    /**
+     * Iterate the entries of the table in key order. A single entry needs no sorting, which is the common case.
+     */
+    private Iterator<Map.Entry<Op, Timestamp>> sortedEntries() {
+        Set<Map.Entry<Op, Timestamp>> entries = super.entrySet();
+
+        if (entries.size() < 2) {
+            return entries.iterator();
+        }
+
+        @SuppressWarnings("unchecked")
+        final Map.Entry<Op, Timestamp>[] sorted = entries.toArray(new Map.Entry[entries.size()]);
+        Arrays.sort(sorted, KEY_ORDER);
+
+        return new Iterator<Map.Entry<Op, Timestamp>>() {
+            private int next = 0;
+
+            @Override
+            public boolean hasNext() {
+                return this.next < sorted.length;
+            }
+
+            @Override
+            public Map.Entry<Op, Timestamp> next() {
+                if (this.next >= sorted.length) {
+                    throw new NoSuchElementException();
+                }
+
+                return sorted[this.next++];
+            }
+
+            @Override
+            public void remove() {
+                if (this.next == 0 || sorted[this.next - 1] == null) {
+                    throw new IllegalStateException();
+                }
+
+                OpMap.this.remove(sorted[this.next - 1].getKey());
+                sorted[this.next - 1] = null;
+            }
+        };
+    }
+}
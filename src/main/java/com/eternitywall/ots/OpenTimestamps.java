@@ -1,7 +1,6 @@
 package com.eternitywall.ots;
 
 import com.eternitywall.ots.attestation.BitcoinBlockHeaderAttestation;
-import com.eternitywall.ots.attestation.EthereumBlockHeaderAttestation;
 import com.eternitywall.ots.attestation.LitecoinBlockHeaderAttestation;
 import com.eternitywall.ots.attestation.PendingAttestation;
 import com.eternitywall.ots.attestation.TimeAttestation;
@@ -11,11 +10,12 @@ import com.eternitywall.ots.op.OpSHA256;
 import org.bitcoinj.core.DumpedPrivateKey;
 import org.bitcoinj.core.ECKey;
 import org.bitcoinj.core.NetworkParameters;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
 import java.math.BigInteger;
 import java.nio.charset.StandardCharsets;
-import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashMap;
@@ -26,7 +26,6 @@ import java.util.Set;
 import java.util.concurrent.ArrayBlockingQueue;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
-import java.util.logging.Logger;
 
 /**
  * The main class for timestamp operations.
@@ -39,7 +38,7 @@ public class OpenTimestamps {
     public static final String BOB_URL = "https://bob.btc.calendar.opentimestamps.org";
     public static final String FINNEY_URL = "https://finney.calendar.eternitywall.com";
 
-    private static Logger log = Utils.getLogger(OpenTimestamps.class.getName());
+    private static final Logger log = LoggerFactory.getLogger(OpenTimestamps.class);
 
     /**
      * Show information on a detached timestamp.
@@ -59,16 +58,40 @@ public class OpenTimestamps {
      * @return the string representation of the timestamp.
      */
     public static String info(DetachedTimestampFile detachedTimestampFile, boolean verbose) {
+        StringBuilder builder = new StringBuilder();
+
+        try {
+            info(detachedTimestampFile, verbose, builder);
+        } catch (IOException e) {
+            // Appending to a StringBuilder doesn't fail
+            throw new IllegalStateException(e);
+        }
+
+        return builder.toString();
+    }
+
+    /**
+     * Write information on a detached timestamp, as {@link #info(DetachedTimestampFile, boolean)} returns it, without
+     * building it in memory first.
+     *
+     * @param detachedTimestampFile The DetachedTimestampFile ots.
+     * @param verbose               Show verbose output.
+     * @param out                   The output.
+     * @throws IOException if the output fails.
+     */
+    public static void info(DetachedTimestampFile detachedTimestampFile, boolean verbose, Appendable out) throws IOException {
         if (detachedTimestampFile == null) {
-            return "No ots file";
+            out.append("No ots file");
+
+            return;
         }
 
-        String fileHash = Utils.bytesToHex(detachedTimestampFile.timestamp.msg).toLowerCase();
+        String fileHash = Hex.encode(detachedTimestampFile.timestamp.msg);
         String hashOp = detachedTimestampFile.fileHashOp._TAG_NAME();
 
-        String firstLine = "File " + hashOp + " hash: " + fileHash + '\n';
-
-        return firstLine + "Timestamp:\n" + detachedTimestampFile.timestamp.strTree(0, verbose);
+        out.append("File ").append(hashOp).append(" hash: ").append(fileHash).append('\n');
+        out.append("Timestamp:\n");
+        detachedTimestampFile.timestamp.strTree(out, 0, verbose);
     }
 
     /**
@@ -82,12 +105,29 @@ public class OpenTimestamps {
             return "No timestamp";
         }
 
-        String fileHash = Utils.bytesToHex(timestamp.msg).toLowerCase();
+        String fileHash = Hex.encode(timestamp.msg);
         String firstLine = "Hash: " + fileHash + '\n';
 
         return firstLine + "Timestamp:\n" + timestamp.strTree(0);
     }
 
+    /**
+     * Show information on a compact timestamp.
+     *
+     * @param timestamp The compact timestamp.
+     * @return the string representation of the timestamp.
+     */
+    public static String info(CompactTimestamp timestamp) {
+        if (timestamp == null) {
+            return "No timestamp";
+        }
+
+        String fileHash = Hex.encode(timestamp.getDigest());
+        String firstLine = "Hash: " + fileHash + '\n';
+
+        return firstLine + "Timestamp:\n" + timestamp.strTree(0, false);
+    }
+
     /**
      * Create timestamp with the aid of a remote calendar. May be specified multiple times.
      *
@@ -144,6 +184,42 @@ public class OpenTimestamps {
             throw new IOException("No fileTimestamps available: " + fileTimestamps);
         }
 
+        Metrics.Span span = Metrics.get().start(Metrics.STAMP, null);
+
+        try {
+            // Build merkle tree
+            Timestamp merkleTip = OpenTimestamps.makeMerkleTree(fileTimestamps);
+
+            if (merkleTip == null) {
+                throw new IOException("Could not make merkle tree");
+            }
+
+            // Stamping
+            OpenTimestamps.stampMerkleTip(merkleTip, calendarsUrl, m, privateCalendarsUrl);
+
+            // Result of timestamp serialization
+            if (fileTimestamps.size() == 1) {
+                return fileTimestamps.get(0).timestamp;
+            } else {
+                return merkleTip;
+            }
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Create timestamp for the tip of a merkle tree that was already built, for instance with a
+     * {@link MerkleBuilder} fed with {@link #makeMerkleLeaf(DetachedTimestampFile)}.
+     *
+     * @param merkleTip           The tip of the merkle tree.
+     * @param calendarsUrl        The list of calendar urls.
+     * @param m                   The number of calendar to use.
+     * @param privateCalendarsUrl The list of private calendar urls with signature.
+     * @return The stamped merkle tip.
+     * @throws IOException if the calendars are not valid.
+     */
+    public static Timestamp stampMerkleTip(Timestamp merkleTip, List<String> calendarsUrl, Integer m, HashMap<String, String> privateCalendarsUrl) throws IOException {
         if (privateCalendarsUrl == null) {
             privateCalendarsUrl = new HashMap<>();
         }
@@ -166,22 +242,7 @@ public class OpenTimestamps {
             throw new IOException("m cannot be greater than available calendar neither less or equal 0");
         }
 
-        // Build merkle tree
-        Timestamp merkleTip = OpenTimestamps.makeMerkleTree(fileTimestamps);
-
-        if (merkleTip == null) {
-            throw new IOException("Could not make merkle tree");
-        }
-
-        // Stamping
-        Timestamp resultTimestamp = OpenTimestamps.create(merkleTip, calendarsUrl, m, privateCalendarsUrl);
-
-        // Result of timestamp serialization
-        if (fileTimestamps.size() == 1) {
-            return fileTimestamps.get(0).timestamp;
-        } else {
-            return merkleTip;
-        }
+        return OpenTimestamps.create(merkleTip, calendarsUrl, m, privateCalendarsUrl);
     }
 
     /**
@@ -201,7 +262,7 @@ public class OpenTimestamps {
         for (Map.Entry<String, String> entry : privateCalendarUrls.entrySet()) {
             String calendarUrl = "https://" + entry.getKey();
             String signature = entry.getValue();
-            log.info("Submitting to remote private calendar " + calendarUrl);
+            log.info("Submitting to remote private calendar {}", calendarUrl);
 
             try {
                 CalendarAsyncSubmit task = new CalendarAsyncSubmit(calendarUrl, timestamp.msg);
@@ -215,7 +276,7 @@ public class OpenTimestamps {
                         DumpedPrivateKey dumpedPrivateKey = new DumpedPrivateKey(NetworkParameters.prodNet(), signature);
                         key = dumpedPrivateKey.getKey();
                     } catch (Exception err) {
-                        log.severe("Invalid private key");
+                        log.error("Invalid private key");
                     }
                 }
 
@@ -223,20 +284,20 @@ public class OpenTimestamps {
                 task.setQueue(queue);
                 executor.submit(task);
             } catch (Exception e) {
-                log.warning("Could not submit to private calendar: " + e.toString());
+                log.warn("Could not submit to private calendar", e);
             }
         }
 
         // Submit to all public calendars
         for (String calendarUrl : calendarUrls) {
-            log.info("Submitting to remote calendar " + calendarUrl);
+            log.info("Submitting to remote calendar {}", calendarUrl);
 
             try {
                 CalendarAsyncSubmit task = new CalendarAsyncSubmit(calendarUrl, timestamp.msg);
                 task.setQueue(queue);
                 executor.submit(task);
             } catch (Exception e) {
-                log.warning("Could not submit to public calendar: " + e.toString());
+                log.warn("Could not submit to public calendar", e);
             }
         }
 
@@ -250,16 +311,16 @@ public class OpenTimestamps {
                     try {
                         timestamp.merge(optionalStamp.get());
                     } catch (Exception e) {
-                        log.warning("Could not merge timestamp: " + e.toString());     // TODO: Should we rethrow?
+                        log.warn("Could not merge timestamp", e);     // TODO: Should we rethrow?
                     }
                 }
             } catch (Exception e) {
-                log.warning("Could not take timestamp: " + e.toString());     // TODO: Should we rethrow?
+                log.warn("Could not take timestamp", e);     // TODO: Should we rethrow?
             }
         }
 
         if (count < m) {
-            log.severe("Failed to create timestamp: requested " + String.valueOf(m) + " attestation" + ((m > 1) ? "s" : "") + " but received only " + String.valueOf(count));
+            log.error("Failed to create timestamp: requested {} attestation{} but received only {}", m, (m > 1) ? "s" : "", count);
         }
 
         executor.shutdown();
@@ -274,26 +335,50 @@ public class OpenTimestamps {
      * @return merkle tip timestamp.
      */
     public static Timestamp makeMerkleTree(List<DetachedTimestampFile> fileTimestamps) {
-        List<Timestamp> merkleRoots = new ArrayList<>();
-
-        for (DetachedTimestampFile fileTimestamp : fileTimestamps) {
-            byte[] bytesRandom16 = new byte[16];
+        return OpenTimestamps.makeMerkleTree(fileTimestamps, NonceProvider.random());
+    }
 
-            try {
-                bytesRandom16 = Utils.randBytes(16);
-            } catch (NoSuchAlgorithmException e) {
-                log.severe("Could not fetch random bytes: " + e.toString());
-                // TODO: This is not nice, now the code will blow up much later
-            }
+    /**
+     * Make Merkle Tree of detached timestamps, with the nonces of a given provider.
+     *
+     * @param fileTimestamps The list of DetachedTimestampFile.
+     * @param nonces         The provider of the nonce of each leaf, by index in the list.
+     * @return merkle tip timestamp.
+     */
+    public static Timestamp makeMerkleTree(List<DetachedTimestampFile> fileTimestamps, NonceProvider nonces) {
+        List<Timestamp> merkleRoots = new ArrayList<>(fileTimestamps.size());
 
-            Timestamp nonceAppendedStamp = fileTimestamp.timestamp.add(new OpAppend(bytesRandom16));
-            Timestamp merkleRoot = nonceAppendedStamp.add(new OpSHA256());
-            merkleRoots.add(merkleRoot);
+        for (DetachedTimestampFile fileTimestamp : fileTimestamps) {
+            merkleRoots.add(OpenTimestamps.makeMerkleLeaf(fileTimestamp, nonces.nonce(merkleRoots.size())));
         }
 
         return Merkle.makeMerkleTree(merkleRoots);    // Merkle tip
     }
 
+    /**
+     * Append a random nonce to a detached timestamp and hash it, giving the leaf that goes into the merkle tree.
+     * The nonce keeps the other leaves of the tree from revealing anything about the stamped file.
+     *
+     * @param fileTimestamp The detached timestamp.
+     * @return The merkle leaf timestamp.
+     */
+    public static Timestamp makeMerkleLeaf(DetachedTimestampFile fileTimestamp) {
+        return OpenTimestamps.makeMerkleLeaf(fileTimestamp, NonceProvider.random().nonce(0));
+    }
+
+    /**
+     * Append a given nonce to a detached timestamp and hash it, giving the leaf that goes into the merkle tree.
+     *
+     * @param fileTimestamp The detached timestamp.
+     * @param nonce         The nonce, see {@link NonceProvider}.
+     * @return The merkle leaf timestamp.
+     */
+    public static Timestamp makeMerkleLeaf(DetachedTimestampFile fileTimestamp, byte[] nonce) {
+        Timestamp nonceAppendedStamp = fileTimestamp.timestamp.add(new OpAppend(nonce));
+
+        return nonceAppendedStamp.add(new OpSHA256());
+    }
+
     /**
      * Compare and verify a detached timestamp.
      *
@@ -305,7 +390,7 @@ public class OpenTimestamps {
 
     public static HashMap<VerifyResult.Chains, VerifyResult> verify(DetachedTimestampFile ots, DetachedTimestampFile stamped) throws Exception {
         if (!Arrays.equals(ots.fileDigest(), stamped.fileDigest())) {
-            throw new Exception("Expected digest: " + Utils.bytesToHex(ots.fileDigest()).toLowerCase() + ". File does not match original!");
+            throw new Exception("Expected digest: " + Hex.encode(ots.fileDigest()) + ". File does not match original!");
         }
 
         return OpenTimestamps.verify(ots.timestamp);
@@ -319,56 +404,124 @@ public class OpenTimestamps {
      * @throws Exception if the verification procedure fails.
      */
     public static HashMap<VerifyResult.Chains, VerifyResult> verify(Timestamp timestamp) throws Exception {
-        HashMap<VerifyResult.Chains, VerifyResult> verifyResults = new HashMap<>();
+        Metrics.Span span = Metrics.get().start(Metrics.VERIFY, null);
 
-        for (Map.Entry<byte[], TimeAttestation> item : timestamp.allAttestations().entrySet()) {
-            byte[] msg = item.getKey();
-            TimeAttestation attestation = item.getValue();
-            VerifyResult verifyResult = null;
-            VerifyResult.Chains chain = null;
+        try {
+            return OpenTimestamps.verify(timestamp.allAttestations());
+        } finally {
+            span.end();
+        }
+    }
 
-            try {
-                if (attestation instanceof BitcoinBlockHeaderAttestation) {
-                    chain = VerifyResult.Chains.BITCOIN;
-                    Long time = verify((BitcoinBlockHeaderAttestation) attestation, msg);
-                    int height = ((BitcoinBlockHeaderAttestation) attestation).getHeight();
-                    verifyResult = new VerifyResult(time, height);
-                } else if (attestation instanceof LitecoinBlockHeaderAttestation) {
-                    chain = VerifyResult.Chains.LITECOIN;
-                    Long time = verify((LitecoinBlockHeaderAttestation) attestation, msg);
-                    int height = ((LitecoinBlockHeaderAttestation) attestation).getHeight();
-                    verifyResult = new VerifyResult(time, height);
-                }
+    /**
+     * Verify a compact timestamp.
+     *
+     * @param timestamp The compact timestamp.
+     * @return HashMap of block heights and timestamps indexed by chain: timestamp in seconds from 1 January 1970.
+     * @throws Exception if the verification procedure fails.
+     */
+    public static HashMap<VerifyResult.Chains, VerifyResult> verify(CompactTimestamp timestamp) throws Exception {
+        Metrics.Span span = Metrics.get().start(Metrics.VERIFY, null);
 
-                if (verifyResult != null && verifyResults.containsKey(chain)) {
-                    if (verifyResult.height < verifyResults.get(chain).height) {
-                        verifyResults.put(chain, verifyResult);
-                    }
+        try {
+            return OpenTimestamps.verify(timestamp.allAttestations());
+        } finally {
+            span.end();
+        }
+    }
+
+    /**
+     * Verify a serialized detached timestamp in a single pass, without deserializing it: see {@link StreamVerifier}.
+     * The result is the one of {@link #verify(DetachedTimestampFile, DetachedTimestampFile)}, and like
+     * {@link DetachedTimestampFile#deserialize(byte[])} it ignores any bytes after the timestamp.
+     *
+     * @param ots    The serialized detached timestamp file.
+     * @param digest The digest of the stamped file.
+     * @return HashMap of block heights and timestamps indexed by chain: timestamp in seconds from 1 January 1970.
+     * @throws Exception if the verification procedure fails.
+     */
+    public static HashMap<VerifyResult.Chains, VerifyResult> verify(byte[] ots, byte[] digest) throws Exception {
+        StreamVerifier verifier = new StreamVerifier(ots);
+
+        if (!Arrays.equals(verifier.getFileDigest(), digest)) {
+            throw new Exception("Expected digest: " + Hex.encode(verifier.getFileDigest()) + ". File does not match original!");
+        }
+
+        Metrics.Span span = Metrics.get().start(Metrics.VERIFY, null);
+
+        try {
+            final HashMap<VerifyResult.Chains, VerifyResult> verifyResults = new HashMap<>();
+
+            verifier.read(new StreamVerifier.Listener() {
+                @Override
+                public void onAttestation(TimeAttestation attestation, byte[] commitment) throws Exception {
+                    verify(verifyResults, attestation, commitment);
                 }
+            }, true);
 
-                if (verifyResult != null && !verifyResults.containsKey(chain)) {
+            return verifyResults;
+        } finally {
+            span.end();
+        }
+    }
+
+    private static HashMap<VerifyResult.Chains, VerifyResult> verify(List<Map.Entry<byte[], TimeAttestation>> attestations) throws Exception {
+        HashMap<VerifyResult.Chains, VerifyResult> verifyResults = new HashMap<>();
+
+        for (Map.Entry<byte[], TimeAttestation> item : attestations) {
+            verify(verifyResults, item.getValue(), item.getKey());
+        }
+
+        return verifyResults;
+    }
+
+    /**
+     * Verify one attestation, keeping the lowest height verified per chain.
+     */
+    private static void verify(HashMap<VerifyResult.Chains, VerifyResult> verifyResults, TimeAttestation attestation, byte[] msg) throws Exception {
+        VerifyResult verifyResult = null;
+        VerifyResult.Chains chain = null;
+
+        try {
+            if (attestation instanceof BitcoinBlockHeaderAttestation) {
+                chain = VerifyResult.Chains.BITCOIN;
+                Long time = verify((BitcoinBlockHeaderAttestation) attestation, msg);
+                int height = ((BitcoinBlockHeaderAttestation) attestation).getHeight();
+                verifyResult = new VerifyResult(time, height);
+            } else if (attestation instanceof LitecoinBlockHeaderAttestation) {
+                chain = VerifyResult.Chains.LITECOIN;
+                Long time = verify((LitecoinBlockHeaderAttestation) attestation, msg);
+                int height = ((LitecoinBlockHeaderAttestation) attestation).getHeight();
+                verifyResult = new VerifyResult(time, height);
+            }
+
+            if (verifyResult != null && verifyResults.containsKey(chain)) {
+                if (verifyResult.height < verifyResults.get(chain).height) {
                     verifyResults.put(chain, verifyResult);
                 }
-            } catch (VerificationException e) {
-                throw e;
-            } catch (Exception e) {
-                String text = "";
-
-                if (chain == VerifyResult.Chains.BITCOIN) {
-                    text = BitcoinBlockHeaderAttestation.chain;
-                } else if (chain == VerifyResult.Chains.LITECOIN) {
-                    text = LitecoinBlockHeaderAttestation.chain;
-                } else if (chain == VerifyResult.Chains.ETHEREUM) {
-                    text = EthereumBlockHeaderAttestation.chain;
-                } else {
-                    throw e;
-                }
+            }
 
-                log.severe(Utils.toUpperFirstLetter(text) + " verification failed: " + e.getMessage());
+            if (verifyResult != null && !verifyResults.containsKey(chain)) {
+                verifyResults.put(chain, verifyResult);
+            }
+        } catch (VerificationException e) {
+            throw e;
+        } catch (Exception e) {
+            String text;
+
+            if (chain == VerifyResult.Chains.BITCOIN) {
+                text = "Bitcoin";
+            } else if (chain == VerifyResult.Chains.LITECOIN) {
+                text = "Litecoin";
+            } else if (chain == VerifyResult.Chains.ETHEREUM) {
+                text = "Ethereum";
+            } else {
                 throw e;
             }
+
+            log.error("{} verification failed", text, e);
+            throw e;
         }
-        return verifyResults;
     }
 
     /**
@@ -384,22 +537,27 @@ public class OpenTimestamps {
     public static Long verify(BitcoinBlockHeaderAttestation attestation, byte[] msg) throws VerificationException, Exception {
         Integer height = attestation.getHeight();
         BlockHeader blockInfo;
+        Metrics metrics = Metrics.get();
 
         try {
             Properties properties = BitcoinNode.readBitcoinConf();
             BitcoinNode bitcoin = new BitcoinNode(properties);
             blockInfo = bitcoin.getBlockHeader(height);
+            metrics.count(Metrics.HEADER_HIT, "bitcoin-node", 1);
         } catch (Exception e1) {
-            log.fine("There is no local node available");
+            log.debug("There is no local node available");
+            metrics.count(Metrics.HEADER_MISS, "bitcoin-node", 1);
 
             try {
                 MultiInsight insight = new MultiInsight(BitcoinBlockHeaderAttestation.chain);
                 String blockHash = insight.blockHash(height);
                 blockInfo = insight.block(blockHash);
-                log.info("Lite-client verification, assuming block " + blockHash + " is valid");
+                metrics.count(Metrics.HEADER_HIT, "insight", 1);
+                log.info("Lite-client verification, assuming block {} is valid", blockHash);
                 insight.getExecutor().shutdown();
             } catch (Exception e2) {
-                log.severe("Could not verify: " + e2.toString());
+                metrics.count(Metrics.HEADER_MISS, "insight", 1);
+                log.error("Could not verify", e2);
                 throw e2;
             }
         }
@@ -424,10 +582,12 @@ public class OpenTimestamps {
             MultiInsight insight = new MultiInsight(LitecoinBlockHeaderAttestation.chain);
             String blockHash = insight.blockHash(height);
             blockInfo = insight.block(blockHash);
-            log.info("Lite-client verification, assuming block " + blockHash + " is valid");
+            Metrics.get().count(Metrics.HEADER_HIT, "insight", 1);
+            log.info("Lite-client verification, assuming block {} is valid", blockHash);
             insight.getExecutor().shutdown();
         } catch (Exception e) {
-            log.severe("Could not verify: " + e.toString());
+            Metrics.get().count(Metrics.HEADER_MISS, "insight", 1);
+            log.error("Could not verify", e);
             throw e;
         }
 
@@ -454,6 +614,16 @@ public class OpenTimestamps {
      * @throws Exception if the upgrading procedure fails.
      */
     public static boolean upgrade(Timestamp timestamp) throws Exception {
+        Metrics.Span span = Metrics.get().start(Metrics.UPGRADE, null);
+
+        try {
+            return OpenTimestamps.upgradeTimestamp(timestamp);
+        } finally {
+            span.end();
+        }
+    }
+
+    private static boolean upgradeTimestamp(Timestamp timestamp) {
         // Check remote calendars for upgrades.
         // This time we only check PendingAttestations - we can't be as agressive.
 
@@ -478,7 +648,7 @@ public class OpenTimestamps {
 
                         upgraded = true;
                     } catch (Exception e) {
-                        log.info("Could not upgrade an incomplete timestamp to make it verifiable: " + e.toString());
+                        log.info("Could not upgrade an incomplete timestamp to make it verifiable: {}", e.getMessage());
                     }
                 }
             }
@@ -497,14 +667,14 @@ public class OpenTimestamps {
                 throw new Exception("Invalid stamp");
             }
         } catch (Exception e) {
-            log.info("Calendar " + calendar.getUrl() + ": " + e.getMessage());
+            log.info("Calendar {}: {}", calendar.getUrl(), e.getMessage());
             throw e;
         }
 
         Set<TimeAttestation> attsFromRemote = upgradedStamp.getAttestations();
 
         if (attsFromRemote.size() > 0) {
-            log.info("Got 1 attestation(s) from " + calendar.getUrl());
+            log.info("Got 1 attestation(s) from {}", calendar.getUrl());
         }
 
         // Set difference from remote attestations & existing attestations
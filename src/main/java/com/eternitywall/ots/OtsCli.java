@@ -9,19 +9,36 @@ import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.Options;
 
+import java.io.BufferedWriter;
 import java.io.File;
 import java.io.FileInputStream;
 import java.io.IOException;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.FileVisitResult;
 import java.nio.file.Files;
 import java.nio.file.Path;
 import java.nio.file.Paths;
+import java.nio.file.SimpleFileVisitor;
+import java.nio.file.attribute.BasicFileAttributes;
 import java.security.NoSuchAlgorithmException;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.HashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Locale;
 import java.util.Map;
 import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
 import java.util.logging.Logger;
 
 /**
@@ -32,6 +49,7 @@ import java.util.logging.Logger;
 public class OtsCli {
 
     private static Logger log = Utils.getLogger(OtsCli.class.getName());
+
     private static String title = "OtsCli";
     private static String version = "1.0";
     private static List<String> calendarsUrl = new ArrayList<>();
@@ -44,7 +62,20 @@ public class OtsCli {
     private static String algorithm = "SHA256";
     private static boolean shrink = false;
     private static boolean verbose = false;
+    private static boolean json = false;
     private static String verifyFile = null;
+    private static int jobs = Runtime.getRuntime().availableProcessors();
+
+    static {
+        // The library logs through slf4j-simple: print its messages with just their level, before it reads its settings
+        if (System.getProperty("org.slf4j.simpleLogger.showThreadName") == null) {
+            System.setProperty("org.slf4j.simpleLogger.showThreadName", "false");
+        }
+
+        if (System.getProperty("org.slf4j.simpleLogger.showLogName") == null) {
+            System.setProperty("org.slf4j.simpleLogger.showLogName", "false");
+        }
+    }
 
     public static void main(String[] args) {
         Options options = new Options();
@@ -56,7 +87,9 @@ public class OtsCli {
         options.addOption("s","shrink",   false,"Shrink upgraded timestamp.");
         options.addOption("V","version",  false,"Print " + title + " version.");
         options.addOption("v","verbose",  false,"Be more verbose..");
+        options.addOption(null,"json",    false,"Show information as JSON, one line per timestamp, including digests if verbose.");
         options.addOption("f","file",     true, "Specify target file explicitly (default: original file present in the same directory without .ots)");
+        options.addOption("j","jobs",     true, "Number of files hashed in parallel when stamping (default: number of processors).");
         options.addOption("h","help",     false,"print this help.");
 
         // Parse the args to retrieve options & command
@@ -88,6 +121,10 @@ public class OtsCli {
                 verbose = true;
             }
 
+            if (line.hasOption("json")) {
+                json = true;
+            }
+
             if (line.hasOption("V")) {
                 System.out.println("Version: " + title + " v." + version + '\n');
                 return;
@@ -99,13 +136,22 @@ public class OtsCli {
             }
 
             if (line.hasOption("d")) {
-                shasum = Utils.hexToBytes(line.getOptionValue("d"));
+                shasum = Hex.decode(line.getOptionValue("d"));
             }
 
             if (line.hasOption("f")) {
                 verifyFile = line.getOptionValue("f");
             }
 
+            if (line.hasOption("j")) {
+                jobs = Integer.valueOf(line.getOptionValue("j"));
+
+                if (jobs < 1) {
+                    System.out.println("Jobs: " + jobs + " must be at least 1\n");
+                    return;
+                }
+            }
+
             if (line.hasOption("a")) {
                 algorithm = line.getOptionValue("a");
 
@@ -137,7 +183,11 @@ public class OtsCli {
                     break;
                 }
 
-                info(files.get(0), verbose);
+                if (json) {
+                    infoJson(files, verbose);
+                } else {
+                    info(files.get(0), verbose);
+                }
 
                 break;
             case "stamp":
@@ -152,6 +202,28 @@ public class OtsCli {
                     System.out.println(title + ": bad options number ");
                 }
 
+                break;
+            case "stampdir":
+            case "sd":
+                if (files.isEmpty()) {
+                    System.out.println("Create timestamps of all files under a directory, saved in a single manifest.\n");
+                    System.out.println(title + ": bad options number ");
+                    break;
+                }
+
+                stampdir(files.get(0), calendarsUrl, m, signatureFile, algorithm);
+
+                break;
+            case "expand":
+            case "e":
+                if (files.isEmpty()) {
+                    System.out.println("Expand a manifest into one .ots file per stamped file.\n");
+                    System.out.println(title + ": bad options number ");
+                    break;
+                }
+
+                expand(files.get(0), files.size() > 1 ? files.get(1) : null);
+
                 break;
             case "verify":
             case "v":
@@ -213,13 +285,41 @@ public class OtsCli {
             Path pathOts = Paths.get(argsOts);
             byte[] byteOts = Files.readAllBytes(pathOts);
             DetachedTimestampFile detached = DetachedTimestampFile.deserialize(byteOts);
-            String infoResult = OpenTimestamps.info(detached, verbose);
-            System.out.println(infoResult);
+            // Straight to the console, large proofs are never held as one string
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out));
+            OpenTimestamps.info(detached, verbose, out);
+            out.append(System.lineSeparator());
+            out.flush();
         } catch (IOException e) {
             log.severe("No valid file: " + e);
         }
     }
 
+    /**
+     * Write every timestamp as a line of JSON, see {@link TimestampJson}. A file that can't be read gets a line with
+     * its "error" instead.
+     */
+    public static void infoJson(List<String> argsOts, boolean digests) {
+        try {
+            Writer out = new BufferedWriter(new OutputStreamWriter(System.out, StandardCharsets.UTF_8));
+
+            for (String argOts : argsOts) {
+                try {
+                    DetachedTimestampFile detached = DetachedTimestampFile.deserialize(Files.readAllBytes(Paths.get(argOts)));
+                    TimestampJson.write(out, argOts, detached, digests);
+                } catch (IOException | RuntimeException e) {
+                    TimestampJson.writeError(out, argOts, "No valid file: " + e);
+                }
+
+                out.write('\n');
+            }
+
+            out.flush();
+        } catch (IOException e) {
+            log.severe("Output error: " + e);
+        }
+    }
+
     private static void multistamp(List<String> argsFiles, List<String> calendarsUrl, Integer m, String signatureFile, String algorithm) {
         // Parse input privateUrls
         HashMap<String, String> privateUrls = new HashMap<>();
@@ -233,31 +333,20 @@ public class OtsCli {
             }
         }
 
-        // Make list of detached files
-        HashMap<String, DetachedTimestampFile> mapFiles = new HashMap<>();
+        // Hash the files in parallel, adding each one to the merkle tree as soon as it is hashed
+        List<String> uniqueFiles = new ArrayList<>(new LinkedHashSet<>(argsFiles));
+        MerkleBuilder merkleBuilder = new MerkleBuilder();
+        HashMap<String, DetachedTimestampFile> mapFiles = hashFiles(uniqueFiles, algorithm, merkleBuilder);
 
-        for (String argsFile : argsFiles) {
-            try {
-                File file = new File(argsFile);
-                Hash hash = Hash.from(file, Hash.getOp(algorithm)._TAG());
-                mapFiles.put(argsFile, DetachedTimestampFile.from(hash));
-            } catch (IOException e) {
-                e.printStackTrace();
-                log.severe("File read error: " + e);
-                return;
-            } catch (NoSuchAlgorithmException e) {
-                e.printStackTrace();
-                log.severe("Crypto error: " + e);
-                return;
-            }
+        if (mapFiles == null) {
+            return;
         }
 
         // Stamping
         Timestamp stampResult;
 
         try {
-            List<DetachedTimestampFile> detaches = new ArrayList(mapFiles.values());
-            stampResult = OpenTimestamps.stamp(detaches, calendarsUrl, m, privateUrls);
+            stampResult = OpenTimestamps.stampMerkleTip(merkleBuilder.build(), calendarsUrl, m, privateUrls);
 
             if (stampResult == null) {
                 throw new IOException();
@@ -291,6 +380,180 @@ public class OtsCli {
         }
     }
 
+    private static void stampdir(String argsDir, List<String> calendarsUrl, Integer m, String signatureFile, String algorithm) {
+        // Parse input privateUrls
+        HashMap<String, String> privateUrls = new HashMap<>();
+
+        if (signatureFile != null && signatureFile != "") {
+            try {
+                privateUrls = readSignature(signatureFile);
+            } catch (Exception e) {
+                log.severe("No valid signature file: " + e);
+                return;
+            }
+        }
+
+        // The manifest goes next to the directory, so that stamping the directory again doesn't include it
+        final Path root = Paths.get(argsDir).toAbsolutePath().normalize();
+        String argsManifest = root + ".otsm";
+
+        if (!Files.isDirectory(root)) {
+            System.out.println("'" + argsDir + "' is not a directory");
+            return;
+        }
+
+        if (Files.exists(Paths.get(argsManifest))) {
+            System.out.println("File '" + argsManifest + "' already exist");
+            return;
+        }
+
+        // Walk the tree, leaving out existing proofs
+        final List<String> argsFiles = new ArrayList<>();
+
+        try {
+            Files.walkFileTree(root, new SimpleFileVisitor<Path>() {
+                @Override
+                public FileVisitResult visitFile(Path file, BasicFileAttributes attrs) {
+                    if (attrs.isRegularFile() && !file.toString().endsWith(".ots")) {
+                        argsFiles.add(file.toString());
+                    }
+
+                    return FileVisitResult.CONTINUE;
+                }
+            });
+        } catch (IOException e) {
+            log.severe("Directory read error: " + e);
+            return;
+        }
+
+        if (argsFiles.isEmpty()) {
+            System.out.println("No files to stamp in '" + argsDir + "'");
+            return;
+        }
+
+        Collections.sort(argsFiles);
+        MerkleBuilder merkleBuilder = new MerkleBuilder();
+        HashMap<String, DetachedTimestampFile> mapFiles = hashFiles(argsFiles, algorithm, merkleBuilder);
+
+        if (mapFiles == null) {
+            return;
+        }
+
+        // Stamping
+        try {
+            OpenTimestamps.stampMerkleTip(merkleBuilder.build(), calendarsUrl, m, privateUrls);
+        } catch (IOException e) {
+            e.printStackTrace();
+            log.severe("Stamp error: " + e);
+
+            return;
+        }
+
+        // Generate the manifest, with paths relative to the directory
+        StampManifest manifest = new StampManifest();
+
+        for (Map.Entry<String, DetachedTimestampFile> entry : mapFiles.entrySet()) {
+            String relative = root.relativize(Paths.get(entry.getKey())).toString().replace(File.separatorChar, '/');
+            manifest.put(relative, entry.getValue());
+        }
+
+        try {
+            manifest.write(new File(argsManifest));
+            System.out.println("The timestamp manifest '" + argsManifest + "' has been created with " + manifest.size() + " proofs!");
+        } catch (IOException e) {
+            e.printStackTrace();
+            log.severe("File '" + argsManifest + "' writing error: " + e);
+        }
+    }
+
+    private static void expand(String argsManifest, String argsDir) {
+        if (argsDir == null) {
+            argsDir = argsManifest.endsWith(".otsm") ? argsManifest.substring(0, argsManifest.length() - 5) : ".";
+        }
+
+        try {
+            StampManifest manifest = StampManifest.read(new File(argsManifest));
+            int count = manifest.expand(new File(argsDir));
+            System.out.println(count + " of " + manifest.size() + " timestamp proofs have been created in '" + argsDir + "'");
+        } catch (IOException e) {
+            log.severe("No valid manifest: " + e);
+        }
+    }
+
+    /**
+     * Hash files in parallel, on at most {@link #jobs} threads, adding the merkle leaf of each file to the builder as
+     * soon as the file is hashed.
+     *
+     * @return The detached timestamp of each file, or null if a file could not be hashed.
+     */
+    private static HashMap<String, DetachedTimestampFile> hashFiles(List<String> uniqueFiles, String algorithm, MerkleBuilder merkleBuilder) {
+        HashMap<String, DetachedTimestampFile> mapFiles = new HashMap<>();
+        final byte algorithmTag = Hash.getOp(algorithm)._TAG();
+        ExecutorService executor = Executors.newFixedThreadPool(Math.max(1, Math.min(jobs, uniqueFiles.size())));
+        CompletionService<DetachedTimestampFile> completionService = new ExecutorCompletionService<>(executor);
+        Map<Future<DetachedTimestampFile>, String> hashing = new HashMap<>();
+
+        for (final String argsFile : uniqueFiles) {
+            Future<DetachedTimestampFile> future = completionService.submit(new Callable<DetachedTimestampFile>() {
+                @Override
+                public DetachedTimestampFile call() throws IOException, NoSuchAlgorithmException {
+                    return DetachedTimestampFile.from(Hash.from(new File(argsFile), algorithmTag));
+                }
+            });
+            hashing.put(future, argsFile);
+        }
+
+        long start = System.nanoTime();
+        long lastReport = start;
+        long totalBytes = 0;
+
+        try {
+            for (int i = 1; i <= uniqueFiles.size(); i++) {
+                Future<DetachedTimestampFile> future = completionService.take();
+                String argsFile = hashing.remove(future);
+                DetachedTimestampFile detached = future.get();
+                mapFiles.put(argsFile, detached);
+                merkleBuilder.add(OpenTimestamps.makeMerkleLeaf(detached));
+                totalBytes += new File(argsFile).length();
+
+                long now = System.nanoTime();
+
+                if (verbose && now - lastReport >= 1000000000L) {
+                    System.out.println(hashingReport(i, uniqueFiles.size(), totalBytes, now - start));
+                    lastReport = now;
+                }
+            }
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+
+            if (cause instanceof NoSuchAlgorithmException) {
+                log.severe("Crypto error: " + cause);
+            } else {
+                log.severe("File read error: " + cause);
+            }
+
+            return null;
+        } catch (InterruptedException e) {
+            log.severe("Hashing interrupted: " + e);
+            Thread.currentThread().interrupt();
+
+            return null;
+        } finally {
+            executor.shutdownNow();
+        }
+
+        System.out.println(hashingReport(uniqueFiles.size(), uniqueFiles.size(), totalBytes, System.nanoTime() - start));
+
+        return mapFiles;
+    }
+
+    private static String hashingReport(int done, int total, long bytes, long nanos) {
+        double megabytes = bytes / (1024.0 * 1024.0);
+        double seconds = Math.max(nanos, 1) / 1e9;
+
+        return String.format(Locale.ROOT, "Hashed %d/%d files, %.1f MiB in %.1f s (%.1f MiB/s)", done, total, megabytes, seconds, megabytes / seconds);
+    }
+
     private static void stamp(Hash hash, List<String> calendarsUrl, Integer m, String signatureFile) {
         HashMap<String, String> privateUrls = new HashMap<>();
 
@@ -302,7 +565,7 @@ public class OtsCli {
             }
         }
 
-        String argsOts = Utils.bytesToHex(shasum) + ".ots";
+        String argsOts = Hex.encodeUpper(shasum) + ".ots";
         Path path = Paths.get(argsOts);
 
         if (path.toFile().exists()) {
@@ -324,7 +587,6 @@ public class OtsCli {
         try {
             Path pathOts = Paths.get(argsOts);
             byte[] byteOts = Files.readAllBytes(pathOts);
-            DetachedTimestampFile detachedOts = DetachedTimestampFile.deserialize(byteOts);
             DetachedTimestampFile detached;
             HashMap<VerifyResult.Chains, VerifyResult> verifyResults;
 
@@ -335,12 +597,12 @@ public class OtsCli {
                 detached = DetachedTimestampFile.from(new OpSHA256(), file);
             } else {
                 // Read from hash option
-                System.out.println("Assuming target hash is '" + Utils.bytesToHex(hash.getValue()) + "'");
+                System.out.println("Assuming target hash is '" + Hex.encodeUpper(hash.getValue()) + "'");
                 detached = DetachedTimestampFile.from(hash);
             }
 
             try {
-                verifyResults = OpenTimestamps.verify(detachedOts, detached);
+                verifyResults = OpenTimestamps.verify(byteOts, detached.fileDigest());
 
                 for (Map.Entry<VerifyResult.Chains, VerifyResult> entry : verifyResults.entrySet()) {
                     String chain = "";
@@ -404,10 +666,12 @@ public class OtsCli {
 
     public static void showHelp() {
         System.out.println(
-                "Usage: " + title + " [options] {stamp,s,upgrade,u,verify,v,info,i} [arguments]\n\n" +
+                "Usage: " + title + " [options] {stamp,s,stampdir,sd,expand,e,upgrade,u,verify,v,info,i} [arguments]\n\n" +
                 "Subcommands:\n" +
                 "s, stamp FILES\tCreate timestamp with the aid of a remote calendar, the output receipt will be saved with .ots\n" +
-                "i, info FILE_OTS \tShow information on a timestamp.\n" +
+                "sd, stampdir DIR\tCreate timestamps of all files under DIR, saved together in the manifest DIR.otsm\n" +
+                "e, expand MANIFEST [DIR]\tWrite the proofs of a manifest as .ots files next to the stamped files.\n" +
+                "i, info FILE_OTS \tShow information on a timestamp; with --json, on every FILE_OTS given.\n" +
                 "v, verify FILE_OTS\tVerify the timestamp attestations, expect original file present in the same directory without .ots\n" +
                 "u, upgrade FILE_OTS\tUpgrade remote calendar timestamps to be locally verifiable.\n\n" +
                 "Options:\n" +
@@ -417,6 +681,8 @@ public class OtsCli {
                         "-a, --algorithm\tPass the hashing algorithm of the document to timestamp: SHA256(default), SHA1, RIPEMD160.\n"+
                         "-m     \t\tCommitments are sent to remote calendars in the event of timeout the timestamp is considered done if at least M calendars replied.\n" +
                         "-s, --shrink   \tShrink upgraded timestamp.\n"+
+                        "--json         \tShow information as JSON, one line per timestamp, including digests if verbose.\n"+
+                        "-j, --jobs     \tNumber of files hashed in parallel when stamping (default: number of processors).\n"+
                         "-V, --version  \tprint " + title + " version.\n" +
                         "-h, --help     \tprint this help.\n" +
                         "\nLicense: LGPL."
@@ -0,0 +1,875 @@
+package com.eternitywall.ots;
+
+import com.eternitywall.ots.attestation.TimeAttestation;
+import com.eternitywall.ots.attestation.UnknownAttestation;
+import com.eternitywall.ots.op.Op;
+import com.eternitywall.ots.op.OpCrypto;
+
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.AtomicMoveNotSupportedException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * An append-only container of many proofs, looked up by file digest.
+ * <p>
+ * Proofs are appended to the archive file as records. Proofs stamped together under one merkle tip are identical
+ * from that tip upward (the calendar path and its attestations), so a batch writes the tip's subtree once as a tip
+ * record, and each proof record only holds the path from its file digest up to the tip, where a reference to the tip
+ * record takes the place of the shared subtree. Adding a newer version of a proof, for instance once it has been
+ * upgraded, appends a new record that replaces the older one in the index.
+ * <p>
+ * A separate index file, next to the archive with an .idx suffix, maps every file digest to the offset of its latest
+ * proof record. Its entries are sorted and of fixed size, and it is memory-mapped, so a lookup is a binary search
+ * touching O(log n) entries. The index is rewritten by {@link #commit()}, and records the length of the archive it
+ * covers. Records past that length were appended after the last commit: opening the archive scans them again, keeps
+ * the ones that are whole and cuts the archive at the first that isn't, such as one left by an interrupted write.
+ * <p>
+ * Proofs of a batch read from the archive share one in-memory {@link Timestamp} node for their tip, so upgrading
+ * the tip through any of them upgrades all of them. {@link #commit()} appends such a changed tip as a new tip record
+ * naming the record it replaces, so every proof of the batch sees the upgrade on disk as well, for the cost of one
+ * tip. Records are never written in place: which tip record replaces which is kept in the index, and found again by
+ * scanning when the index doesn't cover the new record yet.
+ * <p>
+ * Index layout: the index magic, the length of the archive covered (8 bytes), the number of replaced tip records
+ * (4 bytes) and for each the offset of the replaced record and of the record replacing it (8 bytes each), then the
+ * entries in key order, each the key (the digest zero-padded to 32 bytes, then its length) and the offset of the
+ * proof record (8 bytes).
+ * <p>
+ * Record layout: the record type (1 byte), the body length (4 bytes) and the body. A tip record body is the offset
+ * of the tip record it replaces (8 bytes, 0 for a new tip), the tip message as varbytes and the serialized tip
+ * timestamp; a proof record body is a serialized detached timestamp file.
+ */
+public class ProofArchive implements Closeable {
+
+    /**
+     * Header magic bytes of the archive file, in the style of the detached timestamp file.
+     *
+     * @default \x00OpenTimestamps\x00\x00Archive\x00\xbf\x89\xe2\xe8\x84\xe8\x92\x94
+     */
+    static byte[] HEADER_MAGIC = {(byte) 0x00, (byte) 0x4f, (byte) 0x70, (byte) 0x65, (byte) 0x6e,
+        (byte) 0x54, (byte) 0x69, (byte) 0x6d, (byte) 0x65, (byte) 0x73,
+        (byte) 0x74, (byte) 0x61, (byte) 0x6d, (byte) 0x70, (byte) 0x73, (byte) 0x00, (byte) 0x00,
+        (byte) 0x41, (byte) 0x72, (byte) 0x63, (byte) 0x68, (byte) 0x69, (byte) 0x76, (byte) 0x65, (byte) 0x00,
+        (byte) 0xbf, (byte) 0x89, (byte) 0xe2, (byte) 0xe8, (byte) 0x84, (byte) 0xe8, (byte) 0x92,
+        (byte) 0x94};
+
+    /**
+     * Header magic bytes of the index file.
+     *
+     * @default \x00OpenTimestamps\x00\x00Index\x00\xbf\x89\xe2\xe8\x84\xe8\x92\x94
+     */
+    static byte[] INDEX_MAGIC = {(byte) 0x00, (byte) 0x4f, (byte) 0x70, (byte) 0x65, (byte) 0x6e,
+        (byte) 0x54, (byte) 0x69, (byte) 0x6d, (byte) 0x65, (byte) 0x73,
+        (byte) 0x74, (byte) 0x61, (byte) 0x6d, (byte) 0x70, (byte) 0x73, (byte) 0x00, (byte) 0x00,
+        (byte) 0x49, (byte) 0x6e, (byte) 0x64, (byte) 0x65, (byte) 0x78, (byte) 0x00,
+        (byte) 0xbf, (byte) 0x89, (byte) 0xe2, (byte) 0xe8, (byte) 0x84, (byte) 0xe8, (byte) 0x92,
+        (byte) 0x94};
+
+    static byte MAJOR_VERSION = 2;
+
+    static final byte TIP_RECORD = 1;
+    static final byte PROOF_RECORD = 2;
+
+    /**
+     * Tag of the attestation that stands in for a shared tip subtree inside a proof record. Its payload is the offset
+     * of the tip record. It only ever appears inside the archive file.
+     */
+    static final byte[] TIP_REFERENCE_TAG = {(byte) 0x0a, (byte) 0x72, (byte) 0x63, (byte) 0x68,
+        (byte) 0x74, (byte) 0x69, (byte) 0x70, (byte) 0x0a};
+
+    private static final int RECORD_HEADER_SIZE = 5;
+    private static final int DIGEST_SIZE = 32;
+    private static final int KEY_SIZE = DIGEST_SIZE + 1;    // The digest zero-padded to 32 bytes, then its length
+    private static final int ENTRY_SIZE = KEY_SIZE + 8;
+    private static final int INDEX_HEADER_SIZE = INDEX_MAGIC.length + 8 + 4;
+    private static final int LINK_SIZE = 8 + 8;
+
+    // Entries per mapped segment of the index, a mapping being limited to 2 GiB
+    private static final int SEGMENT_ENTRIES = Integer.MAX_VALUE / ENTRY_SIZE;
+
+    private static final Comparator<byte[]> KEY_ORDER = new Comparator<byte[]>() {
+        @Override
+        public int compare(byte[] a, byte[] b) {
+            return Utils.compare(a, b);
+        }
+    };
+
+    private final File indexFile;
+    private final FileChannel data;
+    private long end;
+    private long committed;
+    private MappedByteBuffer[] index;
+    private int indexCount;
+    private final TreeMap<byte[], Long> pending = new TreeMap<>(KEY_ORDER);
+    private final Map<Long, SharedTip> tips = new HashMap<>();
+    private final TreeMap<Long, Long> tipSuccessors = new TreeMap<>();
+
+    /**
+     * Open an archive, creating it if it doesn't exist.
+     *
+     * @param file The archive file.
+     * @throws IOException if the archive can't be opened or is not an archive.
+     */
+    public ProofArchive(File file) throws IOException {
+        this.indexFile = new File(file.getPath() + ".idx");
+        this.data = FileChannel.open(file.toPath(), StandardOpenOption.READ, StandardOpenOption.WRITE, StandardOpenOption.CREATE);
+
+        try {
+            if (this.data.size() == 0) {
+                ByteBuffer header = ByteBuffer.allocate(HEADER_MAGIC.length + 1);
+                header.put(HEADER_MAGIC).put(MAJOR_VERSION).flip();
+                this.writeFully(header, 0);
+                this.end = header.capacity();
+                this.committed = this.end;
+            } else {
+                ByteBuffer header = this.readFully(0, HEADER_MAGIC.length + 1);
+                byte[] magic = new byte[HEADER_MAGIC.length];
+                header.get(magic);
+
+                if (!Arrays.equals(HEADER_MAGIC, magic)) {
+                    throw new IOException("Not a proof archive: " + file);
+                }
+
+                if (header.get() != MAJOR_VERSION) {
+                    throw new IOException("Unsupported proof archive version: " + file);
+                }
+
+                this.end = this.data.size();
+            }
+
+            if (this.indexFile.exists()) {
+                this.mapIndex();
+
+                if (this.committed > this.end) {
+                    throw new IOException("Proof archive shorter than its index: " + file);
+                }
+
+                // Whatever was appended after the last commit may have been cut short
+                this.scan(this.committed, this.committed);
+            } else if (this.end > HEADER_MAGIC.length + 1) {
+                this.reindex();
+            } else {
+                this.committed = this.end;
+            }
+        } catch (IOException e) {
+            this.data.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Append a proof on its own.
+     *
+     * @param proof The proof.
+     * @throws IOException if the archive can't be written.
+     */
+    public synchronized void add(DetachedTimestampFile proof) throws IOException {
+        this.appendProof(proof);
+    }
+
+    /**
+     * Append a batch of proofs that share the subtree above a merkle tip, writing that subtree only once.
+     * The tip is the lowest node that all proofs hold as the same object, as they do after
+     * {@link OpenTimestamps#stamp(List)}; proofs that share no node are appended on their own.
+     *
+     * @param proofs The proofs.
+     * @throws IOException if the archive can't be written.
+     */
+    public synchronized void add(List<DetachedTimestampFile> proofs) throws IOException {
+        Timestamp tip = proofs.size() > 1 ? sharedTip(proofs) : null;
+
+        if (tip == null) {
+            for (DetachedTimestampFile proof : proofs) {
+                this.appendProof(proof);
+            }
+        } else {
+            this.add(proofs, tip);
+        }
+    }
+
+    /**
+     * Append a batch of proofs that share the subtree above a merkle tip, writing that subtree only once.
+     * Proofs that don't lead to the tip are appended on their own.
+     *
+     * @param proofs The proofs.
+     * @param tip    The merkle tip they share, as passed to {@link OpenTimestamps#stampMerkleTip}.
+     * @throws IOException if the archive can't be written.
+     */
+    public synchronized void add(List<DetachedTimestampFile> proofs, Timestamp tip) throws IOException {
+        long tipOffset = this.appendRecord(TIP_RECORD, tipBody(0, tip));
+
+        TimeAttestation reference = new UnknownAttestation(TIP_REFERENCE_TAG, ByteBuffer.allocate(8).putLong(tipOffset).array());
+
+        for (DetachedTimestampFile proof : proofs) {
+            Timestamp pruned = pruneAt(proof.timestamp, tip.msg, reference);
+
+            if (pruned == null) {
+                this.appendProof(proof);
+            } else {
+                this.appendProof(new DetachedTimestampFile(proof.fileHashOp, pruned));
+            }
+        }
+    }
+
+    /**
+     * Look up the latest proof of a file.
+     *
+     * @param digest The digest of the file.
+     * @return The proof, or null if the archive holds none for that digest.
+     * @throws IOException if the archive can't be read or is corrupt.
+     */
+    public synchronized DetachedTimestampFile get(byte[] digest) throws IOException {
+        byte[] key = key(digest);
+        Long offset = this.pending.get(key);
+
+        if (offset == null) {
+            offset = this.searchIndex(key);
+        }
+
+        if (offset == null) {
+            return null;
+        }
+
+        DetachedTimestampFile proof = this.readProof(offset);
+
+        if (!Arrays.equals(digest, proof.fileDigest())) {
+            throw new IOException("Corrupt proof archive index for " + Hex.encodeUpper(digest));
+        }
+
+        return proof;
+    }
+
+    /**
+     * Return the number of distinct file digests in the archive.
+     *
+     * @return The number of proofs that can be looked up.
+     */
+    public synchronized int size() {
+        int count = this.indexCount;
+
+        for (byte[] key : this.pending.keySet()) {
+            if (this.searchIndex(key) == null) {
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * Make the proofs appended so far durable and visible in the index file.
+     *
+     * @throws IOException if the archive can't be written.
+     */
+    public synchronized void commit() throws IOException {
+        this.writeBackTips();
+
+        if (this.pending.isEmpty() && this.end == this.committed) {
+            return;
+        }
+
+        // The records must be on disk before an index that points to them
+        this.data.force(false);
+
+        File tmp = new File(this.indexFile.getPath() + ".tmp");
+
+        try (DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmp), 1048576))) {
+            out.write(INDEX_MAGIC);
+            out.writeLong(this.end);
+            out.writeInt(this.tipSuccessors.size());
+
+            for (Map.Entry<Long, Long> link : this.tipSuccessors.entrySet()) {
+                out.writeLong(link.getKey());
+                out.writeLong(link.getValue());
+            }
+
+            // Merge the sorted index with the sorted pending entries; a pending entry replaces an indexed one
+            Iterator<Map.Entry<byte[], Long>> it = this.pending.entrySet().iterator();
+            Map.Entry<byte[], Long> next = it.hasNext() ? it.next() : null;
+            byte[] key = new byte[KEY_SIZE];
+
+            for (int i = 0; i < this.indexCount; i++) {
+                this.keyAt(i, key);
+
+                while (next != null && Utils.compare(next.getKey(), key) < 0) {
+                    out.write(next.getKey());
+                    out.writeLong(next.getValue());
+                    next = it.hasNext() ? it.next() : null;
+                }
+
+                if (next != null && Utils.compare(next.getKey(), key) == 0) {
+                    continue;
+                }
+
+                out.write(key);
+                out.writeLong(this.offsetAt(i));
+            }
+
+            while (next != null) {
+                out.write(next.getKey());
+                out.writeLong(next.getValue());
+                next = it.hasNext() ? it.next() : null;
+            }
+        }
+
+        this.index = null;
+
+        try {
+            Files.move(tmp.toPath(), this.indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (AtomicMoveNotSupportedException e) {
+            Files.move(tmp.toPath(), this.indexFile.toPath(), StandardCopyOption.REPLACE_EXISTING);
+        }
+
+        this.pending.clear();
+        this.mapIndex();
+    }
+
+    /**
+     * Rebuild the index by scanning every record of the archive. A record cut short at the end of the archive, left
+     * by an interrupted write, is dropped, as is anything after the first bad record past the last commit.
+     *
+     * @throws IOException if the archive can't be read, or a record before the end is corrupt.
+     */
+    public synchronized void reindex() throws IOException {
+        // Only what the index covered is known to have been written whole
+        long trusted = this.index != null ? this.committed : this.data.size();
+        this.index = null;
+        this.indexCount = 0;
+        this.pending.clear();
+        this.tipSuccessors.clear();
+        this.indexFile.delete();
+        this.committed = HEADER_MAGIC.length + 1;
+        this.scan(this.committed, trusted);
+        this.commit();
+    }
+
+    /**
+     * Read the records from an offset to the end of the archive into the pending entries, and cut the archive at the
+     * first bad one. A bad record before the trusted length is only dropped if nothing valid can follow it.
+     */
+    private void scan(long offset, long trusted) throws IOException {
+        long size = this.data.size();
+
+        while (offset < size) {
+            long next = size;
+
+            if (offset + RECORD_HEADER_SIZE <= size) {
+                ByteBuffer header = this.readFully(offset, RECORD_HEADER_SIZE);
+                byte type = header.get();
+                int length = header.getInt();
+                next = offset + RECORD_HEADER_SIZE + length;
+
+                if (length >= 0 && next <= size && this.recover(offset, type, this.readBody(offset, length))) {
+                    offset = next;
+                    continue;
+                }
+            }
+
+            // A write cut short runs up to or past the end of the archive, or leaves zeros behind
+            if (offset < trusted && next < size && !this.zeros(offset, size)) {
+                throw new IOException("Corrupt proof archive record at " + offset);
+            }
+
+            break;
+        }
+
+        if (offset < size) {
+            this.data.truncate(offset);
+        }
+
+        this.end = offset;
+    }
+
+    /**
+     * Check that a record is well formed, and add it to the pending entries if it is a proof.
+     *
+     * @return False if the record is malformed.
+     */
+    private boolean recover(long offset, byte type, byte[] body) {
+        try {
+            StreamDeserializationContext ctx = new StreamDeserializationContext(body);
+
+            if (type == PROOF_RECORD) {
+                if (!ctx.assertMagic(DetachedTimestampFile.HEADER_MAGIC)) {
+                    return false;
+                }
+
+                ctx.readVaruint();
+                OpCrypto fileHashOp = (OpCrypto) Op.deserialize(ctx);
+                byte[] digest = ctx.readBytes(fileHashOp._DIGEST_LENGTH());
+                Timestamp.deserialize(ctx, digest);
+
+                if (ctx.getCounter() != body.length) {
+                    return false;
+                }
+
+                this.pending.put(key(digest), offset);
+
+                return true;
+            } else if (type == TIP_RECORD) {
+                long replaced = ByteBuffer.wrap(ctx.readBytes(8)).getLong();
+                Timestamp.deserialize(ctx, ctx.readVarbytes(Op._MAX_MSG_LENGTH));
+
+                if (ctx.getCounter() != body.length || replaced < 0 || replaced >= offset) {
+                    return false;
+                }
+
+                if (replaced != 0) {
+                    this.tipSuccessors.put(replaced, offset);
+                }
+
+                return true;
+            }
+        } catch (RuntimeException e) {
+            // Not a record this archive wrote
+        }
+
+        return false;
+    }
+
+    private boolean zeros(long from, long to) throws IOException {
+        for (long position = from; position < to; position += 65536) {
+            ByteBuffer chunk = this.readFully(position, (int) Math.min(65536, to - position));
+
+            while (chunk.hasRemaining()) {
+                if (chunk.get() != 0) {
+                    return false;
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Commit the proofs appended so far and close the archive.
+     *
+     * @throws IOException if the archive can't be written.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        try {
+            this.commit();
+        } finally {
+            this.index = null;
+            this.data.close();
+        }
+    }
+
+    private static byte[] tipBody(long replaced, Timestamp tip) {
+        StreamSerializationContext ctx = new StreamSerializationContext();
+        ctx.writeBytes(ByteBuffer.allocate(8).putLong(replaced).array());
+        ctx.writeVarbytes(tip.msg);
+        tip.serialize(ctx);
+
+        return ctx.getOutput();
+    }
+
+    private void appendProof(DetachedTimestampFile proof) throws IOException {
+        long offset = this.appendRecord(PROOF_RECORD, proof.serialize());
+        this.pending.put(key(proof.fileDigest()), offset);
+    }
+
+    private long appendRecord(byte type, byte[] body) throws IOException {
+        ByteBuffer record = ByteBuffer.allocate(RECORD_HEADER_SIZE + body.length);
+        record.put(type).putInt(body.length).put(body).flip();
+
+        long offset = this.end;
+        this.writeFully(record, offset);
+        this.end += record.capacity();
+
+        return offset;
+    }
+
+    private DetachedTimestampFile readProof(long offset) throws IOException {
+        ByteBuffer header = this.readFully(offset, RECORD_HEADER_SIZE);
+
+        if (header.get() != PROOF_RECORD) {
+            throw new IOException("No proof record at " + offset);
+        }
+
+        DetachedTimestampFile proof;
+
+        try {
+            proof = DetachedTimestampFile.deserialize(this.readBody(offset, header.getInt()));
+        } catch (RuntimeException e) {
+            throw new IOException("Corrupt proof record at " + offset + ": " + e, e);
+        }
+
+        // Graft the shared tip subtrees back in place of their references
+        Long rootReference = tipReference(proof.timestamp);
+
+        if (rootReference != null) {
+            Timestamp tip = this.sharedTip(rootReference, proof.timestamp.msg);
+            proof.timestamp.attestations = tip.attestations;
+            proof.timestamp.ops = tip.ops;
+
+            return proof;
+        }
+
+        Deque<Timestamp> stack = new ArrayDeque<>();
+        stack.push(proof.timestamp);
+
+        while (!stack.isEmpty()) {
+            for (Map.Entry<Op, Timestamp> entry : stack.pop().ops.entrySet()) {
+                Long tipOffset = tipReference(entry.getValue());
+
+                if (tipOffset != null) {
+                    entry.setValue(this.sharedTip(tipOffset, entry.getValue().msg));
+                } else {
+                    stack.push(entry.getValue());
+                }
+            }
+        }
+
+        return proof;
+    }
+
+    /**
+     * Return the in-memory tip for a tip record, following it to its latest version, reading it on first use.
+     */
+    private Timestamp sharedTip(long offset, byte[] msg) throws IOException {
+        long latest = offset;
+
+        for (Long successor = this.tipSuccessors.get(latest); successor != null;
+             successor = this.tipSuccessors.get(latest)) {
+            if (successor <= latest) {
+                throw new IOException("Corrupt tip record chain at " + latest);
+            }
+
+            latest = successor;
+        }
+
+        SharedTip tip = this.tips.get(latest);
+
+        if (tip == null) {
+            ByteBuffer header = this.readFully(latest, RECORD_HEADER_SIZE);
+
+            if (header.get() != TIP_RECORD) {
+                throw new IOException("No tip record at " + latest);
+            }
+
+            byte[] body = this.readBody(latest, header.getInt());
+
+            try {
+                StreamDeserializationContext ctx = new StreamDeserializationContext(body);
+                ctx.readBytes(8);
+                byte[] tipMsg = ctx.readVarbytes(Op._MAX_MSG_LENGTH);
+                tip = new SharedTip(Timestamp.deserialize(ctx, tipMsg), Arrays.copyOfRange(body, 8, body.length));
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt tip record at " + latest + ": " + e, e);
+            }
+
+            this.tips.put(latest, tip);
+        }
+
+        if (!Arrays.equals(tip.timestamp.msg, msg)) {
+            throw new IOException("Proof doesn't match tip record at " + offset);
+        }
+
+        return tip.timestamp;
+    }
+
+    /**
+     * Append the tips that changed since they were read as new tip records, each naming the record it replaces.
+     * The in-memory tips stay tracked under their new records, so proofs read before can still upgrade them and
+     * proofs read after share them.
+     */
+    private void writeBackTips() throws IOException {
+        Map<Long, SharedTip> written = new HashMap<>();
+
+        for (Iterator<Map.Entry<Long, SharedTip>> it = this.tips.entrySet().iterator(); it.hasNext(); ) {
+            Map.Entry<Long, SharedTip> entry = it.next();
+            byte[] body = tipBody(entry.getKey(), entry.getValue().timestamp);
+            byte[] serialized = Arrays.copyOfRange(body, 8, body.length);
+
+            if (!Arrays.equals(serialized, entry.getValue().serialized)) {
+                long offset = this.appendRecord(TIP_RECORD, body);
+                this.tipSuccessors.put(entry.getKey(), offset);
+                written.put(offset, new SharedTip(entry.getValue().timestamp, serialized));
+                it.remove();
+            }
+        }
+
+        this.tips.putAll(written);
+    }
+
+    private byte[] readBody(long offset, int length) throws IOException {
+        return this.readFully(offset + RECORD_HEADER_SIZE, length).array();
+    }
+
+    private ByteBuffer readFully(long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining()) {
+            if (this.data.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Unexpected end of proof archive at " + (position + buffer.position()));
+            }
+        }
+
+        buffer.flip();
+
+        return buffer;
+    }
+
+    private void writeFully(ByteBuffer buffer, long position) throws IOException {
+        while (buffer.hasRemaining()) {
+            this.data.write(buffer, position + buffer.position());
+        }
+    }
+
+    private void mapIndex() throws IOException {
+        try (FileChannel channel = FileChannel.open(this.indexFile.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            if (size < INDEX_HEADER_SIZE) {
+                throw new IOException("Corrupt proof archive index: " + this.indexFile);
+            }
+
+            ByteBuffer header = readIndex(channel, 0, INDEX_HEADER_SIZE);
+            byte[] magic = new byte[INDEX_MAGIC.length];
+            header.get(magic);
+
+            if (!Arrays.equals(INDEX_MAGIC, magic)) {
+                throw new IOException("Not a proof archive index: " + this.indexFile);
+            }
+
+            long covered = header.getLong();
+            int links = header.getInt();
+            long entries = INDEX_HEADER_SIZE + (long) links * LINK_SIZE;
+
+            if (links < 0 || links > Integer.MAX_VALUE / LINK_SIZE || entries > size
+                    || (size - entries) % ENTRY_SIZE != 0 || (size - entries) / ENTRY_SIZE > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt proof archive index: " + this.indexFile);
+            }
+
+            ByteBuffer successors = readIndex(channel, INDEX_HEADER_SIZE, links * LINK_SIZE);
+            this.tipSuccessors.clear();
+
+            for (int i = 0; i < links; i++) {
+                this.tipSuccessors.put(successors.getLong(), successors.getLong());
+            }
+
+            int count = (int) ((size - entries) / ENTRY_SIZE);
+            MappedByteBuffer[] segments = new MappedByteBuffer[(count + SEGMENT_ENTRIES - 1) / SEGMENT_ENTRIES];
+
+            for (int i = 0; i < segments.length; i++) {
+                long first = (long) i * SEGMENT_ENTRIES;
+                long length = Math.min(SEGMENT_ENTRIES, count - first) * ENTRY_SIZE;
+                segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, entries + first * ENTRY_SIZE, length);
+            }
+
+            this.committed = covered;
+            this.index = segments;
+            this.indexCount = count;
+        }
+    }
+
+    private ByteBuffer readIndex(FileChannel channel, long position, int length) throws IOException {
+        ByteBuffer buffer = ByteBuffer.allocate(length);
+
+        while (buffer.hasRemaining()) {
+            if (channel.read(buffer, position + buffer.position()) < 0) {
+                throw new IOException("Corrupt proof archive index: " + this.indexFile);
+            }
+        }
+
+        buffer.flip();
+
+        return buffer;
+    }
+
+    private Long searchIndex(byte[] key) {
+        byte[] probe = new byte[KEY_SIZE];
+        int low = 0;
+        int high = this.indexCount - 1;
+
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            this.keyAt(mid, probe);
+            int cmp = Utils.compare(probe, key);
+
+            if (cmp < 0) {
+                low = mid + 1;
+            } else if (cmp > 0) {
+                high = mid - 1;
+            } else {
+                return this.offsetAt(mid);
+            }
+        }
+
+        return null;
+    }
+
+    private void keyAt(int i, byte[] key) {
+        MappedByteBuffer segment = this.index[i / SEGMENT_ENTRIES];
+        int position = (i % SEGMENT_ENTRIES) * ENTRY_SIZE;
+
+        for (int j = 0; j < KEY_SIZE; j++) {
+            key[j] = segment.get(position + j);
+        }
+    }
+
+    private long offsetAt(int i) {
+        return this.index[i / SEGMENT_ENTRIES].getLong((i % SEGMENT_ENTRIES) * ENTRY_SIZE + KEY_SIZE);
+    }
+
+    private static byte[] key(byte[] digest) {
+        if (digest.length > DIGEST_SIZE) {
+            throw new IllegalArgumentException("Digest longer than " + DIGEST_SIZE + " bytes");
+        }
+
+        byte[] key = Arrays.copyOf(digest, KEY_SIZE);
+        key[DIGEST_SIZE] = (byte) digest.length;
+
+        return key;
+    }
+
+    /**
+     * Return the tip record offset if the node is a reference to a tip record.
+     */
+    private static Long tipReference(Timestamp node) {
+        if (node.attestations.size() != 1 || !node.ops.isEmpty()) {
+            return null;
+        }
+
+        TimeAttestation attestation = node.attestations.get(0);
+
+        if (!(attestation instanceof UnknownAttestation) || !Arrays.equals(TIP_REFERENCE_TAG, attestation._TAG())) {
+            return null;
+        }
+
+        return ByteBuffer.wrap(((UnknownAttestation) attestation).getPayload()).getLong();
+    }
+
+    /**
+     * Find the lowest node that every proof holds as the same object.
+     *
+     * @return The node, or null if the proofs share none.
+     */
+    private static Timestamp sharedTip(List<DetachedTimestampFile> proofs) {
+        // Every node once, with the number of its parents not yet counted and the number of proofs reaching it
+        Map<Timestamp, int[]> counts = new IdentityHashMap<>();
+        Deque<Timestamp> stack = new ArrayDeque<>();
+
+        for (DetachedTimestampFile proof : proofs) {
+            int[] count = counts.get(proof.timestamp);
+
+            if (count == null) {
+                count = new int[2];
+                counts.put(proof.timestamp, count);
+                stack.push(proof.timestamp);
+            }
+
+            count[1]++;
+        }
+
+        while (!stack.isEmpty()) {
+            for (Timestamp child : stack.pop().ops.values()) {
+                int[] count = counts.get(child);
+
+                if (count == null) {
+                    counts.put(child, new int[]{1, 0});
+                    stack.push(child);
+                } else {
+                    count[0]++;
+                }
+            }
+        }
+
+        // Add up the proofs from the roots down, taking a node once all of its parents are counted, so the first
+        // node reached by every proof is above all the others
+        Deque<Timestamp> queue = new ArrayDeque<>();
+
+        for (Map.Entry<Timestamp, int[]> entry : counts.entrySet()) {
+            if (entry.getValue()[0] == 0) {
+                queue.add(entry.getKey());
+            }
+        }
+
+        while (!queue.isEmpty()) {
+            Timestamp node = queue.poll();
+            int reached = counts.get(node)[1];
+
+            if (reached == proofs.size()) {
+                return node;
+            }
+
+            for (Timestamp child : node.ops.values()) {
+                int[] count = counts.get(child);
+                count[1] += reached;
+
+                if (--count[0] == 0) {
+                    queue.add(child);
+                }
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Copy the part of a proof below the node with the given message, putting the reference in place of that node's
+     * attestations and ops.
+     *
+     * @return The copy, or null if no node of the proof has the message.
+     */
+    private static Timestamp pruneAt(Timestamp root, byte[] msg, TimeAttestation reference) {
+        Timestamp rootCopy = new Timestamp(root.msg);
+        Deque<Timestamp[]> stack = new ArrayDeque<>();
+        stack.push(new Timestamp[]{root, rootCopy});
+        boolean found = false;
+
+        while (!stack.isEmpty()) {
+            Timestamp[] pair = stack.pop();
+            Timestamp original = pair[0];
+            Timestamp copy = pair[1];
+
+            if (Arrays.equals(original.msg, msg)) {
+                copy.attestations.add(reference);
+                found = true;
+                continue;
+            }
+
+            copy.attestations.addAll(original.attestations);
+
+            for (Map.Entry<Op, Timestamp> entry : original.ops.entrySet()) {
+                Timestamp child = new Timestamp(entry.getValue().msg);
+                copy.ops.put(entry.getKey(), child);
+                stack.push(new Timestamp[]{entry.getValue(), child});
+            }
+        }
+
+        return found ? rootCopy : null;
+    }
+
+    private static class SharedTip {
+        final Timestamp timestamp;
+        final byte[] serialized;
+
+        SharedTip(Timestamp timestamp, byte[] serialized) {
+            this.timestamp = timestamp;
+            this.serialized = serialized;
+        }
+    }
+}
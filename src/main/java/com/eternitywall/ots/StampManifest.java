@@ -0,0 +1,297 @@
+package com.eternitywall.ots;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * A single file holding the proofs of many files, indexed by path.
+ * Stamping a whole directory tree this way costs one write instead of one .ots file per stamped file. Any proof
+ * can be read on its own through the index at the end of the manifest, and the manifest can be expanded into
+ * individual .ots files later.
+ * <p>
+ * Layout: the header magic and version, then each proof serialized as a detached timestamp file, then the index
+ * (the number of entries, then per entry in path order: the UTF-8 path, the offset and the length of its proof),
+ * and finally the offset of the index as the last 8 bytes.
+ * <p>
+ * Unlike {@link ProofArchive}, which is a store keyed by digest that keeps growing as proofs are added and upgraded,
+ * with a separate index file and tip records that only it can read, a manifest is written once, is keyed by path,
+ * and is a single self-contained file holding plain detached timestamp files. It is meant to travel with the stamped
+ * directory, and to be expanded without this library if need be.
+ */
+public class StampManifest {
+
+    /**
+     * Header magic bytes, in the style of the detached timestamp file.
+     *
+     * @default \x00OpenTimestamps\x00\x00Manifest\x00\xbf\x89\xe2\xe8\x84\xe8\x92\x94
+     */
+    static byte[] HEADER_MAGIC = {(byte) 0x00, (byte) 0x4f, (byte) 0x70, (byte) 0x65, (byte) 0x6e,
+        (byte) 0x54, (byte) 0x69, (byte) 0x6d, (byte) 0x65, (byte) 0x73,
+        (byte) 0x74, (byte) 0x61, (byte) 0x6d, (byte) 0x70, (byte) 0x73, (byte) 0x00, (byte) 0x00,
+        (byte) 0x4d, (byte) 0x61, (byte) 0x6e, (byte) 0x69, (byte) 0x66, (byte) 0x65, (byte) 0x73, (byte) 0x74,
+        (byte) 0x00,
+        (byte) 0xbf, (byte) 0x89, (byte) 0xe2, (byte) 0xe8, (byte) 0x84, (byte) 0xe8, (byte) 0x92,
+        (byte) 0x94};
+
+    static byte MAJOR_VERSION = 1;
+
+    // The path length, offset and proof length of an entry with an empty path
+    private static final int MIN_ENTRY_SIZE = 4 + 8 + 4;
+
+    private final TreeMap<String, DetachedTimestampFile> proofs = new TreeMap<>();
+
+    /**
+     * Add the proof of a file.
+     *
+     * @param path  The path of the file, relative to the stamped directory, with '/' separators.
+     * @param proof The proof of the file.
+     */
+    public void put(String path, DetachedTimestampFile proof) {
+        this.proofs.put(path, proof);
+    }
+
+    /**
+     * Get the proof of a file.
+     *
+     * @param path The path of the file.
+     * @return The proof, or null if the manifest has no proof for that path.
+     */
+    public DetachedTimestampFile get(String path) {
+        return this.proofs.get(path);
+    }
+
+    /**
+     * Return the paths of all files in the manifest, in order.
+     *
+     * @return The paths.
+     */
+    public Set<String> paths() {
+        return Collections.unmodifiableSet(this.proofs.keySet());
+    }
+
+    public int size() {
+        return this.proofs.size();
+    }
+
+    /**
+     * Write the manifest to a file.
+     *
+     * @param file The manifest file.
+     * @throws IOException if the file can't be written.
+     */
+    public void write(File file) throws IOException {
+        try (OutputStream out = new FileOutputStream(file)) {
+            this.write(out);
+        }
+    }
+
+    /**
+     * Write the manifest to a stream. The stream is not closed.
+     *
+     * @param outputStream The stream.
+     * @throws IOException if the stream can't be written.
+     */
+    public void write(OutputStream outputStream) throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(outputStream, 1048576));
+        long[] offsets = new long[this.proofs.size()];
+        int[] lengths = new int[this.proofs.size()];
+        int i = 0;
+
+        out.write(HEADER_MAGIC);
+        out.writeByte(MAJOR_VERSION);
+        long position = HEADER_MAGIC.length + 1;  // DataOutputStream.size() overflows past 2 GiB
+
+        for (DetachedTimestampFile proof : this.proofs.values()) {
+            byte[] serialized = proof.serialize();
+            offsets[i] = position;
+            lengths[i] = serialized.length;
+            out.write(serialized);
+            position += serialized.length;
+            i++;
+        }
+
+        long indexOffset = position;
+        out.writeInt(this.proofs.size());
+        i = 0;
+
+        for (String path : this.proofs.keySet()) {
+            byte[] pathBytes = path.getBytes(StandardCharsets.UTF_8);
+            out.writeInt(pathBytes.length);
+            out.write(pathBytes);
+            out.writeLong(offsets[i]);
+            out.writeInt(lengths[i]);
+            i++;
+        }
+
+        out.writeLong(indexOffset);
+        out.flush();
+    }
+
+    /**
+     * Read a whole manifest.
+     *
+     * @param file The manifest file.
+     * @return The manifest.
+     * @throws IOException if the file can't be read or is not a manifest.
+     */
+    public static StampManifest read(File file) throws IOException {
+        StampManifest manifest = new StampManifest();
+
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            Index index = Index.read(in);
+
+            for (int i = 0; i < index.paths.length; i++) {
+                manifest.put(index.paths[i], index.readProof(in, i));
+            }
+        }
+
+        return manifest;
+    }
+
+    /**
+     * Read the proof of a single file from a manifest, through its index.
+     *
+     * @param file The manifest file.
+     * @param path The path of the file.
+     * @return The proof, or null if the manifest has no proof for that path.
+     * @throws IOException if the file can't be read or is not a manifest.
+     */
+    public static DetachedTimestampFile lookup(File file, String path) throws IOException {
+        try (RandomAccessFile in = new RandomAccessFile(file, "r")) {
+            Index index = Index.read(in);
+            int i = Arrays.binarySearch(index.paths, path);
+
+            return i < 0 ? null : index.readProof(in, i);
+        }
+    }
+
+    /**
+     * Write each proof as an .ots file next to the file it proves. Existing .ots files are left alone.
+     *
+     * @param directory The stamped directory.
+     * @return The number of .ots files written.
+     * @throws IOException if a file can't be written, or a path points outside the directory.
+     */
+    public int expand(File directory) throws IOException {
+        Path root = directory.toPath().toAbsolutePath().normalize();
+        int count = 0;
+
+        for (Map.Entry<String, DetachedTimestampFile> entry : this.proofs.entrySet()) {
+            Path path = root.resolve(entry.getKey() + ".ots").normalize();
+
+            if (!path.startsWith(root)) {
+                throw new IOException("Manifest path outside of " + directory + ": " + entry.getKey());
+            }
+
+            if (!Files.exists(path)) {
+                Files.write(path, entry.getValue().serialize());
+                count++;
+            }
+        }
+
+        return count;
+    }
+
+    /**
+     * The index of a manifest file: its paths, in order, with the position of their proofs.
+     */
+    private static class Index {
+        private String[] paths;
+        private long[] offsets;
+        private int[] lengths;
+
+        private static Index read(RandomAccessFile in) throws IOException {
+            byte[] magic = new byte[HEADER_MAGIC.length];
+
+            if (in.length() < HEADER_MAGIC.length + 1 + 4 + 8) {
+                throw new IOException("Not a stamp manifest");
+            }
+
+            in.readFully(magic);
+
+            if (!Arrays.equals(HEADER_MAGIC, magic)) {
+                throw new IOException("Not a stamp manifest");
+            }
+
+            if (in.readByte() != MAJOR_VERSION) {
+                throw new IOException("Unsupported stamp manifest version");
+            }
+
+            in.seek(in.length() - 8);
+            long indexOffset = in.readLong();
+
+            if (indexOffset < HEADER_MAGIC.length + 1 || indexOffset > in.length() - 12) {
+                throw new IOException("Corrupt stamp manifest index");
+            }
+
+            // Every value is checked against the file before anything is allocated from it
+            long indexEnd = in.length() - 8;
+            in.seek(indexOffset);
+            int count = in.readInt();
+
+            if (count < 0 || count > (indexEnd - indexOffset - 4) / MIN_ENTRY_SIZE) {
+                throw new IOException("Corrupt stamp manifest index");
+            }
+
+            Index index = new Index();
+            index.paths = new String[count];
+            index.offsets = new long[count];
+            index.lengths = new int[count];
+
+            for (int i = 0; i < count; i++) {
+                int pathLength = in.readInt();
+
+                if (pathLength < 0 || pathLength > indexEnd - in.getFilePointer() - (MIN_ENTRY_SIZE - 4)) {
+                    throw new IOException("Corrupt stamp manifest index");
+                }
+
+                byte[] pathBytes = new byte[pathLength];
+                in.readFully(pathBytes);
+                index.paths[i] = new String(pathBytes, StandardCharsets.UTF_8);
+                index.offsets[i] = in.readLong();
+                index.lengths[i] = in.readInt();
+
+                if (index.offsets[i] < HEADER_MAGIC.length + 1 || index.lengths[i] < 0
+                        || index.offsets[i] > indexOffset - index.lengths[i]) {
+                    throw new IOException("Corrupt stamp manifest entry for " + index.paths[i]);
+                }
+
+                // Lookups binary search the paths
+                if (i > 0 && index.paths[i - 1].compareTo(index.paths[i]) >= 0) {
+                    throw new IOException("Corrupt stamp manifest index order at " + index.paths[i]);
+                }
+            }
+
+            if (in.getFilePointer() != indexEnd) {
+                throw new IOException("Corrupt stamp manifest index");
+            }
+
+            return index;
+        }
+
+        private DetachedTimestampFile readProof(RandomAccessFile in, int i) throws IOException {
+            byte[] serialized = new byte[this.lengths[i]];
+            in.seek(this.offsets[i]);
+            in.readFully(serialized);
+
+            try {
+                return DetachedTimestampFile.deserialize(serialized);
+            } catch (RuntimeException e) {
+                throw new IOException("Corrupt proof for " + this.paths[i] + ": " + e, e);
+            }
+        }
+    }
+}
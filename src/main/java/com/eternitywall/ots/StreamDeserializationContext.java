@@ -1,20 +1,39 @@
 package com.eternitywall.ots;
 
+import com.eternitywall.ots.op.OpBinaryPool;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
 import java.util.Arrays;
-import java.util.logging.Logger;
 
 public class StreamDeserializationContext {
 
-    private static Logger log = Utils.getLogger(StreamDeserializationContext.class.getName());
+    private static final Logger log = LoggerFactory.getLogger(StreamDeserializationContext.class);
 
     byte[] buffer;
     int counter;
+    private OpBinaryPool opPool;
 
     public StreamDeserializationContext(byte[] stream) {
         this.buffer = stream;
         this.counter = 0;
     }
 
+    /**
+     * Create a context that interns the binary operations it reads.
+     *
+     * @param stream The serialized bytes.
+     * @param opPool The pool shared by every proof deserialized through it, or null for no interning.
+     */
+    public StreamDeserializationContext(byte[] stream, OpBinaryPool opPool) {
+        this(stream);
+        this.opPool = opPool;
+    }
+
+    public OpBinaryPool getOpPool() {
+        return this.opPool;
+    }
+
     public byte[] getOutput() {
         return this.buffer;
     }
@@ -23,6 +42,15 @@ public class StreamDeserializationContext {
         return this.counter;
     }
 
+    /**
+     * Look at the next byte without reading it.
+     *
+     * @return The next byte, from 0 to 255, or -1 at the end.
+     */
+    public int peek() {
+        return this.counter < this.buffer.length ? this.buffer[this.counter] & 0xff : -1;
+    }
+
     public byte[] read(int l) {
         if (this.counter == this.buffer.length) {
             return null;
@@ -81,10 +109,10 @@ public class StreamDeserializationContext {
         int l = this.readVaruint();
 
         if ((l & 0xff) > maxLen) {
-            log.severe("varbytes max length exceeded;");
+            log.error("varbytes max length exceeded;");
             return null;
         } else if ((l & 0xff) < minLen) {
-            log.severe("varbytes min length not met;");
+            log.error("varbytes min length not met;");
             return null;
         }
 
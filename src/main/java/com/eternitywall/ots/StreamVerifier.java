@@ -0,0 +1,188 @@
+package com.eternitywall.ots;
+
+import com.eternitywall.ots.attestation.TimeAttestation;
+import com.eternitywall.ots.op.Op;
+import com.eternitywall.ots.op.OpBinary;
+import com.eternitywall.ots.op.OpCrypto;
+import com.eternitywall.ots.op.OpUnary;
+
+import java.util.Arrays;
+
+/**
+ * Single pass over a serialized detached timestamp that runs every op as it is read and reports each attestation
+ * with the message it attests, without building the {@link Timestamp} tree. An append or prepend followed by nothing
+ * but a hash is evaluated as one step, without building the concatenation.
+ * <p>
+ * Only the messages of the paths still open are kept: a chain of ops replaces its message as it goes, and a fork
+ * keeps its message until its last branch starts. Memory is then bounded by the number of nested forks rather than
+ * by the size of the proof, which suits verifying a great many proofs in one process.
+ */
+public class StreamVerifier {
+
+    /**
+     * Receiver of the attestations of a timestamp.
+     */
+    public interface Listener {
+
+        /**
+         * Called for every attestation, in the order of the serialization.
+         *
+         * @param attestation The attestation.
+         * @param commitment  The message it attests.
+         * @throws Exception to stop reading.
+         */
+        void onAttestation(TimeAttestation attestation, byte[] commitment) throws Exception;
+    }
+
+    private final StreamDeserializationContext ctx;
+    private final OpCrypto fileHashOp;
+    private final byte[] fileDigest;
+    private boolean read;
+
+    /**
+     * Read the header of a detached timestamp file.
+     *
+     * @param ots The serialized detached timestamp file.
+     * @throws IllegalArgumentException if the bytes are not a detached timestamp file.
+     */
+    public StreamVerifier(byte[] ots) {
+        this.ctx = new StreamDeserializationContext(ots);
+
+        if (!this.ctx.assertMagic(DetachedTimestampFile.HEADER_MAGIC)) {
+            throw new IllegalArgumentException("Not a timestamp file");
+        }
+
+        this.ctx.readVaruint();
+        Op op = Op.deserialize(this.ctx);
+
+        if (!(op instanceof OpCrypto)) {
+            throw new IllegalArgumentException("Not a file hash operation: " + op);
+        }
+
+        this.fileHashOp = (OpCrypto) op;
+        this.fileDigest = this.ctx.readBytes(this.fileHashOp._DIGEST_LENGTH());
+    }
+
+    /**
+     * Get the hash operation of the stamped file.
+     *
+     * @return The hash operation.
+     */
+    public OpCrypto getFileHashOp() {
+        return this.fileHashOp;
+    }
+
+    /**
+     * Get the digest of the stamped file, the message the timestamp starts from.
+     *
+     * @return The digest.
+     */
+    public byte[] getFileDigest() {
+        return Arrays.copyOf(this.fileDigest, this.fileDigest.length);
+    }
+
+    /**
+     * Read the timestamp, once.
+     *
+     * @param listener The receiver of the attestations.
+     * @throws IllegalArgumentException if the timestamp is malformed or followed by more bytes.
+     * @throws Exception                if the listener fails.
+     */
+    public void read(Listener listener) throws Exception {
+        this.read(listener, false);
+    }
+
+    /**
+     * Read the timestamp, once.
+     *
+     * @param listener      The receiver of the attestations.
+     * @param trailingBytes True to ignore bytes after the timestamp, as {@link DetachedTimestampFile#deserialize}
+     *                      does.
+     * @throws IllegalArgumentException if the timestamp is malformed.
+     * @throws Exception                if the listener fails.
+     */
+    public void read(Listener listener, boolean trailingBytes) throws Exception {
+        if (this.read) {
+            throw new IllegalStateException("Timestamp already read");
+        }
+
+        this.read = true;
+        read(this.ctx, this.fileDigest, listener);
+
+        // The context pads reads past the end with zeros
+        if (this.ctx.getCounter() > this.ctx.getOutput().length) {
+            throw new IllegalArgumentException("Truncated timestamp");
+        }
+
+        if (!trailingBytes && this.ctx.assertEof()) {
+            throw new IllegalArgumentException("Trailing bytes after the timestamp");
+        }
+    }
+
+    /**
+     * Read a serialized timestamp, as {@link Timestamp#deserialize(StreamDeserializationContext, byte[])} would.
+     *
+     * @param ctx        The stream deserialization context.
+     * @param initialMsg The message the timestamp starts from.
+     * @param listener   The receiver of the attestations.
+     * @throws IllegalArgumentException if the timestamp is malformed.
+     * @throws Exception                if the listener fails.
+     */
+    public static void read(StreamDeserializationContext ctx, byte[] initialMsg, Listener listener) throws Exception {
+        // The messages of the timestamps whose items are still being read, as in Timestamp.deserialize. The top
+        // is replaced rather than pushed when the item read is the last of its timestamp.
+        byte[][] stack = new byte[16][];
+        int depth = 0;
+        stack[depth++] = initialMsg;
+
+        while (depth > 0) {
+            byte[] msg = stack[depth - 1];
+            byte tag = readTag(ctx);
+
+            if ((tag & 0xff) == 0xff) {
+                tag = readTag(ctx);
+            } else {
+                depth--;
+            }
+
+            if (tag == 0x00) {
+                listener.onAttestation(TimeAttestation.deserialize(ctx), msg);
+                continue;
+            }
+
+            Op op = Op.deserializeFromTag(ctx, tag);
+
+            if (op == null) {
+                throw new IllegalArgumentException("Unknown operation tag: " + tag);
+            }
+
+            byte[] result;
+            int next = ctx.peek();
+            OpUnary hash = next > 0 && next != 0xff ? OpUnary.getInstance((byte) next) : null;
+
+            // A concatenation whose only item is a hash is never needed by itself: hash the pieces directly
+            if (op instanceof OpBinary && hash instanceof OpCrypto) {
+                ctx.readBytes(1);
+                result = ((OpBinary) op).callThenHash(msg, (OpCrypto) hash);
+            } else {
+                result = op.call(msg);
+            }
+
+            if (depth == stack.length) {
+                stack = Arrays.copyOf(stack, depth * 2);
+            }
+
+            stack[depth++] = result;
+        }
+    }
+
+    private static byte readTag(StreamDeserializationContext ctx) {
+        byte[] tag = ctx.readBytes(1);
+
+        if (tag == null) {
+            throw new IllegalArgumentException("Truncated timestamp");
+        }
+
+        return tag[0];
+    }
+}
@@ -5,9 +5,8 @@ import com.eternitywall.ots.attestation.TimeAttestation;
 import com.eternitywall.ots.op.Op;
 import com.eternitywall.ots.op.OpBinary;
 import com.eternitywall.ots.op.OpSHA256;
-import org.bitcoinj.core.NetworkParameters;
-import org.bitcoinj.core.Transaction;
 
+import java.io.IOException;
 import java.util.*;
 import java.util.Map.Entry;
 
@@ -21,7 +20,7 @@ public class Timestamp {
 
     public byte[] msg;
     public List<TimeAttestation> attestations = new ArrayList<>();
-    public HashMap<Op, Timestamp> ops = new HashMap<>();
+    public HashMap<Op, Timestamp> ops = new OpMap();
 
     /**
      * Create a com.eternitywall.ots.Timestamp object.
@@ -59,31 +58,63 @@ public class Timestamp {
      * @return The deserialized Timestamp.
      */
     public static Timestamp deserialize(StreamDeserializationContext ctx, byte[] initialMsg) {
-        Timestamp timestamp = new Timestamp(initialMsg);
-        byte tag = ctx.readBytes(1)[0];
+        Metrics.Span span = Metrics.get().start(Metrics.DESERIALIZE, null);
 
-        while ((tag & 0xff) == 0xff) {
-            byte current = ctx.readBytes(1)[0];
-            doTagOrAttestation(timestamp, ctx, current, initialMsg);
-            tag = ctx.readBytes(1)[0];
+        try {
+            return Timestamp.deserializeTree(ctx, initialMsg);
+        } finally {
+            span.end();
         }
+    }
 
-        doTagOrAttestation(timestamp, ctx, tag, initialMsg);
+    private static Timestamp deserializeTree(StreamDeserializationContext ctx, byte[] initialMsg) {
+        Timestamp root = new Timestamp(initialMsg);
 
-        return timestamp;
+        // Timestamps whose items are still being read. A timestamp is popped as soon as its last item starts,
+        // so a chain of single ops never grows the stack.
+        Deque<Timestamp> stack = new ArrayDeque<>();
+        stack.push(root);
+
+        while (!stack.isEmpty()) {
+            Timestamp self = stack.peek();
+            byte tag = ctx.readBytes(1)[0];
+
+            if ((tag & 0xff) == 0xff) {
+                tag = ctx.readBytes(1)[0];
+            } else {
+                stack.pop();
+            }
+
+            Timestamp child = doTagOrAttestation(self, ctx, tag);
+
+            if (child != null) {
+                stack.push(child);
+            }
+        }
+
+        return root;
     }
 
-    private static void doTagOrAttestation(Timestamp self, StreamDeserializationContext ctx, byte tag, byte[] initialMsg) {
+    /**
+     * Read one item of a timestamp.
+     *
+     * @return The timestamp the item's op leads to, or null if the item was an attestation.
+     */
+    private static Timestamp doTagOrAttestation(Timestamp self, StreamDeserializationContext ctx, byte tag) {
         if ((tag & 0xff) == 0x00) {
             TimeAttestation attestation = TimeAttestation.deserialize(ctx);
             self.attestations.add(attestation);
-        } else {
-            Op op = Op.deserializeFromTag(ctx, tag);
-            byte[] result = op.call(initialMsg);
 
-            Timestamp timestamp = Timestamp.deserialize(ctx, result);
-            self.ops.put(op, timestamp);
+            return null;
         }
+
+        Op op = Op.deserializeFromTag(ctx, tag);
+        byte[] result = op.call(self.msg);
+
+        Timestamp timestamp = new Timestamp(result);
+        self.ops.put(op, timestamp);
+
+        return timestamp;
     }
 
     /**
@@ -104,6 +135,29 @@ public class Timestamp {
      * @param ctx - The stream serialization context.
      */
     public void serialize(StreamSerializationContext ctx) {
+        // The ops still to be written, one iterator per timestamp, innermost on top
+        Deque<Iterator<Map.Entry<Op, Timestamp>>> stack = new ArrayDeque<>();
+        this.serializeAttestations(ctx, stack);
+
+        while (!stack.isEmpty()) {
+            Iterator<Map.Entry<Op, Timestamp>> it = stack.peek();
+            Map.Entry<Op, Timestamp> entry = it.next();
+
+            if (it.hasNext()) {
+                ctx.writeBytes(new byte[]{(byte) 0xff});
+            } else {
+                stack.pop();
+            }
+
+            entry.getKey().serialize(ctx);
+            entry.getValue().serializeAttestations(ctx, stack);
+        }
+    }
+
+    /**
+     * Write the attestations of this timestamp, and push its ops (if any) for the caller to write next.
+     */
+    private void serializeAttestations(StreamSerializationContext ctx, Deque<Iterator<Map.Entry<Op, Timestamp>>> stack) {
         List<TimeAttestation> sortedAttestations = this.attestations;   // TODO: Hm, this is just a reference copy...
         Collections.sort(sortedAttestations);
 
@@ -126,21 +180,7 @@ public class Timestamp {
                 sortedAttestations.get(sortedAttestations.size() - 1).serialize(ctx);
             }
 
-            int counter = 0;
-            List<Map.Entry<Op, Timestamp>> list = sortToList(this.ops.entrySet());
-
-            for (Map.Entry<Op, Timestamp> entry : list) {
-                Timestamp stamp = entry.getValue();
-                Op op = entry.getKey();
-
-                if (counter < this.ops.size() - 1) {
-                    ctx.writeBytes(new byte[]{(byte) 0xff});
-                    counter++;
-                }
-
-                op.serialize(ctx);
-                stamp.serialize(ctx);
-            }
+            stack.push(this.sortedOps().iterator());
         }
     }
 
@@ -151,24 +191,34 @@ public class Timestamp {
      * @throws Exception different timestamps messages
      */
     public void merge(Timestamp other) throws Exception {
-        if (!Arrays.equals(this.msg, other.msg)) {
-            throw new Exception("Can't merge timestamps for different messages together");
-        }
+        // Pairs of (ours, theirs) still to be merged
+        Deque<Timestamp[]> stack = new ArrayDeque<>();
+        stack.push(new Timestamp[]{this, other});
+
+        while (!stack.isEmpty()) {
+            Timestamp[] pair = stack.pop();
+            Timestamp ours = pair[0];
+            Timestamp theirs = pair[1];
 
-        this.attestations.addAll(other.attestations);
+            if (!Arrays.equals(ours.msg, theirs.msg)) {
+                throw new Exception("Can't merge timestamps for different messages together");
+            }
 
-        for (Map.Entry<Op, Timestamp> entry : other.ops.entrySet()) {
-            Timestamp otherOpStamp = entry.getValue();
-            Op otherOp = entry.getKey();
+            ours.attestations.addAll(theirs.attestations);
 
-            Timestamp ourOpStamp = this.ops.get(otherOp);
+            for (Map.Entry<Op, Timestamp> entry : theirs.ops.entrySet()) {
+                Timestamp otherOpStamp = entry.getValue();
+                Op otherOp = entry.getKey();
 
-            if (ourOpStamp == null) {
-                ourOpStamp = new Timestamp(otherOp.call(this.msg));
-                this.ops.put(otherOp, ourOpStamp);
-            }
+                Timestamp ourOpStamp = ours.ops.get(otherOp);
 
-            ourOpStamp.merge(otherOpStamp);
+                if (ourOpStamp == null) {
+                    ourOpStamp = new Timestamp(otherOp.call(ours.msg));
+                    ours.ops.put(otherOp, ourOpStamp);
+                }
+
+                stack.push(new Timestamp[]{ourOpStamp, otherOpStamp});
+            }
         }
     }
 
@@ -180,12 +230,12 @@ public class Timestamp {
      * @throws Exception no attestation founds.
      */
     public TimeAttestation shrink() throws Exception {
-        HashMap<byte[], TimeAttestation> allAttestations = this.allAttestations();
+        List<Map.Entry<byte[], TimeAttestation>> allAttestations = this.allAttestations();
 
         if (allAttestations.isEmpty()) {
             throw new Exception("Can't shrink timestamp since there are no attestations");
         } else if (allAttestations.size() == 1) {
-            return allAttestations.values().iterator().next();
+            return allAttestations.get(0).getValue();
         } else if (this.ops.isEmpty()) {
             throw new Exception("Can't shrink timestamp since there are no operations");
         }
@@ -212,7 +262,7 @@ public class Timestamp {
 
         // Only pending attestations : return the first
         if (minAttestation == null) {
-            return allAttestations.values().iterator().next();
+            return allAttestations.get(0).getValue();
         }
 
         // Remove attestation if not min attestation
@@ -251,7 +301,44 @@ public class Timestamp {
      */
     public String toString(int indent) {
         StringBuilder builder = new StringBuilder();
-        builder.append(Timestamp.indention(indent)).append("msg: ").append(Utils.bytesToHex(this.msg).toLowerCase()).append("\n");
+
+        // The ops still to be printed, one iterator per timestamp, innermost on top, with the indent of that
+        // timestamp and the index of its next op
+        Deque<Iterator<Map.Entry<Op, Timestamp>>> stack = new ArrayDeque<>();
+        Deque<int[]> positions = new ArrayDeque<>();
+        this.toStringHeader(builder, indent);
+        stack.push(this.sortedOps().iterator());
+        positions.push(new int[]{indent, 0});
+
+        while (!stack.isEmpty()) {
+            Iterator<Map.Entry<Op, Timestamp>> it = stack.peek();
+
+            if (!it.hasNext()) {
+                builder.append('\n');
+                stack.pop();
+                positions.pop();
+                continue;
+            }
+
+            Map.Entry<Op, Timestamp> entry = it.next();
+            Timestamp stamp = entry.getValue();
+            Op op = entry.getKey();
+            int[] position = positions.peek();
+            int level = position[0];
+            int i = position[1]++;
+
+            builder.append(Timestamp.indention(level)).append("[").append(i).append("] op: ").append(op.toString()).append("\n");
+            builder.append(Timestamp.indention(level)).append("[").append(i).append("] timestamp: \n");
+            stamp.toStringHeader(builder, level + 1);
+            stack.push(stamp.sortedOps().iterator());
+            positions.push(new int[]{level + 1, 0});
+        }
+
+        return builder.toString();
+    }
+
+    private void toStringHeader(StringBuilder builder, int indent) {
+        builder.append(Timestamp.indention(indent)).append("msg: ").append(Hex.encode(this.msg)).append("\n");
         builder.append(Timestamp.indention(indent)).append(this.attestations.size()).append(" attestations: \n");
         int i = 0;
 
@@ -260,22 +347,7 @@ public class Timestamp {
             i++;
         }
 
-        i = 0;
         builder.append(Timestamp.indention(indent)).append(this.ops.size()).append(" ops: \n");
-
-        for (Map.Entry<Op, Timestamp> entry : this.ops.entrySet()) {
-            Timestamp stamp = entry.getValue();
-            Op op = entry.getKey();
-
-            builder.append(Timestamp.indention(indent)).append("[").append(i).append("] op: ").append(op.toString()).append("\n");
-            builder.append(Timestamp.indention(indent)).append("[").append(i).append("] timestamp: \n");
-            builder.append(stamp.toString(indent + 1));
-            i++;
-        }
-
-        builder.append('\n');
-
-        return builder.toString();
     }
 
     /**
@@ -307,34 +379,63 @@ public class Timestamp {
     private static final String ANSI_BOLD = "\u001B[1m";
     private static final String ANSI_UNDERLINE = "\u001B[4m";
 
-    private String strResult(boolean verbosity, byte[] parameter, byte[] result) {
-        String rr = "";
+    /**
+     * Append the result of an op, with its argument highlighted, if verbose.
+     *
+     * @param out       - The output.
+     * @param verbosity - Verbose option.
+     * @param parameter - The argument of the op, or null.
+     * @param result    - The result of the op, or null.
+     * @throws IOException if the output fails.
+     */
+    static void appendResult(Appendable out, boolean verbosity, byte[] parameter, byte[] result) throws IOException {
+        if (!verbosity || result == null) {
+            return;
+        }
 
-        if (verbosity && result != null) {
-            rr += " == ";
-            String resultHex = Utils.bytesToHex(result);
+        out.append(" == ");
+        String resultHex = Hex.encode(result);
 
-            if (parameter == null) {
-                rr += resultHex;
-            } else {
-                String parameterHex = Utils.bytesToHex(parameter);
+        if (parameter == null) {
+            out.append(resultHex);
 
-                try {
-                    int index = resultHex.indexOf(parameterHex);
-                    String parameterHexHighlight = ANSI_BOLD + parameterHex + ANSI_ENDC;
+            return;
+        }
 
-                    if (index == 0) {
-                        rr += parameterHexHighlight + resultHex.substring(index + parameterHex.length(), resultHex.length());
-                    } else {
-                        rr += resultHex.substring(0, index) + parameterHexHighlight;
-                    }
-                } catch (Exception err) {
-                    rr += resultHex;
-                }
-            }
+        String parameterHex = Hex.encode(parameter);
+        int index = resultHex.indexOf(parameterHex);
+
+        if (index == 0) {
+            out.append(ANSI_BOLD).append(parameterHex).append(ANSI_ENDC).append(resultHex, parameterHex.length(), resultHex.length());
+        } else if (index > 0) {
+            out.append(resultHex, 0, index).append(ANSI_BOLD).append(parameterHex).append(ANSI_ENDC);
+        } else {
+            out.append(resultHex);
+        }
+    }
+
+    /**
+     * Append a "Bitcoin transaction id" line if the message is a Bitcoin transaction.
+     *
+     * @param out    - The output.
+     * @param indent - Current hierarchical indention.
+     * @param msg    - The message to examine.
+     * @throws IOException if the output fails.
+     */
+    static void appendTransactionId(Appendable out, int indent, byte[] msg) throws IOException {
+        if (Utils.isBitcoinTransaction(msg)) {
+            byte[] tx = Utils.arrayReverse(new OpSHA256().call(new OpSHA256().call(msg)));
+            appendIndention(out, indent);
+            out.append("# Bitcoin transaction id ");
+            Hex.encode(tx, out);
+            out.append('\n');
         }
+    }
 
-        return rr;
+    static void appendIndention(Appendable out, int pos) throws IOException {
+        for (int i = 0; i < pos; i++) {
+            out.append("    ");
+        }
     }
 
     /**
@@ -347,73 +448,91 @@ public class Timestamp {
     public String strTree(int indent, boolean verbosity) {
         StringBuilder builder = new StringBuilder();
 
-        if (!this.attestations.isEmpty()) {
-            for (TimeAttestation attestation : this.attestations) {
-                builder.append(Timestamp.indention(indent));
-                builder.append("verify ").append(attestation.toString()).append(strResult(verbosity, this.msg, null)).append("\n");
-
-                if (attestation instanceof BitcoinBlockHeaderAttestation) {
-                    String tx = Utils.bytesToHex(Utils.arrayReverse(this.msg));
-                    builder.append(Timestamp.indention(indent)).append("# Bitcoin block merkle root ").append(tx.toLowerCase()).append("\n");
-                }
-            }
+        try {
+            this.strTree(builder, indent, verbosity);
+        } catch (IOException e) {
+            // Appending to a StringBuilder doesn't fail
+            throw new IllegalStateException(e);
         }
 
-        if (this.ops.size() > 1) {
-            TreeMap<Op, Timestamp> ordered = new TreeMap<>(this.ops);
+        return builder.toString();
+    }
 
-            for (Map.Entry<Op, Timestamp> entry : ordered.entrySet()) {
-                Timestamp timestamp = entry.getValue();
-                Op op = entry.getKey();
+    /**
+     * Write as tree hierarchical object, line by line. The lines are the ones of {@link #strTree(int, boolean)}, but
+     * nothing is built in memory beyond the current line, so large proofs can go straight to a file or the console.
+     *
+     * @param out       - The output.
+     * @param indent    - Initial hierarchical indention.
+     * @param verbosity - Verbose option.
+     * @throws IOException if the output fails.
+     */
+    public void strTree(Appendable out, int indent, boolean verbosity) throws IOException {
+        // The ops still to be printed, one iterator per timestamp, innermost on top, alongside that timestamp
+        // and its indent. A timestamp is popped as soon as its last op is taken, so chains don't grow the stack.
+        Deque<Iterator<Map.Entry<Op, Timestamp>>> stack = new ArrayDeque<>();
+        Deque<Timestamp> parents = new ArrayDeque<>();
+        Deque<Integer> indents = new ArrayDeque<>();
+        this.strAttestations(out, indent);
+
+        if (!this.ops.isEmpty()) {
+            stack.push(this.sortedOps().iterator());
+            parents.push(this);
+            indents.push(indent);
+        }
 
-                try {
-                    Transaction transaction = new Transaction(NetworkParameters.prodNet(), this.msg);
-                    byte[] tx = Utils.arrayReverse(new OpSHA256().call(new OpSHA256().call(this.msg)));
-                    builder.append(Timestamp.indention(indent)).append("# Bitcoin transaction id ");
-                    builder.append(Utils.bytesToHex(tx).toLowerCase()).append("\n");
-                } catch (Exception err) {
-                    // TODO: Is this intentional?
-                }
+        while (!stack.isEmpty()) {
+            Iterator<Map.Entry<Op, Timestamp>> it = stack.peek();
+            Timestamp parent = parents.peek();
+            int level = indents.peek();
+            Map.Entry<Op, Timestamp> entry = it.next();
+            Timestamp timestamp = entry.getValue();
+            Op op = entry.getKey();
 
-                byte[] curRes = op.call(this.msg);
-                byte[] curPar = null;
+            if (!it.hasNext()) {
+                stack.pop();
+                parents.pop();
+                indents.pop();
+            }
 
-                if (op instanceof OpBinary) {
-                    curPar = ((OpBinary) op).arg;
-                }
+            appendTransactionId(out, level, parent.msg);
 
-                builder.append(Timestamp.indention(indent)).append(" -> ").append(op.toString().toLowerCase());
-                builder.append(strResult(verbosity, curPar, curRes).toLowerCase()).append("\n");
-                builder.append(timestamp.strTree(indent + 1, verbosity));
+            byte[] curPar = null;
+
+            if (op instanceof OpBinary) {
+                curPar = ((OpBinary) op).arg;
             }
-        } else if (!this.ops.isEmpty()) {
-            for (Map.Entry<Op, Timestamp> entry : this.ops.entrySet()) {
-                Timestamp timestamp = entry.getValue();
-                Op op = entry.getKey();
-
-                try {
-                    Transaction transaction = new Transaction(NetworkParameters.prodNet(), this.msg);
-                    byte[] tx = Utils.arrayReverse(new OpSHA256().call(new OpSHA256().call(this.msg)));
-                    builder.append(Timestamp.indention(indent)).append("# Bitcoin transaction id ");
-                    builder.append(Utils.bytesToHex(tx).toLowerCase()).append("\n");
-                } catch (Exception err) {
-                    // TODO: Is this intentional?
-                }
 
-                byte[] curRes = op.call(this.msg);
-                byte[] curPar = null;
+            // The result of the op is the message of the timestamp it leads to, no need to run it again
+            boolean fork = parent.ops.size() > 1;
+            appendIndention(out, level);
+            out.append(fork ? " -> " : "").append(op.toString().toLowerCase());
+            appendResult(out, verbosity, curPar, timestamp.msg);
+            out.append('\n');
 
-                if (op instanceof OpBinary) {
-                    curPar = ((OpBinary) op).arg;
-                }
+            int childIndent = fork ? level + 1 : level;
+            timestamp.strAttestations(out, childIndent);
 
-                builder.append(Timestamp.indention(indent)).append(op.toString().toLowerCase());
-                builder.append(strResult(verbosity, curPar, curRes).toLowerCase()).append("\n");
-                builder.append(timestamp.strTree(indent, verbosity));
+            if (!timestamp.ops.isEmpty()) {
+                stack.push(timestamp.sortedOps().iterator());
+                parents.push(timestamp);
+                indents.push(childIndent);
             }
         }
+    }
 
-        return builder.toString();
+    private void strAttestations(Appendable out, int indent) throws IOException {
+        for (TimeAttestation attestation : this.attestations) {
+            appendIndention(out, indent);
+            out.append("verify ").append(attestation.toString()).append('\n');
+
+            if (attestation instanceof BitcoinBlockHeaderAttestation) {
+                appendIndention(out, indent);
+                out.append("# Bitcoin block merkle root ");
+                Hex.encode(Utils.arrayReverse(this.msg), out);
+                out.append('\n');
+            }
+        }
     }
 
     /**
@@ -422,14 +541,25 @@ public class Timestamp {
      * @return List of all sub timestamps with attestations.
      */
     public List<Timestamp> directlyVerified() {
-        if (!this.attestations.isEmpty()) {
-            return new ArrayList<>(Collections.singletonList(this));
-        }
-
         List<Timestamp> list = new ArrayList<>();
 
-        for (Timestamp ts : this.ops.values()) {
-            list.addAll(ts.directlyVerified());
+        // Pre-order walk that doesn't descend below a timestamp with attestations
+        Deque<Iterator<Timestamp>> stack = new ArrayDeque<>();
+        stack.push(Collections.singletonList(this).iterator());
+
+        while (!stack.isEmpty()) {
+            Iterator<Timestamp> it = stack.peek();
+            Timestamp ts = it.next();
+
+            if (!it.hasNext()) {
+                stack.pop();
+            }
+
+            if (!ts.attestations.isEmpty()) {
+                list.add(ts);
+            } else if (!ts.ops.isEmpty()) {
+                stack.push(ts.ops.values().iterator());
+            }
         }
 
         return list;
@@ -441,7 +571,13 @@ public class Timestamp {
      * @return Set of all timestamp attestations.
      */
     public Set<TimeAttestation> getAttestations() {
-        return new HashSet<>(this.allAttestations().values());
+        Set<TimeAttestation> set = new HashSet<>();
+
+        for (Map.Entry<byte[], TimeAttestation> item : this.allAttestations()) {
+            set.add(item.getValue());
+        }
+
+        return set;
     }
 
     /**
@@ -450,8 +586,8 @@ public class Timestamp {
      * @return True if the timestamp is complete, False otherwise.
      */
     public Boolean isTimestampComplete() {
-        for (TimeAttestation attestation : this.allAttestations().values()) {
-            if (attestation instanceof BitcoinBlockHeaderAttestation) {
+        for (Map.Entry<byte[], TimeAttestation> item : this.allAttestations()) {
+            if (item.getValue() instanceof BitcoinBlockHeaderAttestation) {
                 return true;
             }
         }
@@ -461,21 +597,39 @@ public class Timestamp {
 
     /**
      * Iterate over all attestations recursively
+     * <p>
+     * Every attestation in the tree is returned, paired with the message it attests to. A message that carries
+     * several attestations appears once per attestation.
      *
-     * @return Returns iterable of (msg, attestation)
+     * @return Returns list of (msg, attestation)
      */
-    public HashMap<byte[], TimeAttestation> allAttestations() {
-        HashMap<byte[], TimeAttestation> map = new HashMap<>();
+    public List<Map.Entry<byte[], TimeAttestation>> allAttestations() {
+        List<Map.Entry<byte[], TimeAttestation>> list = new ArrayList<>();
+        allAttestations(list);
 
-        for (TimeAttestation attestation : this.attestations) {
-            map.put(this.msg, attestation);
-        }
+        return list;
+    }
 
-        for (Timestamp ts : this.ops.values()) {
-            map.putAll(ts.allAttestations());
-        }
+    private void allAttestations(List<Map.Entry<byte[], TimeAttestation>> list) {
+        Deque<Iterator<Timestamp>> stack = new ArrayDeque<>();
+        stack.push(Collections.singletonList(this).iterator());
+
+        while (!stack.isEmpty()) {
+            Iterator<Timestamp> it = stack.peek();
+            Timestamp ts = it.next();
+
+            if (!it.hasNext()) {
+                stack.pop();
+            }
+
+            for (TimeAttestation attestation : ts.attestations) {
+                list.add(new AbstractMap.SimpleImmutableEntry<>(ts.msg, attestation));
+            }
 
-        return map;
+            if (!ts.ops.isEmpty()) {
+                stack.push(ts.ops.values().iterator());
+            }
+        }
     }
 
     /**
@@ -485,13 +639,19 @@ public class Timestamp {
      */
     public Set<byte[]> allTips() {
         Set<byte[]> set = new HashSet<>();
+        Deque<Timestamp> stack = new ArrayDeque<>();
+        stack.push(this);
 
-        if (this.ops.isEmpty()) {
-            set.add(this.msg);
-        }
+        while (!stack.isEmpty()) {
+            Timestamp ts = stack.pop();
+
+            if (ts.ops.isEmpty()) {
+                set.add(ts.msg);
+            }
 
-        for (Timestamp ts : this.ops.values()) {
-            set.addAll(ts.allTips());
+            for (Timestamp child : ts.ops.values()) {
+                stack.push(child);
+            }
         }
 
         return set;
@@ -509,8 +669,40 @@ public class Timestamp {
             return false;
         }
 
-        Timestamp that = (Timestamp) other;
+        // Pairs of (this, that) sub timestamps still to be compared
+        Deque<Timestamp[]> stack = new ArrayDeque<>();
+        stack.push(new Timestamp[]{this, (Timestamp) other});
+
+        while (!stack.isEmpty()) {
+            Timestamp[] pair = stack.pop();
+
+            if (!pair[0].equalsShallow(pair[1])) {
+                return false;
+            }
+
+            // Operations are kept in canonical order, so they can be compared pairwise
+            Iterator<Map.Entry<Op, Timestamp>> it1 = pair[0].sortedOps().iterator();
+            Iterator<Map.Entry<Op, Timestamp>> it2 = pair[1].sortedOps().iterator();
+
+            while (it1.hasNext()) {
+                Map.Entry<Op, Timestamp> entry1 = it1.next();
+                Map.Entry<Op, Timestamp> entry2 = it2.next();
+
+                if (!entry1.getKey().equals(entry2.getKey())) {
+                    return false;
+                }
+
+                stack.push(new Timestamp[]{entry1.getValue(), entry2.getValue()});
+            }
+        }
+
+        return true;
+    }
 
+    /**
+     * Compare the digests, attestations and number of operations, but not the sub timestamps.
+     */
+    private boolean equalsShallow(Timestamp that) {
         if (!Arrays.equals(this.getDigest(), that.getDigest())) {
             return false;
         }
@@ -532,31 +724,7 @@ public class Timestamp {
         }
 
         // Check operations
-        if (this.ops.size() != that.ops.size()) {
-            return false;
-        }
-
-        // Order list of operations
-        List<Map.Entry<Op, Timestamp>> list1 = sortToList(this.ops.entrySet());
-        List<Map.Entry<Op, Timestamp>> list2 = sortToList(that.ops.entrySet());
-
-        for (int i = 0; i < list1.size(); i++) {
-            Op op1 = list1.get(i).getKey();
-            Op op2 = list2.get(i).getKey();
-
-            if (!op1.equals(op2)) {
-                return false;
-            }
-
-            Timestamp t1 = list1.get(i).getValue();
-            Timestamp t2 = list2.get(i).getValue();
-
-            if (!t1.equals(t2)) {
-                return false;
-            }
-        }
-
-        return true;
+        return this.ops.size() == that.ops.size();
     }
 
     /**
@@ -579,6 +747,20 @@ public class Timestamp {
         return stamp;
     }
 
+    /**
+     * Get the entries of {@link #ops} in canonical order. An {@link OpMap}, the map a timestamp starts with, iterates
+     * them that way; any other HashMap assigned to the field is sorted here.
+     *
+     * @return The entries, sorted by op.
+     */
+    Set<Map.Entry<Op, Timestamp>> sortedOps() {
+        if (this.ops instanceof OpMap || this.ops.size() < 2) {
+            return this.ops.entrySet();
+        }
+
+        return new TreeMap<>(this.ops).entrySet();
+    }
+
     /**
      * Retrieve a sorted list of all map entries.
      *
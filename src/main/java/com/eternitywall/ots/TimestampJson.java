@@ -0,0 +1,244 @@
+package com.eternitywall.ots;
+
+import com.eternitywall.ots.attestation.BitcoinBlockHeaderAttestation;
+import com.eternitywall.ots.attestation.EthereumBlockHeaderAttestation;
+import com.eternitywall.ots.attestation.LitecoinBlockHeaderAttestation;
+import com.eternitywall.ots.attestation.PendingAttestation;
+import com.eternitywall.ots.attestation.TimeAttestation;
+import com.eternitywall.ots.attestation.UnknownAttestation;
+import com.eternitywall.ots.op.Op;
+import com.eternitywall.ots.op.OpBinary;
+import org.json.JSONException;
+import org.json.JSONWriter;
+
+import java.io.IOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeSet;
+
+/**
+ * Export of timestamps as JSON, for programs that would otherwise parse the text of {@link OpenTimestamps#info}.
+ * <p>
+ * The tree is walked once and written as it goes, as one object:
+ * <pre>
+ * {
+ *   "file": "hello-world.txt.ots",        the name given, if any
+ *   "hashOp": "sha256",                   detached timestamps only
+ *   "digest": "03ba20...",
+ *   "ops": [                              every op in depth-first order, node 0 being the digest
+ *     {"id": 1, "parent": 0, "op": "append", "arg": "72d9...", "msg": "03ba..."},
+ *     {"id": 2, "parent": 1, "op": "sha256", "msg": "0d1e..."}, ...
+ *   ],
+ *   "attestations": [
+ *     {"node": 9, "type": "pending", "uri": "https://alice.btc.calendar.opentimestamps.org", "msg": "..."},
+ *     {"node": 21, "type": "bitcoin", "height": 428648, "msg": "..."}, ...
+ *   ],
+ *   "summary": {"complete": true, "pending": ["https://..."], "bitcoin": [428648], "litecoin": [], "ethereum": []}
+ * }
+ * </pre>
+ * The tree is flattened with parent ids rather than nested, so the depth of the JSON doesn't follow the depth of the
+ * proof. The "msg" of an op, its result, is only written when digests are asked for; the "msg" of an attestation,
+ * the commitment it attests, always is. Unknown attestations are written with their "tag" and "payload" in hex.
+ */
+public class TimestampJson {
+
+    /**
+     * Write a detached timestamp as one JSON object.
+     *
+     * @param out      The output, best buffered.
+     * @param name     The name of the file, or null to leave it out.
+     * @param detached The detached timestamp.
+     * @param digests  Write the result of every op.
+     * @throws IOException if the output fails.
+     */
+    public static void write(Writer out, String name, DetachedTimestampFile detached, boolean digests) throws IOException {
+        write(out, name, detached.fileHashOp._TAG_NAME(), detached.timestamp, digests);
+    }
+
+    /**
+     * Write a timestamp as one JSON object.
+     *
+     * @param out       The output, best buffered.
+     * @param timestamp The timestamp.
+     * @param digests   Write the result of every op.
+     * @throws IOException if the output fails.
+     */
+    public static void write(Writer out, Timestamp timestamp, boolean digests) throws IOException {
+        write(out, null, null, timestamp, digests);
+    }
+
+    /**
+     * Write the failure to read a timestamp, as an object with the name and an "error".
+     *
+     * @param out   The output.
+     * @param name  The name of the file.
+     * @param error The reason.
+     * @throws IOException if the output fails.
+     */
+    public static void writeError(Writer out, String name, String error) throws IOException {
+        try {
+            new JSONWriter(out).object().key("file").value(name).key("error").value(error).endObject();
+        } catch (JSONException e) {
+            throw ioException(e);
+        }
+    }
+
+    private static void write(Writer out, String name, String hashOp, Timestamp timestamp, boolean digests) throws IOException {
+        try {
+            JSONWriter json = new JSONWriter(out);
+            json.object();
+
+            if (name != null) {
+                json.key("file").value(name);
+            }
+
+            if (hashOp != null) {
+                json.key("hashOp").value(hashOp);
+            }
+
+            json.key("digest").value(hex(timestamp.msg));
+
+            // Attestations are few, they are kept to be written after the ops
+            List<Integer> nodes = new ArrayList<>();
+            List<Timestamp> attested = new ArrayList<>();
+            collectAttestations(timestamp, 0, nodes, attested);
+
+            // The ops still to be written, one iterator per timestamp alongside its id, as Timestamp.strTree walks
+            Deque<Iterator<Map.Entry<Op, Timestamp>>> stack = new ArrayDeque<>();
+            Deque<Integer> parents = new ArrayDeque<>();
+            int id = 0;
+            json.key("ops").array();
+
+            if (!timestamp.ops.isEmpty()) {
+                stack.push(timestamp.sortedOps().iterator());
+                parents.push(id);
+            }
+
+            while (!stack.isEmpty()) {
+                Iterator<Map.Entry<Op, Timestamp>> it = stack.peek();
+                int parent = parents.peek();
+                Map.Entry<Op, Timestamp> entry = it.next();
+                Op op = entry.getKey();
+                Timestamp child = entry.getValue();
+
+                if (!it.hasNext()) {
+                    stack.pop();
+                    parents.pop();
+                }
+
+                json.object().key("id").value(++id).key("parent").value(parent).key("op").value(op._TAG_NAME());
+
+                if (op instanceof OpBinary) {
+                    json.key("arg").value(hex(((OpBinary) op).arg));
+                }
+
+                if (digests) {
+                    json.key("msg").value(hex(child.msg));
+                }
+
+                json.endObject();
+                collectAttestations(child, id, nodes, attested);
+
+                if (!child.ops.isEmpty()) {
+                    stack.push(child.sortedOps().iterator());
+                    parents.push(id);
+                }
+            }
+
+            json.endArray();
+
+            Set<String> pending = new LinkedHashSet<>();
+            Set<Integer> bitcoin = new TreeSet<>();
+            Set<Integer> litecoin = new TreeSet<>();
+            Set<Integer> ethereum = new TreeSet<>();
+            json.key("attestations").array();
+
+            for (int i = 0; i < attested.size(); i++) {
+                Timestamp node = attested.get(i);
+
+                for (TimeAttestation attestation : node.attestations) {
+                    json.object().key("node").value(nodes.get(i));
+
+                    if (attestation instanceof PendingAttestation) {
+                        String uri = new String(((PendingAttestation) attestation).getUri(), StandardCharsets.UTF_8);
+                        json.key("type").value("pending").key("uri").value(uri);
+                        pending.add(uri);
+                    } else if (attestation instanceof BitcoinBlockHeaderAttestation) {
+                        int height = ((BitcoinBlockHeaderAttestation) attestation).getHeight();
+                        json.key("type").value(BitcoinBlockHeaderAttestation.chain).key("height").value(height);
+                        bitcoin.add(height);
+                    } else if (attestation instanceof LitecoinBlockHeaderAttestation) {
+                        int height = ((LitecoinBlockHeaderAttestation) attestation).getHeight();
+                        json.key("type").value(LitecoinBlockHeaderAttestation.chain).key("height").value(height);
+                        litecoin.add(height);
+                    } else if (attestation instanceof EthereumBlockHeaderAttestation) {
+                        int height = ((EthereumBlockHeaderAttestation) attestation).getHeight();
+                        json.key("type").value(EthereumBlockHeaderAttestation.chain).key("height").value(height);
+                        ethereum.add(height);
+                    } else if (attestation instanceof UnknownAttestation) {
+                        UnknownAttestation unknown = (UnknownAttestation) attestation;
+                        json.key("type").value("unknown").key("tag").value(hex(unknown._TAG())).key("payload").value(hex(unknown.getPayload()));
+                    }
+
+                    json.key("msg").value(hex(node.msg)).endObject();
+                }
+            }
+
+            json.endArray();
+
+            json.key("summary").object();
+            json.key("complete").value(!bitcoin.isEmpty());
+            json.key("pending").array();
+
+            for (String uri : pending) {
+                json.value(uri);
+            }
+
+            json.endArray();
+            writeHeights(json, BitcoinBlockHeaderAttestation.chain, bitcoin);
+            writeHeights(json, LitecoinBlockHeaderAttestation.chain, litecoin);
+            writeHeights(json, EthereumBlockHeaderAttestation.chain, ethereum);
+            json.endObject();
+
+            json.endObject();
+        } catch (JSONException e) {
+            throw ioException(e);
+        }
+    }
+
+    private static void collectAttestations(Timestamp timestamp, int id, List<Integer> nodes, List<Timestamp> attested) {
+        if (!timestamp.attestations.isEmpty()) {
+            nodes.add(id);
+            attested.add(timestamp);
+        }
+    }
+
+    private static void writeHeights(JSONWriter json, String chain, Set<Integer> heights) throws JSONException {
+        json.key(chain).array();
+
+        for (int height : heights) {
+            json.value(height);
+        }
+
+        json.endArray();
+    }
+
+    private static String hex(byte[] bytes) {
+        return Hex.encode(bytes);
+    }
+
+    /**
+     * JSONWriter wraps the failures of the output.
+     */
+    private static IOException ioException(JSONException e) {
+        return e.getCause() instanceof IOException ? (IOException) e.getCause() : new IOException(e);
+    }
+}
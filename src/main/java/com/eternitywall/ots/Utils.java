@@ -1,11 +1,10 @@
 package com.eternitywall.ots;
 
 import java.security.NoSuchAlgorithmException;
-import java.security.SecureRandom;
 import java.util.logging.ConsoleHandler;
+import java.util.logging.Formatter;
 import java.util.logging.LogRecord;
 import java.util.logging.Logger;
-import java.util.logging.SimpleFormatter;
 
 /**
  * Utility functions for (mostly) manipulating byte arrays.
@@ -66,18 +65,14 @@ public class Utils {
     }
 
     /**
-     * Returns a given length array of random bytes.
+     * Returns a given length array of random bytes, from a SecureRandom shared by all threads.
      *
-     * @throws NoSuchAlgorithmException for Java 8 implementations
+     * @throws NoSuchAlgorithmException never, kept for compatibility
+     * @see NonceProvider#random() for the nonces of merkle leaves
      */
     public static byte[] randBytes(int length) throws NoSuchAlgorithmException {
-        //Java 6 & 7:
-        SecureRandom random = new SecureRandom();
         byte[] bytes = new byte[length];
-        random.nextBytes(bytes);
-
-        // Java 8 (even more secure):
-        // SecureRandom.getInstanceStrong().nextBytes(bytes);
+        NonceProvider.nextBytes(bytes);
 
         return bytes;
     }
@@ -112,42 +107,103 @@ public class Utils {
     }
 
     /**
-     * Returns a HEX representation of the passed in byte array.
+     * Tells whether a byte array starts with a serialized Bitcoin transaction, without parsing it into objects. A
+     * message passes exactly when bitcoinj would parse it: version, inputs, outputs and lock time all fit, anything
+     * after them is ignored. Unlike parsing, this neither allocates nor throws, so it is cheap on the hashes that
+     * make up most of a timestamp.
+     *
+     * @param msg The bytes to examine.
+     * @return true if the bytes start with a transaction.
      */
-    public static String bytesToHex(byte[] bytes) {
-        StringBuilder sb = new StringBuilder();
+    public static boolean isBitcoinTransaction(byte[] msg) {
+        int cursor = 4; // version
+
+        // The inputs, then the outputs: each one a script between an outpoint and a sequence number, or after a value
+        for (int section = 0; section < 2; section++) {
+            int before = section == 0 ? 36 : 8;
+            int after = section == 0 ? 4 : 0;
+            int size = varIntSize(msg, cursor);
+
+            if (size < 0) {
+                return false;
+            }
+
+            long count = varIntValue(msg, cursor, size);
+            cursor += size;
+
+            // bitcoinj sizes its list with the count truncated to an int
+            if ((int) count < 0) {
+                return false;
+            }
+
+            for (long i = 0; i < count; i++) {
+                if (msg.length - cursor < before) {
+                    return false;
+                }
+
+                cursor += before;
+                size = varIntSize(msg, cursor);
 
-        for (byte b : bytes) {
-            sb.append(String.format("%02X", b));
+                if (size < 0) {
+                    return false;
+                }
+
+                int length = (int) varIntValue(msg, cursor, size);
+                cursor += size;
+
+                if (length < 0 || length > msg.length - cursor || msg.length - cursor - length < after) {
+                    return false;
+                }
+
+                cursor += length + after;
+            }
         }
 
-        return sb.toString();
+        return msg.length - cursor >= 4; // lock time
     }
 
     /**
-     * Converts a HEX representation to its byte array representation. The passed in string must not be null.
-     *
-     * @throws IllegalArgumentException if the passed in HEX string can't be converted to a byte array
+     * The size of the Bitcoin variable length integer at the given position, or -1 if it doesn't fit.
      */
-    public static byte[] hexToBytes(String s) throws IllegalArgumentException {
-        int len = s.length();
-
-        if (len % 2 == 1) {
-            throw new IllegalArgumentException();
+    private static int varIntSize(byte[] bytes, int offset) {
+        if (offset >= bytes.length) {
+            return -1;
         }
 
-        byte[] data = new byte[len / 2];
+        int first = bytes[offset] & 0xff;
+        int size = first < 0xfd ? 1 : first == 0xfd ? 3 : first == 0xfe ? 5 : 9;
 
-        for (int i = 0; i < len; i += 2) {
-            if ((Character.digit(s.charAt(i), 16) == -1) || (Character.digit(s.charAt(i + 1), 16) == -1)) {
-                throw new IllegalArgumentException();
-            }
+        return bytes.length - offset < size ? -1 : size;
+    }
 
-            data[i / 2] = (byte) ((Character.digit(s.charAt(i), 16) << 4)
-                    + Character.digit(s.charAt(i + 1), 16));
+    private static long varIntValue(byte[] bytes, int offset, int size) {
+        if (size == 1) {
+            return bytes[offset] & 0xff;
         }
 
-        return data;
+        long value = 0;
+
+        for (int i = size - 1; i > 0; i--) {
+            value = (value << 8) | (bytes[offset + i] & 0xff);
+        }
+
+        return value;
+    }
+
+    /**
+     * Returns a HEX representation of the passed in byte array.
+     */
+    public static String bytesToHex(byte[] bytes) {
+        return Hex.encodeUpper(bytes);
+    }
+
+    /**
+     * Converts a HEX representation to its byte array representation. The passed in string must not be null.
+     *
+     * @throws IllegalArgumentException if the passed in HEX string can't be converted to a byte array
+     */
+    public static byte[] hexToBytes(String s) throws IllegalArgumentException {
+        return Hex.decode(s);
     }
 
     /**
@@ -168,20 +224,34 @@ public class Utils {
         return string.substring(0, 1).toUpperCase() + string.substring(1).toLowerCase();
     }
 
-    // TODO: This is not the way to do logging. Fix later, possibly with slf4j annotation. Need to read up on the subject.
+    /**
+     * Get a java.util.logging logger that prints bare messages to the console, as the command line tool does for its
+     * errors. The handler is installed once per logger. The library itself logs through SLF4J.
+     *
+     * @param name The name of the logger.
+     * @return The logger.
+     */
     public static Logger getLogger(String name) {
         Logger log = Logger.getLogger(name);
-        ConsoleHandler handler = new ConsoleHandler();
 
-        handler.setFormatter(new SimpleFormatter() {
-            @Override
-            public synchronized String format(LogRecord lr) {
-                return lr.getMessage() + "\r\n";
+        synchronized (log) {
+            if (!log.getUseParentHandlers()) {
+                return log;
             }
-        });
 
-        log.setUseParentHandlers(false);
-        log.addHandler(handler);
+            ConsoleHandler handler = new ConsoleHandler();
+
+            // Formatters are called under the handler's lock already, so this one needs no lock of its own
+            handler.setFormatter(new Formatter() {
+                @Override
+                public String format(LogRecord lr) {
+                    return lr.getMessage() + "\r\n";
+                }
+            });
+
+            log.setUseParentHandlers(false);
+            log.addHandler(handler);
+        }
 
         return log;
     }
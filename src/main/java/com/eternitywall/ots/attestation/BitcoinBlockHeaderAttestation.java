@@ -3,6 +3,7 @@ package com.eternitywall.ots.attestation;
 import com.eternitywall.ots.BlockHeader;
 import com.eternitywall.ots.StreamDeserializationContext;
 import com.eternitywall.ots.StreamSerializationContext;
+import com.eternitywall.ots.Hex;
 import com.eternitywall.ots.Utils;
 import com.eternitywall.ots.exceptions.VerificationException;
 
@@ -105,7 +106,7 @@ public class BitcoinBlockHeaderAttestation extends TimeAttestation {
     public Long verifyAgainstBlockheader(byte[] digest, BlockHeader block) throws VerificationException {
         if (digest.length != 32) {
             throw new VerificationException("Expected digest with length 32 bytes; got " + digest.length + " bytes");
-        } else if (!Arrays.equals(digest, Utils.hexToBytes(block.getMerkleroot()))) {
+        } else if (!Arrays.equals(digest, Hex.decode(block.getMerkleroot()))) {
             throw new VerificationException("Digest does not match merkleroot");
         }
 
@@ -3,10 +3,11 @@ package com.eternitywall.ots.attestation;
 import com.eternitywall.ots.StreamDeserializationContext;
 import com.eternitywall.ots.StreamSerializationContext;
 import com.eternitywall.ots.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.nio.charset.StandardCharsets;
 import java.util.Arrays;
-import java.util.logging.Logger;
 
 /**
  * Pending attestations.
@@ -33,7 +34,7 @@ public class PendingAttestation extends TimeAttestation {
     public static final int _MAX_URI_LENGTH = 1000;
     public static final String _ALLOWED_URI_CHARS = "ABCDEFGHIJKLMNOPQRSTUVWXYZabcdefghijklmnopqrstuvwxyz0123456789-._/:";
 
-    private static Logger log = Utils.getLogger(PendingAttestation.class.getName());
+    private static final Logger log = LoggerFactory.getLogger(PendingAttestation.class);
 
     public static final byte[] _TAG = {(byte) 0x83, (byte) 0xdf, (byte) 0xe3, (byte) 0x0d, (byte) 0x2e, (byte) 0xf9, (byte) 0x0c, (byte) 0x8e};
 
@@ -53,7 +54,7 @@ public class PendingAttestation extends TimeAttestation {
 
     public static boolean checkUri(byte[] uri) {
         if (uri.length > PendingAttestation._MAX_URI_LENGTH) {
-            log.severe("URI length exceeds maximum: " + uri.length);
+            log.error("URI length exceeds maximum: {}", uri.length);
 
             return false;
         }
@@ -62,7 +63,7 @@ public class PendingAttestation extends TimeAttestation {
             Character c = String.format("%c", b).charAt(0);
 
             if (PendingAttestation._ALLOWED_URI_CHARS.indexOf(c) < 0) {
-                log.severe("URI contains invalid character: " + c);
+                log.error("URI contains invalid character: {}", c);
 
                 return false;
             }
@@ -75,7 +76,7 @@ public class PendingAttestation extends TimeAttestation {
         byte[] utf8Uri = ctxPayload.readVarbytes(PendingAttestation._MAX_URI_LENGTH);
 
         if (!checkUri(utf8Uri)) {
-            log.severe("Invalid URI: " + new String(utf8Uri, StandardCharsets.UTF_8));
+            log.error("Invalid URI: {}", new String(utf8Uri, StandardCharsets.UTF_8));
 
             return null;    // TODO: Change to exception?
         }
@@ -2,6 +2,7 @@ package com.eternitywall.ots.attestation;
 
 import com.eternitywall.ots.StreamDeserializationContext;
 import com.eternitywall.ots.StreamSerializationContext;
+import com.eternitywall.ots.Hex;
 import com.eternitywall.ots.Utils;
 
 import java.util.Arrays;
@@ -20,11 +21,15 @@ public class UnknownAttestation extends TimeAttestation {
         return _TAG;
     }
 
-    UnknownAttestation(byte[] tag, byte[] payload) {
+    public UnknownAttestation(byte[] tag, byte[] payload) {
         this._TAG = tag;
         this.payload = payload;
     }
 
+    public byte[] getPayload() {
+        return this.payload;
+    }
+
     @Override
     public void serializePayload(StreamSerializationContext ctx) {
         ctx.writeBytes(this.payload);
@@ -37,7 +42,7 @@ public class UnknownAttestation extends TimeAttestation {
     }
 
     public String toString() {
-        return "UnknownAttestation " + Utils.bytesToHex(this._TAG()) + ' ' + Utils.bytesToHex(this.payload);
+        return "UnknownAttestation " + Hex.encodeUpper(this._TAG()) + ' ' + Hex.encodeUpper(this.payload);
     }
 
     public int compareTo(TimeAttestation other) {
@@ -0,0 +1,46 @@
+package com.eternitywall.ots.crypto;
+
+import java.security.MessageDigest;
+
+/**
+ * Expose a {@link Digest} through the {@link MessageDigest} API.
+ * The JDK has no RIPEMD160 or Keccak providers, so this lets those digests be used wherever a MessageDigest is
+ * expected, such as when hashing files.
+ */
+public class DigestAdapter extends MessageDigest {
+
+    private final Digest digest;
+
+    public DigestAdapter(Digest digest) {
+        super(digest.getAlgorithmName());
+        this.digest = digest;
+    }
+
+    @Override
+    protected int engineGetDigestLength() {
+        return this.digest.getDigestSize();
+    }
+
+    @Override
+    protected void engineUpdate(byte input) {
+        this.digest.update(input);
+    }
+
+    @Override
+    protected void engineUpdate(byte[] input, int offset, int len) {
+        this.digest.update(input, offset, len);
+    }
+
+    @Override
+    protected byte[] engineDigest() {
+        byte[] out = new byte[this.digest.getDigestSize()];
+        this.digest.doFinal(out, 0);
+
+        return out;
+    }
+
+    @Override
+    protected void engineReset() {
+        this.digest.reset();
+    }
+}
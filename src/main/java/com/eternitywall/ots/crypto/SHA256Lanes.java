@@ -0,0 +1,270 @@
+package com.eternitywall.ots.crypto;
+
+import java.lang.reflect.Constructor;
+
+/**
+ * SHA-256 of many messages of the same length at once, in lanes.
+ * <p>
+ * The state and message schedule of every lane are kept side by side, one array per variable indexed by lane, and
+ * every step of a round is a loop over the lanes. This class is the scalar version, plain int arithmetic over those
+ * arrays that runs on any VM. On Java 16 and later the multi-release jar also holds SHA256VectorLanes, which runs the
+ * rounds through the jdk.incubator.vector API; {@link #newInstance()} picks it when the VM was started with
+ * {@code --add-modules jdk.incubator.vector}.
+ * <p>
+ * Even vectorized, lanes only beat a JDK whose own SHA-256 doesn't run on the CPU's SHA instructions, which
+ * {@link #FASTER_THAN_JDK} tells.
+ * <p>
+ * An instance holds the working state of its lanes and is not thread-safe.
+ */
+public class SHA256Lanes
+{
+    /**
+     * The number of messages hashed together.
+     */
+    public static final int LANES = 64;
+
+    private static final Constructor<? extends SHA256Lanes> VECTOR_LANES;
+
+    /**
+     * Whether {@link #newInstance()} returns lanes backed by the Vector API.
+     */
+    public static final boolean VECTORIZED;
+
+    /**
+     * Whether the lanes of {@link #newInstance()} hash faster than the JDK's MessageDigest on this VM: they are
+     * vectorized and the VM has no SHA-256 intrinsic.
+     */
+    public static final boolean FASTER_THAN_JDK;
+
+    static
+    {
+        Constructor<? extends SHA256Lanes> constructor = null;
+        boolean faster = false;
+
+        try
+        {
+            // Only found in the Java 16 part of the jar, and only loads when the VM resolved the incubator module
+            Class<? extends SHA256Lanes> vectorLanes = Class.forName("com.eternitywall.ots.crypto.SHA256VectorLanes")
+                .asSubclass(SHA256Lanes.class);
+            faster = vectorLanes.getField("FASTER_THAN_JDK").getBoolean(null);
+            constructor = vectorLanes.getConstructor();
+        }
+        catch (ReflectiveOperationException | LinkageError e)
+        {
+            // The scalar lanes then
+        }
+
+        VECTOR_LANES = constructor;
+        VECTORIZED = constructor != null;
+        FASTER_THAN_JDK = faster;
+    }
+
+    final int[][] W = new int[64][LANES];
+    final int[] H = new int[8 * LANES];
+    private final int[][] S = new int[8][LANES];
+    private final byte[] block = new byte[64];
+
+    /**
+     * Create the fastest lanes this VM runs: vectorized when it can, otherwise scalar.
+     *
+     * @return New lanes.
+     */
+    public static SHA256Lanes newInstance()
+    {
+        if (VECTOR_LANES != null)
+        {
+            try
+            {
+                return VECTOR_LANES.newInstance();
+            }
+            catch (ReflectiveOperationException e)
+            {
+                throw new IllegalStateException(e);
+            }
+        }
+
+        return new SHA256Lanes();
+    }
+
+    /**
+     * Hash messages of the same length, any number of them.
+     *
+     * @param in    The messages.
+     * @param inOff The index of the first message.
+     * @param count The number of messages.
+     * @param out   Receives the 32 byte hash of each message, at the same index as the message.
+     * @throws IllegalArgumentException if the messages aren't all of the same length.
+     */
+    public void hash(byte[][] in, int inOff, int count, byte[][] out)
+    {
+        if (count == 0)
+        {
+            return;
+        }
+
+        int length = in[inOff].length;
+
+        for (int i = inOff; i < inOff + count; i++)
+        {
+            if (in[i].length != length)
+            {
+                throw new IllegalArgumentException("Messages of different lengths");
+            }
+        }
+
+        // The message, 0x80, and the length in 8 bytes, rounded up to whole blocks
+        int blocks = (length + 9 + 63) / 64;
+
+        for (int first = inOff; first < inOff + count; first += LANES)
+        {
+            int lanes = Math.min(LANES, inOff + count - first);
+
+            for (int i = 0; i < 8; i++)
+            {
+                for (int l = 0; l < LANES; l++)
+                {
+                    H[i * LANES + l] = IV[i];
+                }
+            }
+
+            for (int n = 0; n < blocks; n++)
+            {
+                for (int l = 0; l < lanes; l++)
+                {
+                    loadBlock(in[first + l], n, n == blocks - 1, l);
+                }
+
+                processBlock();
+            }
+
+            for (int l = 0; l < lanes; l++)
+            {
+                byte[] digest = new byte[32];
+
+                for (int i = 0; i < 8; i++)
+                {
+                    Pack.intToBigEndian(H[i * LANES + l], digest, i * 4);
+                }
+
+                out[first + l] = digest;
+            }
+        }
+    }
+
+    /**
+     * Load block n of the padded message into the first 16 words of the schedule of a lane.
+     */
+    private void loadBlock(byte[] msg, int n, boolean last, int lane)
+    {
+        int start = n * 64;
+
+        // A block within the message is read as it is, only the ones past its end need padding
+        if (start + 64 <= msg.length)
+        {
+            for (int t = 0; t < 16; t++)
+            {
+                W[t][lane] = Pack.bigEndianToInt(msg, start + t * 4);
+            }
+
+            return;
+        }
+
+        for (int i = 0; i < 64; i++)
+        {
+            int pos = start + i;
+
+            if (pos < msg.length)
+            {
+                block[i] = msg[pos];
+            }
+            else
+            {
+                block[i] = pos == msg.length ? (byte)0x80 : 0;
+            }
+        }
+
+        // The length in bits ends the last block
+        if (last)
+        {
+            long bitLength = (long)msg.length * 8;
+            Pack.intToBigEndian((int)(bitLength >>> 32), block, 56);
+            Pack.intToBigEndian((int)bitLength, block, 60);
+        }
+
+        for (int t = 0; t < 16; t++)
+        {
+            W[t][lane] = Pack.bigEndianToInt(block, t * 4);
+        }
+    }
+
+    /**
+     * Run the compression of the blocks loaded in the schedules of all lanes, adding the result to their states.
+     */
+    void processBlock()
+    {
+        for (int t = 16; t < 64; t++)
+        {
+            int[] W2 = W[t - 2];
+            int[] W7 = W[t - 7];
+            int[] W15 = W[t - 15];
+            int[] W16 = W[t - 16];
+            int[] Wt = W[t];
+
+            for (int l = 0; l < LANES; l++)
+            {
+                int x = W2[l];
+                int y = W15[l];
+                Wt[l] = (((x >>> 17) | (x << 15)) ^ ((x >>> 19) | (x << 13)) ^ (x >>> 10)) + W7[l]
+                    + (((y >>> 7) | (y << 25)) ^ ((y >>> 18) | (y << 14)) ^ (y >>> 3)) + W16[l];
+            }
+        }
+
+        for (int i = 0; i < 8; i++)
+        {
+            System.arraycopy(H, i * LANES, S[i], 0, LANES);
+        }
+
+        // Rather than moving every variable down each round, the rounds move the array each variable is kept in:
+        // in round t variable i is in S[(i - t) & 7], and only the new a and e are written
+        for (int t = 0; t < 64; t++)
+        {
+            int k = SHA256Digest.K[t];
+            int[] Wt = W[t];
+            int[] a = S[(0 - t) & 7];
+            int[] b = S[(1 - t) & 7];
+            int[] c = S[(2 - t) & 7];
+            int[] d = S[(3 - t) & 7];
+            int[] e = S[(4 - t) & 7];
+            int[] f = S[(5 - t) & 7];
+            int[] g = S[(6 - t) & 7];
+            int[] h = S[(7 - t) & 7];
+
+            for (int l = 0; l < LANES; l++)
+            {
+                int x = e[l];
+                int y = a[l];
+                int t1 = h[l] + (((x >>> 6) | (x << 26)) ^ ((x >>> 11) | (x << 21)) ^ ((x >>> 25) | (x << 7)))
+                    + ((x & f[l]) ^ (~x & g[l])) + k + Wt[l];
+                int t2 = (((y >>> 2) | (y << 30)) ^ ((y >>> 13) | (y << 19)) ^ ((y >>> 22) | (y << 10)))
+                    + ((y & b[l]) ^ (y & c[l]) ^ (b[l] & c[l]));
+                d[l] += t1;
+                h[l] = t1 + t2;
+            }
+        }
+
+        // 64 rounds bring every variable back to its own array
+        for (int i = 0; i < 8; i++)
+        {
+            int[] v = S[i];
+
+            for (int l = 0; l < LANES; l++)
+            {
+                H[i * LANES + l] += v[l];
+            }
+        }
+    }
+
+    private static final int[] IV = {
+        0x6a09e667, 0xbb67ae85, 0x3c6ef372, 0xa54ff53a, 0x510e527f, 0x9b05688c, 0x1f83d9ab, 0x5be0cd19
+    };
+}
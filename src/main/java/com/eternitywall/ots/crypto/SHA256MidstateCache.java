@@ -0,0 +1,186 @@
+package com.eternitywall.ots.crypto;
+
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * SHA-256 of prefixed messages that resumes from the state left by the prefix, kept for the prefixes used most
+ * recently, instead of hashing the prefix again.
+ * <p>
+ * Only the whole 64 byte blocks of a prefix are saved this way, so prefixes shorter than {@link #MIN_PREFIX_LENGTH}
+ * are hashed as usual. The proofs returned by a calendar share their long prepends from the calendar's own merkle
+ * tree, which is where this pays off.
+ * <p>
+ * The prefixes are spread over independently locked stripes, so threads hashing different prefixes don't wait on
+ * each other, and a prefix is only kept the second time it is seen: a prefix used once costs a hash of its bytes on
+ * top of the digest, but no copy and no saved state.
+ */
+public class SHA256MidstateCache {
+
+    /**
+     * The length of a SHA-256 block, the shortest prefix worth keeping the state of.
+     */
+    public static final int MIN_PREFIX_LENGTH = 64;
+
+    private static final int MAX_STRIPES = 16;
+    private static final int MIN_STRIPE_CAPACITY = 64;
+
+    private final Stripe[] stripes;
+
+    private final ThreadLocal<SHA256Digest> digests = new ThreadLocal<SHA256Digest>() {
+        @Override
+        protected SHA256Digest initialValue() {
+            return new SHA256Digest();
+        }
+    };
+
+    // Prefixes without a kept state are hashed by the JDK, whose digest is at least as fast as SHA256Digest
+    private final ThreadLocal<MessageDigest> jdkDigests = new ThreadLocal<MessageDigest>() {
+        @Override
+        protected MessageDigest initialValue() {
+            try {
+                return MessageDigest.getInstance("SHA-256");
+            } catch (NoSuchAlgorithmException e) {
+                throw new IllegalStateException(e);
+            }
+        }
+    };
+
+    /**
+     * @param capacity The number of prefixes to keep the state of.
+     */
+    public SHA256MidstateCache(int capacity) {
+        int count = 1;
+
+        while (count < MAX_STRIPES && count * 2 * MIN_STRIPE_CAPACITY <= capacity) {
+            count *= 2;
+        }
+
+        this.stripes = new Stripe[count];
+
+        for (int i = 0; i < count; i++) {
+            this.stripes[i] = new Stripe(Math.max(1, capacity / count));
+        }
+    }
+
+    /**
+     * Hash the concatenation of a prefix and a message.
+     *
+     * @param prefix The prefix, whose state is kept when long enough.
+     * @param msg    The message.
+     * @return The SHA-256 hash of prefix || msg.
+     */
+    public byte[] hash(byte[] prefix, byte[] msg) {
+        SHA256Digest state = null;
+
+        if (prefix.length >= MIN_PREFIX_LENGTH) {
+            int hash = Arrays.hashCode(prefix);
+            hash ^= hash >>> 16;
+            state = this.stripes[hash & (this.stripes.length - 1)].state(prefix, hash);
+        }
+
+        if (state == null) {
+            MessageDigest digest = this.jdkDigests.get();
+
+            try {
+                digest.update(prefix);
+
+                return digest.digest(msg);
+            } finally {
+                digest.reset();
+            }
+        }
+
+        SHA256Digest digest = this.digests.get();
+        digest.reset(state);
+        byte[] out = new byte[digest.getDigestSize()];
+        digest.update(msg, 0, msg.length);
+        digest.doFinal(out, 0);
+
+        return out;
+    }
+
+    /**
+     * Return the number of prefixes whose state is kept.
+     *
+     * @return The number of prefixes.
+     */
+    public int size() {
+        int size = 0;
+
+        for (Stripe stripe : this.stripes) {
+            synchronized (stripe) {
+                size += stripe.states.size();
+            }
+        }
+
+        return size;
+    }
+
+    /**
+     * The prefixes of one stripe, in least recently used order, and the hashes of those seen once.
+     */
+    private static class Stripe {
+        private final Map<Prefix, SHA256Digest> states;
+        private final int[] seen;
+
+        Stripe(final int capacity) {
+            this.seen = new int[capacity * 2];
+            this.states = new LinkedHashMap<Prefix, SHA256Digest>(16, 0.75f, true) {
+                @Override
+                protected boolean removeEldestEntry(Map.Entry<Prefix, SHA256Digest> eldest) {
+                    return size() > capacity;
+                }
+            };
+        }
+
+        /**
+         * Return the state after the prefix, or null if it isn't worth keeping yet. The state returned is never
+         * changed, so it can be copied from outside of the lock.
+         */
+        synchronized SHA256Digest state(byte[] prefix, int hash) {
+            SHA256Digest state = this.states.get(new Prefix(prefix, hash));
+
+            if (state != null) {
+                return state;
+            }
+
+            int slot = (hash & 0x7fffffff) % this.seen.length;
+
+            if (this.seen[slot] != hash) {
+                this.seen[slot] = hash;
+                return null;
+            }
+
+            // The key is copied, the caller's array could change later
+            state = new SHA256Digest();
+            state.update(prefix, 0, prefix.length);
+            this.states.put(new Prefix(Arrays.copyOf(prefix, prefix.length), hash), state);
+
+            return state;
+        }
+    }
+
+    private static class Prefix {
+        private final byte[] bytes;
+        private final int hash;
+
+        Prefix(byte[] bytes, int hash) {
+            this.bytes = bytes;
+            this.hash = hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            return other instanceof Prefix && Arrays.equals(this.bytes, ((Prefix) other).bytes);
+        }
+
+        @Override
+        public int hashCode() {
+            return this.hash;
+        }
+    }
+}
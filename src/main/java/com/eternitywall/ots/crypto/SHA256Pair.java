@@ -0,0 +1,163 @@
+package com.eternitywall.ots.crypto;
+
+/**
+ * SHA-256 of exactly 64 bytes, the concatenation of two 32 byte digests hashed by every inner node of a merkle tree.
+ * <p>
+ * Such a message fills one block and is always followed by the same padding block, whose message schedule is
+ * computed once here, already added to the round constants. Hashing a node then costs one full compression and one
+ * without a schedule to expand, with no buffering or padding.
+ */
+public final class SHA256Pair
+{
+    public static final int INPUT_LENGTH = 64;
+    public static final int DIGEST_LENGTH = 32;
+
+    /**
+     * K[t] + W[t] for the padding block of a 64 byte message: 0x80, zeros, then the length of 512 bits.
+     */
+    private static final int[] PADDING_KW = new int[64];
+
+    static
+    {
+        int[] W = new int[64];
+        W[0] = 0x80000000;
+        W[15] = INPUT_LENGTH * 8;
+
+        for (int t = 16; t < 64; t++)
+        {
+            W[t] = SHA256Digest.Theta1(W[t - 2]) + W[t - 7] + SHA256Digest.Theta0(W[t - 15]) + W[t - 16];
+        }
+
+        for (int t = 0; t < 64; t++)
+        {
+            PADDING_KW[t] = SHA256Digest.K[t] + W[t];
+        }
+    }
+
+    private SHA256Pair()
+    {
+    }
+
+    /**
+     * Hash the concatenation of two 32 byte digests.
+     *
+     * @param left  The first digest.
+     * @param right The second digest.
+     * @return The SHA-256 hash of left || right.
+     */
+    public static byte[] hash(byte[] left, byte[] right)
+    {
+        if (left.length != DIGEST_LENGTH || right.length != DIGEST_LENGTH)
+        {
+            throw new IllegalArgumentException("Expected two " + DIGEST_LENGTH + " byte digests");
+        }
+
+        int[] W = new int[64];
+        for (int i = 0; i < 8; i++)
+        {
+            W[i] = Pack.bigEndianToInt(left, i * 4);
+            W[i + 8] = Pack.bigEndianToInt(right, i * 4);
+        }
+
+        byte[] out = new byte[DIGEST_LENGTH];
+        hash(W, out, 0);
+
+        return out;
+    }
+
+    /**
+     * Hash a 64 byte message.
+     *
+     * @param in     The message.
+     * @param inOff  The offset of the message.
+     * @param out    The output, of at least 32 bytes past outOff.
+     * @param outOff The offset of the output.
+     */
+    public static void hash(byte[] in, int inOff, byte[] out, int outOff)
+    {
+        int[] W = new int[64];
+        for (int i = 0; i < 16; i++)
+        {
+            W[i] = Pack.bigEndianToInt(in, inOff + i * 4);
+        }
+        hash(W, out, outOff);
+    }
+
+    /**
+     * @param W The first 16 words of the message, the schedule to expand in place.
+     */
+    private static void hash(int[] W, byte[] out, int outOff)
+    {
+        for (int t = 16; t < 64; t++)
+        {
+            W[t] = SHA256Digest.Theta1(W[t - 2]) + W[t - 7] + SHA256Digest.Theta0(W[t - 15]) + W[t - 16];
+        }
+
+        int a = 0x6a09e667;
+        int b = 0xbb67ae85;
+        int c = 0x3c6ef372;
+        int d = 0xa54ff53a;
+        int e = 0x510e527f;
+        int f = 0x9b05688c;
+        int g = 0x1f83d9ab;
+        int h = 0x5be0cd19;
+
+        for (int t = 0; t < 64; t++)
+        {
+            int T1 = h + SHA256Digest.Sum1(e) + SHA256Digest.Ch(e, f, g) + SHA256Digest.K[t] + W[t];
+            int T2 = SHA256Digest.Sum0(a) + SHA256Digest.Maj(a, b, c);
+            h = g;
+            g = f;
+            f = e;
+            e = d + T1;
+            d = c;
+            c = b;
+            b = a;
+            a = T1 + T2;
+        }
+
+        int H1 = 0x6a09e667 + a;
+        int H2 = 0xbb67ae85 + b;
+        int H3 = 0x3c6ef372 + c;
+        int H4 = 0xa54ff53a + d;
+        int H5 = 0x510e527f + e;
+        int H6 = 0x9b05688c + f;
+        int H7 = 0x1f83d9ab + g;
+        int H8 = 0x5be0cd19 + h;
+
+        //
+        // the padding block, its schedule precomputed
+        //
+        a = H1;
+        b = H2;
+        c = H3;
+        d = H4;
+        e = H5;
+        f = H6;
+        g = H7;
+        h = H8;
+
+        for (int t = 0; t < 64; t++)
+        {
+            int T1 = h + SHA256Digest.Sum1(e) + SHA256Digest.Ch(e, f, g) + PADDING_KW[t];
+            int T2 = SHA256Digest.Sum0(a) + SHA256Digest.Maj(a, b, c);
+            h = g;
+            g = f;
+            f = e;
+            e = d + T1;
+            d = c;
+            c = b;
+            b = a;
+            a = T1 + T2;
+        }
+
+        Pack.intToBigEndian(H1 + a, out, outOff);
+        Pack.intToBigEndian(H2 + b, out, outOff + 4);
+        Pack.intToBigEndian(H3 + c, out, outOff + 8);
+        Pack.intToBigEndian(H4 + d, out, outOff + 12);
+        Pack.intToBigEndian(H5 + e, out, outOff + 16);
+        Pack.intToBigEndian(H6 + f, out, outOff + 20);
+        Pack.intToBigEndian(H7 + g, out, outOff + 24);
+        Pack.intToBigEndian(H8 + h, out, outOff + 28);
+    }
+}
@@ -36,6 +36,13 @@ public class OpAppend extends OpBinary {
         return Utils.arraysConcat(msg, this.arg);
     }
 
+    @Override
+    public byte[] callThenHash(byte[] msg, OpCrypto hash) {
+        this.checkArg();
+
+        return hash.call(msg, this.arg);
+    }
+
     @Override
     public boolean equals(Object other) {
         if (!(other instanceof OpAppend)) {
@@ -2,10 +2,12 @@ package com.eternitywall.ots.op;
 
 import com.eternitywall.ots.StreamDeserializationContext;
 import com.eternitywall.ots.StreamSerializationContext;
+import com.eternitywall.ots.Hex;
 import com.eternitywall.ots.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.util.Arrays;
-import java.util.logging.Logger;
 
 /**
  * Operations that act on a message and a single argument.
@@ -14,7 +16,7 @@ import java.util.logging.Logger;
  */
 public abstract class OpBinary extends Op {
 
-    private static Logger log = Utils.getLogger(OpBinary.class.getName());
+    private static final Logger log = LoggerFactory.getLogger(OpBinary.class);
 
     public byte[] arg;
 
@@ -30,15 +32,43 @@ public abstract class OpBinary extends Op {
 
     public static Op deserializeFromTag(StreamDeserializationContext ctx, byte tag) {
         byte[] arg = ctx.readVarbytes(_MAX_RESULT_LENGTH, 1);
+        OpBinary op;
 
         if (tag == OpAppend._TAG) {
-            return new OpAppend(arg);
+            op = new OpAppend(arg);
         } else if (tag == OpPrepend._TAG) {
-            return new OpPrepend(arg);
+            op = new OpPrepend(arg);
         } else {
-            log.severe("Unknown operation tag: " + tag + " 0x" + String.format("%02x", tag));
+            log.error("Unknown operation tag: {} 0x{}", tag, Hex.encode(new byte[]{tag}));
             return null;     // TODO: Is this OK? Won't it blow up later? Better to throw?
         }
+
+        OpBinaryPool pool = ctx.getOpPool();
+
+        return pool == null ? op : pool.intern(op);
+    }
+
+    /**
+     * Run this operation, then a hash on its result.
+     *
+     * @param msg  The message.
+     * @param hash The hash to run on the result.
+     * @return The hash of the result.
+     * @throws IllegalArgumentException if this operation has no argument, as read from an empty one.
+     */
+    public byte[] callThenHash(byte[] msg, OpCrypto hash) {
+        this.checkArg();
+
+        return hash.call(this.call(msg));
+    }
+
+    /**
+     * Reject a missing argument before any hashing starts, rather than failing halfway through a digest.
+     */
+    void checkArg() {
+        if (this.arg == null) {
+            throw new IllegalArgumentException("Missing argument of " + this._TAG_NAME());
+        }
     }
 
     @Override
@@ -49,7 +79,7 @@ public abstract class OpBinary extends Op {
 
     @Override
     public String toString() {
-        return this._TAG_NAME() + ' ' + Utils.bytesToHex(this.arg).toLowerCase();
+        return this._TAG_NAME() + ' ' + Hex.encode(this.arg);
     }
 
     @Override
@@ -0,0 +1,48 @@
+package com.eternitywall.ots.op;
+
+import java.lang.ref.WeakReference;
+import java.util.Map;
+import java.util.WeakHashMap;
+
+/**
+ * Interning pool for binary operations.
+ * Proofs from the same calendar share many append/prepend arguments (the ops leading from a commitment round to
+ * its Bitcoin attestation are the same for every proof in the round), so when many proofs are held in memory at
+ * once, deserializing them through one pool keeps a single instance of each such operation.
+ * <p>
+ * The pool only holds its operations weakly: an operation that no proof uses anymore is dropped. Pooled operations
+ * are shared between proofs, so their {@link OpBinary#arg} must not be modified.
+ *
+ * @see com.eternitywall.ots.StreamDeserializationContext#StreamDeserializationContext(byte[], OpBinaryPool)
+ */
+public class OpBinaryPool {
+
+    private final Map<OpBinary, WeakReference<OpBinary>> pool = new WeakHashMap<>();
+
+    /**
+     * Get the pooled operation equal to the given one, adding it to the pool if there is none.
+     *
+     * @param op The operation.
+     * @return The pooled operation.
+     */
+    public synchronized OpBinary intern(OpBinary op) {
+        WeakReference<OpBinary> reference = this.pool.get(op);
+        OpBinary pooled = reference == null ? null : reference.get();
+
+        if (pooled == null) {
+            this.pool.put(op, new WeakReference<>(op));
+            pooled = op;
+        }
+
+        return pooled;
+    }
+
+    /**
+     * Return the number of operations in the pool.
+     *
+     * @return The number of operations.
+     */
+    public synchronized int size() {
+        return this.pool.size();
+    }
+}
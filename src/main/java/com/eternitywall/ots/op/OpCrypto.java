@@ -1,15 +1,20 @@
 package com.eternitywall.ots.op;
 
+import com.eternitywall.ots.Metrics;
 import com.eternitywall.ots.StreamDeserializationContext;
-import com.eternitywall.ots.Utils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 import java.io.File;
-import java.io.FileInputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
 import java.security.MessageDigest;
 import java.security.NoSuchAlgorithmException;
-import java.util.logging.Logger;
+import java.util.HashMap;
+import java.util.Map;
 
 /**
  * Cryptographic transformations.
@@ -21,10 +26,42 @@ import java.util.logging.Logger;
  */
 public class OpCrypto extends OpUnary {
 
-    private static Logger log = Utils.getLogger(OpCrypto.class.getName());
+    private static final Logger log = LoggerFactory.getLogger(OpCrypto.class);
 
     public String _TAG_NAME = "";
 
+    /**
+     * Files of at least this size are hashed from memory-mapped regions; smaller files are read through a direct
+     * buffer. Mapping has a fixed setup cost but saves copying every byte out of the page cache, which only pays off
+     * for large files.
+     */
+    private static final long MAP_THRESHOLD = 64L * 1024 * 1024;
+
+    /**
+     * Size of each memory-mapped region, so that files larger than a single mapping allows can be hashed too.
+     */
+    private static final int MAP_REGION_SIZE = 256 * 1024 * 1024;
+
+    private static final int BUFFER_SIZE = 1048576;
+
+    private static final ThreadLocal<ByteBuffer> buffers = new ThreadLocal<ByteBuffer>() {
+        @Override
+        protected ByteBuffer initialValue() {
+            return ByteBuffer.allocateDirect(BUFFER_SIZE);
+        }
+    };
+
+    /**
+     * The digests of each thread, by algorithm name, reused across calls since looking up a provider costs more
+     * than hashing a message.
+     */
+    private static final ThreadLocal<Map<String, MessageDigest>> digests = new ThreadLocal<Map<String, MessageDigest>>() {
+        @Override
+        protected Map<String, MessageDigest> initialValue() {
+            return new HashMap<>();
+        }
+    };
+
     public String _HASHLIB_NAME() {
         return "";
     }
@@ -39,20 +76,82 @@ public class OpCrypto extends OpUnary {
 
     @Override
     public byte[] call(byte[] msg) {
-        // For Sha1 & Sha256 use java.security.MessageDigest library
+        Metrics.get().count(Metrics.HASH_OPS, this._TAG_NAME(), 1);
+
         try {
-            MessageDigest digest = MessageDigest.getInstance(this._HASHLIB_NAME());
+            MessageDigest digest = this.threadDigest();
 
-            return digest.digest(msg);   // The hash
+            try {
+                return digest.digest(msg);   // The hash
+            } finally {
+                digest.reset();
+            }
         } catch (NoSuchAlgorithmException e) {
-            log.severe("NoSuchAlgorithmException:" + e);
+            log.error("NoSuchAlgorithmException", e);
 
             return new byte[]{};     // TODO: Is this OK? Won't it blow up later? Better to throw?
         }
     }
 
+    /**
+     * Hash the concatenation of two messages, as call(Utils.arraysConcat(first, second)) would, without building
+     * the concatenation. This is how an append or prepend followed by this operation is evaluated when the
+     * concatenation itself isn't needed.
+     *
+     * @param first  The start of the message.
+     * @param second The end of the message.
+     * @return The hash.
+     */
+    public byte[] call(byte[] first, byte[] second) {
+        Metrics.get().count(Metrics.HASH_OPS, this._TAG_NAME(), 1);
+
+        try {
+            MessageDigest digest = this.threadDigest();
+
+            try {
+                digest.update(first);
+                digest.update(second);
+
+                return digest.digest();   // The hash
+            } finally {
+                digest.reset();
+            }
+        } catch (NoSuchAlgorithmException e) {
+            log.error("NoSuchAlgorithmException", e);
+
+            return new byte[]{};
+        }
+    }
+
+    /**
+     * Get the digest of this operation kept by the calling thread. Every use must reset it when done, even when
+     * hashing fails midway, and must not hold it across calls that could hash too.
+     */
+    private MessageDigest threadDigest() throws NoSuchAlgorithmException {
+        Map<String, MessageDigest> map = digests.get();
+        MessageDigest digest = map.get(this._HASHLIB_NAME());
+
+        if (digest == null) {
+            digest = this.newDigest();
+            map.put(this._HASHLIB_NAME(), digest);
+        }
+
+        return digest;
+    }
+
+    /**
+     * Create a MessageDigest computing this operation, for hashing data that is fed in piece by piece.
+     *
+     * @return A new MessageDigest.
+     * @throws NoSuchAlgorithmException if no provider implements the hash.
+     */
+    public MessageDigest newDigest() throws NoSuchAlgorithmException {
+        return MessageDigest.getInstance(this._HASHLIB_NAME());
+    }
+
     public byte[] hashFd(StreamDeserializationContext ctx) throws NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance(this._HASHLIB_NAME());
+        Metrics.get().count(Metrics.HASH_OPS, this._TAG_NAME(), 1);
+        MessageDigest digest = this.newDigest();
         byte[] chunk = ctx.read(1048576);
 
         while (chunk != null && chunk.length > 0) {
@@ -63,8 +162,63 @@ public class OpCrypto extends OpUnary {
         return digest.digest();   // The hash
     }
 
+    /**
+     * Hash a file through a FileChannel: memory-mapped when it is at least {@link #MAP_THRESHOLD} bytes, otherwise
+     * read through a direct buffer reused by the calling thread.
+     *
+     * @param file The file to hash.
+     * @return The hash.
+     * @throws IOException              if the file can't be read.
+     * @throws NoSuchAlgorithmException if no provider implements the hash.
+     */
     public byte[] hashFd(File file) throws IOException, NoSuchAlgorithmException {
-        return hashFd(new FileInputStream(file));
+        return this.hashFd(file, MAP_THRESHOLD, MAP_REGION_SIZE);
+    }
+
+    /**
+     * Hash a file as {@link #hashFd(File)} does, with the size from which it is mapped and the size of the mapped
+     * regions given, so that tests and benchmarks can take either path.
+     *
+     * @param file          The file to hash.
+     * @param mapThreshold  The size from which the file is memory-mapped.
+     * @param mapRegionSize The size of each mapped region.
+     * @return The hash.
+     * @throws IOException              if the file can't be read.
+     * @throws NoSuchAlgorithmException if no provider implements the hash.
+     */
+    byte[] hashFd(File file, long mapThreshold, int mapRegionSize) throws IOException, NoSuchAlgorithmException {
+        Metrics.get().count(Metrics.HASH_OPS, this._TAG_NAME(), 1);
+        MessageDigest digest = this.newDigest();
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long size = channel.size();
+
+            if (size >= mapThreshold) {
+                hashMapped(channel, size, mapRegionSize, digest);
+            } else {
+                hashBuffered(channel, digest);
+            }
+        }
+
+        return digest.digest();   // The hash
+    }
+
+    private static void hashMapped(FileChannel channel, long size, int regionSize, MessageDigest digest) throws IOException {
+        for (long position = 0; position < size; position += regionSize) {
+            long length = Math.min(regionSize, size - position);
+            digest.update(channel.map(FileChannel.MapMode.READ_ONLY, position, length));
+        }
+    }
+
+    private static void hashBuffered(FileChannel channel, MessageDigest digest) throws IOException {
+        ByteBuffer buffer = buffers.get();
+        buffer.clear();
+
+        while (channel.read(buffer) >= 0) {
+            buffer.flip();
+            digest.update(buffer);
+            buffer.clear();
+        }
     }
 
     public byte[] hashFd(byte[] bytes) throws NoSuchAlgorithmException {
@@ -74,7 +228,8 @@ public class OpCrypto extends OpUnary {
     }
 
     public byte[] hashFd(InputStream inputStream) throws IOException, NoSuchAlgorithmException {
-        MessageDigest digest = MessageDigest.getInstance(this._HASHLIB_NAME());
+        Metrics.get().count(Metrics.HASH_OPS, this._TAG_NAME(), 1);
+        MessageDigest digest = this.newDigest();
         byte[] chunk = new byte[1048576];
         int count = inputStream.read(chunk, 0, 1048576);
 
@@ -1,7 +1,10 @@
 package com.eternitywall.ots.op;
 
+import com.eternitywall.ots.crypto.DigestAdapter;
 import com.eternitywall.ots.crypto.KeccakDigest;
 
+import java.security.MessageDigest;
+
 /**
  * Cryptographic Keccak256 operation.
  * Cryptographic operation tag numbers taken from RFC4880, although it's not
@@ -11,8 +14,6 @@ import com.eternitywall.ots.crypto.KeccakDigest;
  */
 public class OpKECCAK256 extends OpCrypto {
 
-    private KeccakDigest digest = new KeccakDigest(256);
-
     public static final byte _TAG = (byte) 103;
 
     @Override
@@ -32,7 +33,7 @@ public class OpKECCAK256 extends OpCrypto {
 
     @Override
     public int _DIGEST_LENGTH() {
-        return digest.getDigestSize();
+        return 32;
     }
 
     public OpKECCAK256() {
@@ -40,11 +41,7 @@ public class OpKECCAK256 extends OpCrypto {
     }
 
     @Override
-    public byte[] call(byte[] msg) {
-        digest.update(msg, 0, msg.length);
-        byte[] hash = new byte[digest.getDigestSize()];
-        digest.doFinal(hash, 0);
-
-        return hash;
+    public MessageDigest newDigest() {
+        return new DigestAdapter(new KeccakDigest(256));
     }
 }
@@ -36,6 +36,17 @@ public class OpPrepend extends OpBinary {
         return Utils.arraysConcat(this.arg, msg);
     }
 
+    @Override
+    public byte[] callThenHash(byte[] msg, OpCrypto hash) {
+        this.checkArg();
+
+        if (hash instanceof OpSHA256) {
+            return ((OpSHA256) hash).callPrefixed(this.arg, msg);
+        }
+
+        return hash.call(this.arg, msg);
+    }
+
     @Override
     public boolean equals(Object other) {
         if (!(other instanceof OpPrepend)) {
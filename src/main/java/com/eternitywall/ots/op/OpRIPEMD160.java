@@ -1,7 +1,10 @@
 package com.eternitywall.ots.op;
 
+import com.eternitywall.ots.crypto.DigestAdapter;
 import com.eternitywall.ots.crypto.RIPEMD160Digest;
 
+import java.security.MessageDigest;
+
 /**
  * Cryptographic RIPEMD160 operation.
  * Cryptographic operation tag numbers taken from RFC4880, although it's not
@@ -38,17 +41,12 @@ public class OpRIPEMD160 extends OpCrypto {
     }
 
     @Override
-    public byte[] call(byte[] msg) {
-        RIPEMD160Digest digest = new RIPEMD160Digest();
-        digest.update(msg, 0, msg.length);
-        byte[] hash = new byte[digest.getDigestSize()];
-        digest.doFinal(hash, 0);
-
-        return hash;
+    public int hashCode() {
+        return _TAG;
     }
 
     @Override
-    public int hashCode() {
-        return _TAG;
+    public MessageDigest newDigest() {
+        return new DigestAdapter(new RIPEMD160Digest());
     }
 }
@@ -1,5 +1,9 @@
 package com.eternitywall.ots.op;
 
+import com.eternitywall.ots.Metrics;
+import com.eternitywall.ots.crypto.SHA256MidstateCache;
+import com.eternitywall.ots.crypto.SHA256Pair;
+
 /**
  * Cryptographic SHA256 operation.
  * Cryptographic operation tag numbers taken from RFC4880, although it's not
@@ -11,6 +15,24 @@ public class OpSHA256 extends OpCrypto {
 
     public static final byte _TAG = 0x08;
 
+    /**
+     * Whether the JDK's SHA-256 runs as plain Java code, as it does before Java 9. Later JDKs compile it to the CPU's
+     * own instructions, several times faster than the digests of the crypto package.
+     */
+    private static final boolean JAVA_DIGEST = System.getProperty("java.specification.version", "").startsWith("1.");
+
+    /**
+     * Hash 64 byte messages, the inner nodes of merkle trees, with {@link SHA256Pair} rather than the JDK's digest.
+     * It beats the JDK 8 digest, but not those of later JDKs, so it is only used before Java 9.
+     */
+    private static final boolean PAIR_DIGEST = JAVA_DIGEST;
+
+    /**
+     * The states left by the long prefixes prepended most recently, shared by all threads. Resuming from them goes
+     * through the pure Java {@link com.eternitywall.ots.crypto.SHA256Digest}, so there is none after Java 8.
+     */
+    private static final SHA256MidstateCache midstates = JAVA_DIGEST ? new SHA256MidstateCache(1024) : null;
+
     @Override
     public byte _TAG() {
         return OpSHA256._TAG;
@@ -35,6 +57,49 @@ public class OpSHA256 extends OpCrypto {
         super();
     }
 
+    @Override
+    public byte[] call(byte[] msg) {
+        if (!PAIR_DIGEST || msg.length != SHA256Pair.INPUT_LENGTH) {
+            return super.call(msg);
+        }
+
+        Metrics.get().count(Metrics.HASH_OPS, this._TAG_NAME(), 1);
+        byte[] out = new byte[SHA256Pair.DIGEST_LENGTH];
+        SHA256Pair.hash(msg, 0, out, 0);
+
+        return out;
+    }
+
+    @Override
+    public byte[] call(byte[] first, byte[] second) {
+        if (!PAIR_DIGEST || first.length != SHA256Pair.DIGEST_LENGTH || second.length != SHA256Pair.DIGEST_LENGTH) {
+            return super.call(first, second);
+        }
+
+        Metrics.get().count(Metrics.HASH_OPS, this._TAG_NAME(), 1);
+
+        return SHA256Pair.hash(first, second);
+    }
+
+    /**
+     * Hash a message with a prefix prepended, as call(Utils.arraysConcat(prefix, msg)) would. Before Java 9, the
+     * state left by prefixes of at least {@link SHA256MidstateCache#MIN_PREFIX_LENGTH} bytes is cached, so that the
+     * same prefix prepended to another message isn't hashed again.
+     *
+     * @param prefix The prefix.
+     * @param msg    The message.
+     * @return The hash.
+     */
+    public byte[] callPrefixed(byte[] prefix, byte[] msg) {
+        if (midstates == null || prefix.length < SHA256MidstateCache.MIN_PREFIX_LENGTH) {
+            return this.call(prefix, msg);
+        }
+
+        Metrics.get().count(Metrics.HASH_OPS, this._TAG_NAME(), 1);
+
+        return midstates.hash(prefix, msg);
+    }
+
     @Override
     public int hashCode() {
         return _TAG;
@@ -1,9 +1,8 @@
 package com.eternitywall.ots.op;
 
 import com.eternitywall.ots.StreamDeserializationContext;
-import com.eternitywall.ots.Utils;
-
-import java.util.logging.Logger;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
 
 /**
  * Operations that act on a single message.
@@ -12,7 +11,7 @@ import java.util.logging.Logger;
  */
 public abstract class OpUnary extends Op {
 
-    private static Logger log = Utils.getLogger(OpUnary.class.getName());
+    private static final Logger log = LoggerFactory.getLogger(OpUnary.class);
 
     @Override
     public String _TAG_NAME() {
@@ -24,18 +23,39 @@ public abstract class OpUnary extends Op {
     }
 
     public static Op deserializeFromTag(StreamDeserializationContext ctx, byte tag) {
-        if (tag == OpSHA1._TAG) {
-            return new OpSHA1();
-        } else if (tag == OpSHA256._TAG) {
-            return new OpSHA256();
-        } else if (tag == OpRIPEMD160._TAG) {
-            return new OpRIPEMD160();
-        } else if (tag == OpKECCAK256._TAG) {
-            return new OpKECCAK256();
-        } else {
-            log.severe("Unknown operation tag: " + tag);
-
-            return null;     // TODO: Is this OK? Won't it blow up later? Better to throw?
+        OpUnary op = getInstance(tag);
+
+        if (op == null) {
+            log.error("Unknown operation tag: {}", tag);
+        }
+
+        return op;     // TODO: Is null OK? Won't it blow up later? Better to throw?
+    }
+
+    /**
+     * Get the shared instance of a unary operation.
+     * Unary operations have no arguments and no state, so a single instance of each is used everywhere.
+     *
+     * @param tag The tag of the operation.
+     * @return The operation, or null if the tag is not a unary operation.
+     */
+    public static OpUnary getInstance(byte tag) {
+        return Registry.INSTANCES[tag & 0xff];
+    }
+
+    /**
+     * Holder of the shared instances, initialized on first use so that it can't race the subclasses' own class
+     * initialization.
+     */
+    private static class Registry {
+        private static final OpUnary[] INSTANCES = new OpUnary[256];
+
+        static {
+            OpUnary[] ops = {new OpSHA1(), new OpSHA256(), new OpRIPEMD160(), new OpKECCAK256()};
+
+            for (OpUnary op : ops) {
+                INSTANCES[op._TAG() & 0xff] = op;
+            }
         }
     }
 
@@ -0,0 +1,129 @@
+package com.eternitywall.ots.crypto;
+
+import com.sun.management.HotSpotDiagnosticMXBean;
+import jdk.incubator.vector.IntVector;
+import jdk.incubator.vector.VectorOperators;
+import jdk.incubator.vector.VectorSpecies;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * {@link SHA256Lanes} whose rounds run through the Vector API, as many lanes per instruction as the CPU's widest
+ * vectors hold. Each group of lanes runs all 64 rounds with its state held in vectors, where the scalar lanes go back
+ * to the arrays at every round.
+ * <p>
+ * Compiled for Java 16 and later only, into the versioned part of the multi-release jar, and loaded by
+ * {@link SHA256Lanes#newInstance()} through reflection: this class can't even be loaded unless the VM was started
+ * with {@code --add-modules jdk.incubator.vector}.
+ */
+public class SHA256VectorLanes extends SHA256Lanes
+{
+    private static final VectorSpecies<Integer> SPECIES = IntVector.SPECIES_PREFERRED;
+
+    /**
+     * Whether these lanes beat the JDK's own SHA-256, which is only the case when the VM doesn't compile it to the
+     * CPU's SHA or vector instructions.
+     */
+    public static final boolean FASTER_THAN_JDK = !shaIntrinsic();
+
+    public SHA256VectorLanes()
+    {
+        super();
+    }
+
+    /**
+     * Tell whether the VM hashes SHA-256 with an intrinsic, assuming it does when it won't say.
+     */
+    private static boolean shaIntrinsic()
+    {
+        try
+        {
+            HotSpotDiagnosticMXBean vm = ManagementFactory.getPlatformMXBean(HotSpotDiagnosticMXBean.class);
+
+            // The flag of the SHA-256 intrinsic is diagnostic, only visible once unlocked; UseSHA turns all of them off
+            for (String flag : new String[]{"UseSHA256Intrinsics", "UseSHA"})
+            {
+                try
+                {
+                    return Boolean.parseBoolean(vm.getVMOption(flag).getValue());
+                }
+                catch (IllegalArgumentException e)
+                {
+                    // Not visible, try the next one
+                }
+            }
+        }
+        catch (RuntimeException | LinkageError e)
+        {
+            // Not a HotSpot VM
+        }
+
+        return true;
+    }
+
+    @Override
+    void processBlock()
+    {
+        int step = SPECIES.length();
+
+        for (int l = 0; l < LANES; l += step)
+        {
+            for (int t = 16; t < 64; t++)
+            {
+                IntVector x = IntVector.fromArray(SPECIES, W[t - 2], l);
+                IntVector y = IntVector.fromArray(SPECIES, W[t - 15], l);
+                x.lanewise(VectorOperators.ROR, 17)
+                    .lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.ROR, 19))
+                    .lanewise(VectorOperators.XOR, x.lanewise(VectorOperators.LSHR, 10))
+                    .add(IntVector.fromArray(SPECIES, W[t - 7], l))
+                    .add(y.lanewise(VectorOperators.ROR, 7)
+                        .lanewise(VectorOperators.XOR, y.lanewise(VectorOperators.ROR, 18))
+                        .lanewise(VectorOperators.XOR, y.lanewise(VectorOperators.LSHR, 3)))
+                    .add(IntVector.fromArray(SPECIES, W[t - 16], l))
+                    .intoArray(W[t], l);
+            }
+
+            IntVector a = IntVector.fromArray(SPECIES, H, l);
+            IntVector b = IntVector.fromArray(SPECIES, H, LANES + l);
+            IntVector c = IntVector.fromArray(SPECIES, H, 2 * LANES + l);
+            IntVector d = IntVector.fromArray(SPECIES, H, 3 * LANES + l);
+            IntVector e = IntVector.fromArray(SPECIES, H, 4 * LANES + l);
+            IntVector f = IntVector.fromArray(SPECIES, H, 5 * LANES + l);
+            IntVector g = IntVector.fromArray(SPECIES, H, 6 * LANES + l);
+            IntVector h = IntVector.fromArray(SPECIES, H, 7 * LANES + l);
+
+            for (int t = 0; t < 64; t++)
+            {
+                IntVector t1 = h
+                    .add(e.lanewise(VectorOperators.ROR, 6)
+                        .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 11))
+                        .lanewise(VectorOperators.XOR, e.lanewise(VectorOperators.ROR, 25)))
+                    .add(e.and(f).lanewise(VectorOperators.XOR, e.not().and(g)))
+                    .add(SHA256Digest.K[t])
+                    .add(IntVector.fromArray(SPECIES, W[t], l));
+                IntVector t2 = a.lanewise(VectorOperators.ROR, 2)
+                    .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 13))
+                    .lanewise(VectorOperators.XOR, a.lanewise(VectorOperators.ROR, 22))
+                    .add(a.and(b).lanewise(VectorOperators.XOR, a.and(c)).lanewise(VectorOperators.XOR, b.and(c)));
+
+                h = g;
+                g = f;
+                f = e;
+                e = d.add(t1);
+                d = c;
+                c = b;
+                b = a;
+                a = t1.add(t2);
+            }
+
+            a.add(IntVector.fromArray(SPECIES, H, l)).intoArray(H, l);
+            b.add(IntVector.fromArray(SPECIES, H, LANES + l)).intoArray(H, LANES + l);
+            c.add(IntVector.fromArray(SPECIES, H, 2 * LANES + l)).intoArray(H, 2 * LANES + l);
+            d.add(IntVector.fromArray(SPECIES, H, 3 * LANES + l)).intoArray(H, 3 * LANES + l);
+            e.add(IntVector.fromArray(SPECIES, H, 4 * LANES + l)).intoArray(H, 4 * LANES + l);
+            f.add(IntVector.fromArray(SPECIES, H, 5 * LANES + l)).intoArray(H, 5 * LANES + l);
+            g.add(IntVector.fromArray(SPECIES, H, 6 * LANES + l)).intoArray(H, 6 * LANES + l);
+            h.add(IntVector.fromArray(SPECIES, H, 7 * LANES + l)).intoArray(H, 7 * LANES + l);
+        }
+    }
+}
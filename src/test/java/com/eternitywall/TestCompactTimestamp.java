@@ -0,0 +1,75 @@
+package com.eternitywall;
+
+import com.eternitywall.ots.CompactTimestamp;
+import com.eternitywall.ots.DetachedTimestampFile;
+import com.eternitywall.ots.Merkle;
+import com.eternitywall.ots.OpenTimestamps;
+import com.eternitywall.ots.Timestamp;
+import com.eternitywall.ots.attestation.PendingAttestation;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.bitcoinj.core.Utils.toBytes;
+import static org.junit.Assert.*;
+
+public class TestCompactTimestamp {
+
+    private static final String[] examples = {
+            "examples/hello-world.txt.ots",
+            "examples/incomplete.txt.ots",
+            "examples/merkle1.txt.ots",
+            "examples/merkle2.txt.ots",
+            "examples/merkle3.txt.ots",
+            "examples/different-blockchains.txt.ots",
+            "examples/known-and-unknown-notary.txt.ots",
+            "examples/bad-stamp.txt.ots",
+            "examples/hello-world.txt.eth.ots"
+    };
+
+    @Test
+    public void testExamplesRoundTrip() throws IOException {
+        for (String example : examples) {
+            Timestamp timestamp = DetachedTimestampFile.deserialize(Files.readAllBytes(Paths.get(example))).getTimestamp();
+            byte[] serialized = timestamp.serialize();
+
+            CompactTimestamp fromTimestamp = CompactTimestamp.from(timestamp);
+            CompactTimestamp fromBytes = CompactTimestamp.deserialize(serialized, timestamp.msg);
+
+            assertArrayEquals(example, serialized, fromTimestamp.serialize());
+            assertArrayEquals(example, serialized, fromBytes.serialize());
+            assertArrayEquals(example, timestamp.msg, fromBytes.getDigest());
+            assertEquals(example, timestamp, fromBytes.toTimestamp());
+            assertEquals(example, timestamp.strTree(0, false), fromBytes.strTree(0, false));
+            assertEquals(example, timestamp.strTree(0, true), fromBytes.strTree(0, true));
+            assertEquals(example, OpenTimestamps.info(timestamp), OpenTimestamps.info(fromBytes));
+            assertEquals(example, timestamp.allAttestations().size(), fromBytes.allAttestations().size());
+            assertEquals(example, timestamp.getAttestations(), fromBytes.getAttestations());
+            assertEquals(example, timestamp.isTimestampComplete(), fromBytes.isTimestampComplete());
+        }
+    }
+
+    @Test
+    public void testMerkleTree() {
+        List<Timestamp> roots = new ArrayList<>();
+
+        for (int i = 0; i < 7; i++) {
+            roots.add(new Timestamp(new byte[]{(byte) i}));
+        }
+
+        Timestamp tip = Merkle.makeMerkleTree(roots);
+        tip.attestations.add(new PendingAttestation(toBytes("foobar", "UTF-8")));
+
+        for (Timestamp root : roots) {
+            CompactTimestamp compact = CompactTimestamp.from(root);
+            assertArrayEquals(root.serialize(), compact.serialize());
+            assertEquals(root, compact.toTimestamp());
+            assertEquals(root.strTree(0, true), compact.strTree(0, true));
+            assertArrayEquals(tip.msg, compact.allAttestations().get(0).getKey());
+        }
+    }
+}
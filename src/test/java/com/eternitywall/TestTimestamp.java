@@ -1,11 +1,14 @@
 package com.eternitywall;
 
 import com.eternitywall.ots.Merkle;
+import com.eternitywall.ots.MerkleBuilder;
 import com.eternitywall.ots.StreamDeserializationContext;
 import com.eternitywall.ots.StreamSerializationContext;
 import com.eternitywall.ots.Timestamp;
+import com.eternitywall.ots.Utils;
 import static com.eternitywall.ots.Utils.hexToBytes;
 import com.eternitywall.ots.attestation.PendingAttestation;
+import com.eternitywall.ots.attestation.TimeAttestation;
 import com.eternitywall.ots.op.Op;
 import com.eternitywall.ots.op.OpAppend;
 import com.eternitywall.ots.op.OpSHA256;
@@ -15,6 +18,7 @@ import java.io.ByteArrayOutputStream;
 import java.io.IOException;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import static org.bitcoinj.core.Utils.toBytes;
@@ -157,6 +161,26 @@ public class TestTimestamp {
         }
     }
 
+    @Test
+    public void testAllAttestations() {
+        Timestamp timestamp = new Timestamp(toBytes("foo", "UTF-8"));
+        timestamp.attestations.add(new PendingAttestation(toBytes("foobar", "UTF-8")));
+        timestamp.attestations.add(new PendingAttestation(toBytes("barfoo", "UTF-8")));
+        Timestamp sha256Stamp = timestamp.add(new OpSHA256());
+        sha256Stamp.attestations.add(new PendingAttestation(toBytes("deeper", "UTF-8")));
+
+        List<Map.Entry<byte[], TimeAttestation>> all = timestamp.allAttestations();
+        assertEquals(3, all.size());
+        assertArrayEquals(timestamp.msg, all.get(0).getKey());
+        assertEquals(new PendingAttestation(toBytes("foobar", "UTF-8")), all.get(0).getValue());
+        assertArrayEquals(timestamp.msg, all.get(1).getKey());
+        assertEquals(new PendingAttestation(toBytes("barfoo", "UTF-8")), all.get(1).getValue());
+        assertArrayEquals(sha256Stamp.msg, all.get(2).getKey());
+        assertEquals(new PendingAttestation(toBytes("deeper", "UTF-8")), all.get(2).getValue());
+
+        assertEquals(3, timestamp.getAttestations().size());
+    }
+
     @Test
     public void testMakeMerkleTree() {
         defTimestamp(2, hexToBytes("b413f47d13ee2fe6c845b2ee141af81de858df4ec549a58b7970bb96645bc8d2"));
@@ -167,6 +191,34 @@ public class TestTimestamp {
         defTimestamp(7, hexToBytes("ba4603a311279dea32e8958bfb660c86237157bf79e6bfee857803e811d91b8f"));
     }
 
+    @Test
+    public void testMerkleBuilder() {
+        assertNull(new MerkleBuilder().build());
+
+        for (int n = 1; n <= 64; n++) {
+            List<Timestamp> roots = new ArrayList<>();
+            MerkleBuilder builder = new MerkleBuilder();
+            List<Timestamp> leaves = new ArrayList<>();
+
+            for (int i = 0; i < n; i++) {
+                roots.add(new Timestamp(new byte[]{(byte) i}));
+                Timestamp leaf = new Timestamp(new byte[]{(byte) i});
+                leaves.add(leaf);
+                builder.add(leaf);
+            }
+
+            assertEquals(n, builder.size());
+
+            Timestamp expected = Merkle.makeMerkleTree(roots);
+            Timestamp tip = builder.build();
+            assertArrayEquals("n = " + n, expected.getDigest(), tip.getDigest());
+
+            for (int i = 0; i < n; i++) {
+                assertEquals("n = " + n + ", leaf " + i, roots.get(i), leaves.get(i));
+            }
+        }
+    }
+
     @Test
     public void testCatSha256() {
         Timestamp left = new Timestamp(toBytes("foo", "UTF-8"));
@@ -179,6 +231,121 @@ public class TestTimestamp {
         assertArrayEquals(hexToBytes("23388b16c66f1fa37ef14af8eb081712d570813e2afb8c8ae86efa726f3b7276"), stampRighter.getDigest());
     }
 
+    /**
+     * A chain of SHA256 ops, tens of thousands of edges long, ending in a pending attestation.
+     */
+    @Test
+    public void testDeepChain() throws Throwable {
+        runWithSmallStack(new Runnable() {
+            @Override
+            public void run() {
+                int depth = 50000;
+                Timestamp root = new Timestamp(toBytes("deep", "UTF-8"));
+                Timestamp tip = root;
+
+                for (int i = 0; i < depth; i++) {
+                    tip = tip.add(new OpSHA256());
+                }
+
+                tip.attestations.add(new PendingAttestation(toBytes("foobar", "UTF-8")));
+
+                byte[] serialized = root.serialize();
+                assertEquals(depth + 1 + 8 + 1 + 7, serialized.length);
+
+                Timestamp deserialized = Timestamp.deserialize(serialized, root.msg);
+                assertEquals(root, deserialized);
+                assertArrayEquals(serialized, deserialized.serialize());
+
+                List<Map.Entry<byte[], TimeAttestation>> all = deserialized.allAttestations();
+                assertEquals(1, all.size());
+                assertArrayEquals(tip.msg, all.get(0).getKey());
+                assertEquals(1, deserialized.directlyVerified().size());
+                assertArrayEquals(tip.msg, deserialized.allTips().iterator().next());
+                assertTrue(deserialized.strTree(0, false).endsWith("verify PendingAttestation('foobar')\n"));
+
+                Timestamp merged = new Timestamp(root.msg);
+
+                try {
+                    merged.merge(deserialized);
+                } catch (Exception e) {
+                    fail("Unexpected exception: " + e);
+                }
+
+                assertEquals(root, merged);
+
+                tip.attestations.clear();
+                assertNotEquals(root, merged);
+            }
+        });
+    }
+
+    /**
+     * A spine of SHA256 ops that forks off an attested append at every step, so that every fan-out path is deep.
+     */
+    @Test
+    public void testDeepFork() throws Throwable {
+        runWithSmallStack(new Runnable() {
+            @Override
+            public void run() {
+                int depth = 1000;
+                Timestamp root = new Timestamp(toBytes("fork", "UTF-8"));
+                Timestamp spine = root;
+
+                for (int i = 0; i < depth; i++) {
+                    Timestamp leaf = spine.add(new OpAppend(toBytes("leaf", "UTF-8")));
+                    leaf.attestations.add(new PendingAttestation(toBytes("foobar", "UTF-8")));
+                    spine = spine.add(new OpSHA256());
+                }
+
+                spine.attestations.add(new PendingAttestation(toBytes("barfoo", "UTF-8")));
+
+                Timestamp deserialized = Timestamp.deserialize(root.serialize(), root.msg);
+                assertEquals(root, deserialized);
+                assertEquals(depth + 1, deserialized.allAttestations().size());
+                assertEquals(depth + 1, deserialized.directlyVerified().size());
+                assertEquals(depth + 1, deserialized.allTips().size());
+
+                // Appends sort before SHA256, so the leaf comes first at every level
+                List<Timestamp> verified = deserialized.directlyVerified();
+                assertArrayEquals(root.ops.get(new OpAppend(toBytes("leaf", "UTF-8"))).msg, verified.get(0).msg);
+                assertArrayEquals(spine.msg, verified.get(depth).msg);
+
+                String tree = deserialized.strTree(0, true);
+                assertEquals(root.strTree(0, true), tree);
+                assertTrue(tree.endsWith(Timestamp.indention(depth) + "verify PendingAttestation('barfoo')\n"));
+
+                String string = deserialized.toString(0);
+                assertEquals(root.toString(0), string);
+                assertTrue(string.startsWith("msg: " + Utils.bytesToHex(root.msg).toLowerCase() + "\n0 attestations: \n2 ops: \n"));
+            }
+        });
+    }
+
+    /**
+     * Run a test on a thread with a stack far too small for one frame per edge.
+     */
+    private static void runWithSmallStack(Runnable runnable) throws Throwable {
+        final Throwable[] failure = new Throwable[1];
+        final Runnable test = runnable;
+        Thread thread = new Thread(null, new Runnable() {
+            @Override
+            public void run() {
+                try {
+                    test.run();
+                } catch (Throwable t) {
+                    failure[0] = t;
+                }
+            }
+        }, "deep-timestamp", 256 * 1024);
+
+        thread.start();
+        thread.join();
+
+        if (failure[0] != null) {
+            throw failure[0];
+        }
+    }
+
     private void defTimestamp(int n, byte[] expectedMerkleRoot) {
         List<Timestamp> roots = new ArrayList<>();
 
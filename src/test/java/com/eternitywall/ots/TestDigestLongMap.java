@@ -0,0 +1,65 @@
+package com.eternitywall.ots;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TestDigestLongMap {
+
+    @Test
+    public void testSameAsHashMap() {
+        Random random = new Random(42);
+        DigestLongMap map = new DigestLongMap();
+        final Map<DigestValue, Long> expected = new HashMap<>();
+        List<DigestValue> keys = new ArrayList<>();
+
+        for (int i = 0; i < 3000; i++) {
+            byte[] digest = new byte[32];
+            random.nextBytes(digest);
+            // Many keys differing only in their last word
+            digest[0] = 0;
+            keys.add(DigestValue.of(digest));
+        }
+
+        for (int i = 0; i < 100000; i++) {
+            DigestValue key = keys.get(random.nextInt(keys.size()));
+
+            switch (random.nextInt(3)) {
+                case 0:
+                    map.put(key, i);
+                    expected.put(key, (long) i);
+                    break;
+                case 1:
+                    assertEquals(expected.remove(key) != null, map.remove(key));
+                    break;
+                default:
+                    Long value = expected.get(key);
+                    assertEquals(value == null ? -1 : value, map.get(key, -1));
+                    assertEquals(value == null ? -1 : value, map.get(key.toBytes(), -1));
+                    assertEquals(value != null, map.containsKey(key));
+            }
+
+            assertEquals(expected.size(), map.size());
+        }
+
+        final Map<DigestValue, Long> visited = new HashMap<>();
+        map.forEach(new DigestLongMap.Visitor() {
+            @Override
+            public void visit(DigestValue key, long value) {
+                assertNull(visited.put(key, value));
+            }
+        });
+        assertEquals(expected, visited);
+
+        map.clear();
+        assertEquals(0, map.size());
+        assertFalse(map.containsKey(keys.get(0)));
+        assertEquals(-1, map.get(new byte[20], -1));
+    }
+}
@@ -0,0 +1,62 @@
+package com.eternitywall.ots;
+
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TestDigestValue {
+
+    @Test
+    public void testValue() {
+        byte[] digest = Utils.hexToBytes("03ba204e50d126e4674c005e04d82e84c21366780af1f43bd54a37816b6ab340");
+        DigestValue value = DigestValue.of(digest);
+
+        assertArrayEquals(digest, value.toBytes());
+        assertEquals("03ba204e50d126e4674c005e04d82e84c21366780af1f43bd54a37816b6ab340", value.toString());
+        assertEquals(value, DigestValue.fromHex(value.toString().toUpperCase()));
+        assertEquals(value.hashCode(), DigestValue.of(digest.clone()).hashCode());
+        assertTrue(value.matches(digest));
+
+        byte[] other = digest.clone();
+        other[31] ^= 1;
+        assertNotEquals(value, DigestValue.of(other));
+        assertFalse(value.matches(other));
+
+        try {
+            DigestValue.of(new byte[20]);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Not 32 bytes
+        }
+    }
+
+    @Test
+    public void testOrder() {
+        Random random = new Random(42);
+
+        for (int i = 0; i < 1000; i++) {
+            byte[] a = new byte[32];
+            byte[] b = new byte[32];
+            random.nextBytes(a);
+            // Mostly equal prefixes, to compare every word
+            System.arraycopy(a, 0, b, 0, 32);
+            b[random.nextInt(32)] = (byte) random.nextInt();
+
+            int expected = Integer.signum(compareBytes(a, b));
+            assertEquals(expected, Integer.signum(DigestValue.of(a).compareTo(DigestValue.of(b))));
+        }
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        for (int i = 0; i < a.length; i++) {
+            if (a[i] != b[i]) {
+                return (a[i] & 0xff) - (b[i] & 0xff);
+            }
+        }
+
+        return 0;
+    }
+}
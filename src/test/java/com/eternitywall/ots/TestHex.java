@@ -0,0 +1,103 @@
+package com.eternitywall.ots;
+
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TestHex {
+
+    @Test
+    public void testEncode() throws IOException {
+        byte[] bytes = new byte[256];
+
+        for (int i = 0; i < bytes.length; i++) {
+            bytes[i] = (byte) i;
+        }
+
+        StringBuilder expected = new StringBuilder();
+
+        for (byte b : bytes) {
+            expected.append(String.format("%02x", b));
+        }
+
+        assertEquals(expected.toString(), Hex.encode(bytes));
+        assertEquals(expected.toString().toUpperCase(), Hex.encodeUpper(bytes));
+        assertEquals(expected.toString().toUpperCase(), Utils.bytesToHex(bytes));
+
+        char[] chars = new char[520];
+        Hex.encode(bytes, 1, 255, chars, 3, false);
+        assertEquals(expected.substring(2), new String(chars, 3, 510));
+
+        // Through each kind of output, across the chunks a Writer is written in
+        byte[] large = new byte[1500];
+        new Random(42).nextBytes(large);
+        StringBuilder builder = new StringBuilder("x");
+        Hex.encode(large, builder);
+        assertEquals("x" + Hex.encode(large), builder.toString());
+        StringWriter writer = new StringWriter();
+        Hex.encode(large, writer);
+        assertEquals(Hex.encode(large), writer.toString());
+        StringBuffer buffer = new StringBuffer();
+        Hex.encode(large, buffer);
+        assertEquals(Hex.encode(large), buffer.toString());
+    }
+
+    @Test
+    public void testDecode() {
+        Random random = new Random(42);
+
+        for (int length = 0; length < 100; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            assertArrayEquals(bytes, Hex.decode(Hex.encode(bytes)));
+            assertArrayEquals(bytes, Hex.decode(Hex.encodeUpper(bytes)));
+        }
+
+        byte[] out = new byte[4];
+        Hex.decode("zz0aFfzz", 2, 6, out, 1);
+        assertArrayEquals(new byte[]{0, 0x0a, (byte) 0xff, 0}, out);
+
+        for (String bad : new String[]{"0", "0g", "g0", " 0", "\u0661\u0662", "\uff10\uff10"}) {
+            try {
+                Hex.decode(bad);
+                fail(bad);
+            } catch (IllegalArgumentException e) {
+                // Not hex
+            }
+        }
+    }
+
+    @Test
+    public void testBase64() {
+        // RFC 4648 test vectors
+        String[][] vectors = {{"", ""}, {"f", "Zg=="}, {"fo", "Zm8="}, {"foo", "Zm9v"}, {"foob", "Zm9vYg=="},
+                {"fooba", "Zm9vYmE="}, {"foobar", "Zm9vYmFy"}};
+
+        for (String[] vector : vectors) {
+            assertEquals(vector[1], new String(Base64Coder.encode(vector[0].getBytes(StandardCharsets.US_ASCII))));
+            assertEquals(vector[0], new String(Base64Coder.decode(vector[1]), StandardCharsets.US_ASCII));
+        }
+
+        Random random = new Random(42);
+
+        for (int length = 0; length < 100; length++) {
+            byte[] bytes = new byte[length];
+            random.nextBytes(bytes);
+            assertArrayEquals(bytes, Base64Coder.decode(Base64Coder.encode(bytes)));
+        }
+
+        for (String bad : new String[]{"Zg=", "Z===", "Zm9v!mFy", "Zm9\u00e9"}) {
+            try {
+                Base64Coder.decode(bad);
+                fail(bad);
+            } catch (IllegalArgumentException e) {
+                // Not Base64
+            }
+        }
+    }
+}
@@ -0,0 +1,84 @@
+package com.eternitywall.ots;
+
+import com.eternitywall.ots.attestation.BitcoinBlockHeaderAttestation;
+import com.eternitywall.ots.attestation.PendingAttestation;
+import com.eternitywall.ots.attestation.TimeAttestation;
+import com.eternitywall.ots.exceptions.UrlException;
+import com.eternitywall.ots.op.OpSHA256;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TestLocalCalendar {
+
+    @Test
+    public void testStampAndUpgrade() throws Exception {
+        try (LocalCalendar calendar = new LocalCalendar(4)) {
+            List<DetachedTimestampFile> files = new ArrayList<>();
+
+            for (int i = 0; i < 5; i++) {
+                files.add(DetachedTimestampFile.from(new OpSHA256(), new byte[]{(byte) i}));
+            }
+
+            OpenTimestamps.stamp(files, Collections.singletonList(calendar.getUrl()), 1, new HashMap<String, String>());
+            assertEquals(1, calendar.getSubmitted());
+            assertEquals(1, calendar.getPending());
+
+            for (DetachedTimestampFile file : files) {
+                Set<TimeAttestation> attestations = file.getTimestamp().getAttestations();
+                assertEquals(1, attestations.size());
+                assertTrue(attestations.iterator().next() instanceof PendingAttestation);
+            }
+
+            // Still pending: nothing to upgrade
+            assertFalse(OpenTimestamps.upgrade(files.get(0)));
+
+            assertEquals(1, calendar.confirm());
+            assertEquals(0, calendar.getPending());
+            assertEquals(0, calendar.confirm());
+
+            // The files share the calendar commitment, so upgrading one upgrades all of them
+            assertTrue(OpenTimestamps.upgrade(files.get(0)));
+
+            for (DetachedTimestampFile file : files) {
+                assertTrue(file.getTimestamp().isTimestampComplete());
+                assertTrue(file.getTimestamp().getAttestations().contains(new BitcoinBlockHeaderAttestation(1)));
+            }
+        }
+    }
+
+    @Test
+    public void testCommitmentsShareBlock() throws Exception {
+        try (LocalCalendar calendar = new LocalCalendar(4)) {
+            Calendar client = new Calendar(calendar.getUrl());
+            List<Timestamp> timestamps = new ArrayList<>();
+
+            for (int i = 0; i < 7; i++) {
+                timestamps.add(client.submit(new byte[]{(byte) i, 1, 2, 3}));
+            }
+
+            assertEquals(7, calendar.confirm());
+
+            for (Timestamp timestamp : timestamps) {
+                Timestamp commitment = timestamp.directlyVerified().iterator().next();
+                Timestamp upgraded = client.getTimestamp(commitment.msg);
+                assertEquals(new BitcoinBlockHeaderAttestation(1), upgraded.allAttestations().get(0).getValue());
+            }
+        }
+    }
+
+    @Test(expected = UrlException.class)
+    public void testInjectedFailure() throws IOException, UrlException {
+        try (LocalCalendar calendar = new LocalCalendar(1)) {
+            calendar.setFailureRate(1);
+            new Calendar(calendar.getUrl()).submit(new byte[]{1});
+        }
+    }
+}
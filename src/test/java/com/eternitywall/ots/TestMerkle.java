@@ -0,0 +1,36 @@
+package com.eternitywall.ots;
+
+import org.junit.Test;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TestMerkle {
+
+    @Test
+    public void testLaneDigest() {
+        for (int n : new int[]{1, 2, 3, 64, 65, 200}) {
+            for (int length : new int[]{32, 0}) {
+                List<Timestamp> expected = new ArrayList<>();
+                List<Timestamp> actual = new ArrayList<>();
+
+                for (int i = 0; i < n; i++) {
+                    // Length 0 makes leaves of different lengths
+                    byte[] msg = ByteBuffer.allocate(length == 0 ? 1 + i % 40 : length).put(0, (byte) i).array();
+                    expected.add(new Timestamp(msg));
+                    actual.add(new Timestamp(msg));
+                }
+
+                Timestamp expectedTip = Merkle.makeMerkleTree(expected, false);
+                Timestamp actualTip = Merkle.makeMerkleTree(actual, true);
+
+                assertArrayEquals("n = " + n, expectedTip.getDigest(), actualTip.getDigest());
+                assertEquals("n = " + n, expected, actual);
+            }
+        }
+    }
+}
@@ -0,0 +1,149 @@
+package com.eternitywall.ots;
+
+import com.eternitywall.ots.op.OpSHA256;
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.LinkedBlockingQueue;
+
+import static org.junit.Assert.*;
+
+public class TestMetrics {
+
+    private static class Recorder extends Metrics {
+        final Map<String, Long> counts = new HashMap<>();
+        final Map<String, Integer> timings = new HashMap<>();
+        final List<Long> values = new ArrayList<>();
+
+        @Override
+        public synchronized void count(String name, String tag, long delta) {
+            String key = name + "|" + tag;
+            Long count = this.counts.get(key);
+            this.counts.put(key, (count == null ? 0 : count) + delta);
+        }
+
+        @Override
+        public synchronized void time(String name, String tag, long nanos) {
+            assertTrue(nanos >= 0);
+            String key = name + "|" + tag;
+            Integer count = this.timings.get(key);
+            this.timings.put(key, (count == null ? 0 : count) + 1);
+        }
+
+        @Override
+        public synchronized void record(String name, String tag, long value) {
+            assertEquals(Metrics.MERKLE_LEAVES, name);
+            this.values.add(value);
+        }
+    }
+
+    @After
+    public void tearDown() {
+        Metrics.set(null);
+    }
+
+    @Test
+    public void testStampAndUpgrade() throws Exception {
+        Recorder recorder = new Recorder();
+        Metrics.set(recorder);
+
+        try (LocalCalendar calendar = new LocalCalendar(2)) {
+            String url = calendar.getUrl();
+            List<DetachedTimestampFile> files = new ArrayList<>();
+
+            for (int i = 0; i < 3; i++) {
+                files.add(DetachedTimestampFile.from(new OpSHA256(), new byte[]{(byte) i}));
+            }
+
+            OpenTimestamps.stamp(files, Collections.singletonList(url), 1, null);
+            calendar.confirm();
+            OpenTimestamps.upgrade(files.get(0));
+
+            // The stamped tree, then the one the local calendar builds when confirming
+            assertEquals(Long.valueOf(3), recorder.values.get(0));
+            assertEquals(Integer.valueOf(1), recorder.timings.get(Metrics.STAMP + "|null"));
+            assertEquals(Integer.valueOf(1), recorder.timings.get(Metrics.UPGRADE + "|null"));
+            assertEquals(Integer.valueOf(1), recorder.timings.get(Metrics.CALENDAR_SUBMIT + "|" + url));
+            assertEquals(Integer.valueOf(1), recorder.timings.get(Metrics.CALENDAR_UPGRADE + "|" + url));
+            assertNotNull(recorder.timings.get(Metrics.DESERIALIZE + "|null"));
+            assertEquals(Long.valueOf(2), recorder.counts.get(Metrics.HTTP_STATUS + "|200"));
+            assertEquals(Long.valueOf(32), recorder.counts.get(Metrics.BYTES_SENT + "|" + url));
+            assertTrue(recorder.counts.get(Metrics.BYTES_RECEIVED + "|" + url) > 0);
+
+            // The three file digests, plus the leaves and inner nodes of the merkle tree
+            assertTrue(recorder.counts.get(Metrics.HASH_OPS + "|sha256") >= 3 + 3 + 2);
+        }
+    }
+
+    @Test
+    public void testAsyncSubmitEndsSpanOnFailure() throws Exception {
+        Recorder recorder = new Recorder();
+        Metrics.set(recorder);
+
+        // A calendar answering 200 with a body that can't be read
+        try (final ServerSocket server = new ServerSocket(0, 1, InetAddress.getLoopbackAddress())) {
+            Thread calendar = new Thread(new Runnable() {
+                @Override
+                public void run() {
+                    try (Socket socket = server.accept()) {
+                        // Read the whole request, the headers and the 32 byte digest, so closing doesn't reset it
+                        InputStream in = socket.getInputStream();
+                        StringBuilder request = new StringBuilder();
+
+                        while (request.indexOf("\r\n\r\n") < 0 || request.length() < request.indexOf("\r\n\r\n") + 4 + 32) {
+                            int b = in.read();
+
+                            if (b < 0) {
+                                return;
+                            }
+
+                            request.append((char) b);
+                        }
+
+                        OutputStream out = socket.getOutputStream();
+                        out.write("HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\nnot a chunk size\r\n".getBytes(StandardCharsets.US_ASCII));
+                        out.flush();
+                    } catch (IOException e) {
+                        // The client sees the connection closed either way
+                    }
+                }
+            });
+            calendar.start();
+
+            String url = "http://127.0.0.1:" + server.getLocalPort();
+            CalendarAsyncSubmit submit = new CalendarAsyncSubmit(url, new byte[32]);
+            submit.setQueue(new LinkedBlockingQueue<Optional<Timestamp>>());
+
+            try {
+                submit.call();
+                fail("Read a malformed answer");
+            } catch (IOException expected) {
+                // The chunked body is malformed
+            }
+
+            calendar.join();
+            assertEquals(Integer.valueOf(1), recorder.timings.get(Metrics.CALENDAR_SUBMIT + "|" + url));
+        }
+    }
+
+    @Test
+    public void testNoopByDefault() {
+        Metrics.set(null);
+        Metrics metrics = Metrics.get();
+        metrics.count(Metrics.HASH_OPS, "sha256", 1);
+        metrics.start(Metrics.VERIFY, null).end();
+        assertSame(metrics, Metrics.get());
+    }
+}
@@ -0,0 +1,68 @@
+package com.eternitywall.ots;
+
+import com.eternitywall.ots.op.OpKECCAK256;
+import com.eternitywall.ots.op.OpRIPEMD160;
+import com.eternitywall.ots.op.OpSHA1;
+import com.eternitywall.ots.op.OpSHA256;
+import org.junit.Test;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+
+public class TestMultiHasher {
+
+    private static final byte[] algorithms = {OpSHA256._TAG, OpSHA1._TAG, OpRIPEMD160._TAG, OpKECCAK256._TAG};
+
+    @Test
+    public void testSinglePass() throws Exception {
+        // Sizes around the chunk size and the ring size
+        for (int size : new int[]{0, 1, 1048576, 1048576 + 1, 5 * 1048576 + 123}) {
+            byte[] data = new byte[size];
+            new Random(size).nextBytes(data);
+
+            for (boolean threaded : new boolean[]{false, true}) {
+                MultiHasher hasher = new MultiHasher(algorithms);
+                hasher.setThreaded(threaded);
+                List<Hash> hashes = hasher.hash(new ByteArrayInputStream(data));
+                assertEquals(algorithms.length, hashes.size());
+
+                for (int i = 0; i < algorithms.length; i++) {
+                    assertEquals(algorithms[i], hashes.get(i).getAlgorithm());
+                    assertArrayEquals(size + " " + threaded, Hash.getOp(algorithms[i]).call(data), hashes.get(i).getValue());
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testFile() throws Exception {
+        byte[] data = new byte[2 * 1048576 + 7];
+        new Random(7).nextBytes(data);
+
+        File file = File.createTempFile("multihasher", ".bin");
+        file.deleteOnExit();
+
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+
+        List<Hash> hashes = Hash.from(file, algorithms);
+
+        for (int i = 0; i < algorithms.length; i++) {
+            assertArrayEquals(Hash.from(file, algorithms[i]).getValue(), hashes.get(i).getValue());
+        }
+
+        file.delete();
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void testUnknownAlgorithm() {
+        new MultiHasher(OpSHA256._TAG, (byte) 0xf0);
+    }
+}
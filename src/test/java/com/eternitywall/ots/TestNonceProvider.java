@@ -0,0 +1,68 @@
+package com.eternitywall.ots;
+
+import com.eternitywall.ots.op.OpSHA256;
+import org.junit.Test;
+
+import javax.crypto.Mac;
+import javax.crypto.spec.SecretKeySpec;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+public class TestNonceProvider {
+
+    @Test
+    public void testRandom() {
+        Set<String> nonces = new HashSet<>();
+
+        // Several blocks of the thread's buffer
+        for (int i = 0; i < 1000; i++) {
+            byte[] nonce = NonceProvider.random().nonce(i);
+            assertEquals(NonceProvider.NONCE_LENGTH, nonce.length);
+            assertTrue(nonces.add(Utils.bytesToHex(nonce)));
+        }
+    }
+
+    @Test
+    public void testDeterministic() throws Exception {
+        byte[] secret = Utils.hexToBytes("000102030405060708090a0b0c0d0e0f");
+        NonceProvider nonces = NonceProvider.deterministic(secret);
+
+        Mac mac = Mac.getInstance("HmacSHA256");
+        mac.init(new SecretKeySpec(secret, "HmacSHA256"));
+        byte[] expected = Arrays.copyOf(mac.doFinal(new byte[]{0, 0, 0, 0, 0, 0, 0, 7}), 16);
+
+        assertArrayEquals(expected, nonces.nonce(7));
+        assertArrayEquals(nonces.nonce(7), NonceProvider.deterministic(secret).nonce(7));
+        assertFalse(Arrays.equals(nonces.nonce(7), nonces.nonce(8)));
+
+        try {
+            NonceProvider.deterministic(new byte[15]);
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Too short
+        }
+    }
+
+    @Test
+    public void testReproducibleMerkleTree() throws Exception {
+        byte[] secret = Utils.randBytes(32);
+        byte[][] tips = new byte[2][];
+
+        for (int i = 0; i < tips.length; i++) {
+            List<DetachedTimestampFile> files = new ArrayList<>();
+
+            for (int j = 0; j < 10; j++) {
+                files.add(DetachedTimestampFile.from(new OpSHA256(), new byte[]{(byte) j}));
+            }
+
+            tips[i] = OpenTimestamps.makeMerkleTree(files, NonceProvider.deterministic(secret)).getDigest();
+        }
+
+        assertArrayEquals(tips[0], tips[1]);
+    }
+}
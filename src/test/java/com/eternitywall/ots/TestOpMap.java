@@ -0,0 +1,162 @@
+package com.eternitywall.ots;
+
+import com.eternitywall.ots.op.Op;
+import com.eternitywall.ots.op.OpAppend;
+import com.eternitywall.ots.op.OpPrepend;
+import com.eternitywall.ots.op.OpSHA256;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+import static org.junit.Assert.*;
+
+public class TestOpMap {
+
+    @Test
+    public void testSingleOp() {
+        OpMap ops = new OpMap();
+        assertTrue(ops.isEmpty());
+
+        Timestamp stamp = new Timestamp(new byte[]{1});
+        assertNull(ops.put(new OpSHA256(), stamp));
+        assertEquals(1, ops.size());
+        assertSame(stamp, ops.get(new OpSHA256()));
+        assertTrue(ops.containsKey(new OpSHA256()));
+        assertFalse(ops.containsKey(new OpAppend(new byte[]{1})));
+
+        Timestamp other = new Timestamp(new byte[]{2});
+        assertSame(stamp, ops.put(new OpSHA256(), other));
+        assertEquals(1, ops.size());
+        assertSame(other, ops.remove(new OpSHA256()));
+        assertTrue(ops.isEmpty());
+    }
+
+    @Test
+    public void testCanonicalOrderAcrossFanOuts() {
+        Random random = new Random(42);
+
+        for (int count = 1; count <= 24; count++) {
+            List<Op> sorted = new ArrayList<>();
+            sorted.add(new OpSHA256());
+
+            for (int i = 1; i < count; i++) {
+                byte[] arg = new byte[]{(byte) i, (byte) random.nextInt()};
+                sorted.add(i % 2 == 0 ? new OpAppend(arg) : new OpPrepend(arg));
+            }
+
+            List<Op> shuffled = new ArrayList<>(sorted);
+            Collections.shuffle(shuffled, random);
+            Collections.sort(sorted);
+
+            OpMap ops = new OpMap();
+            Map<Op, Timestamp> expected = new HashMap<>();
+
+            for (Op op : shuffled) {
+                Timestamp stamp = new Timestamp(new byte[]{(byte) expected.size()});
+                ops.put(op, stamp);
+                expected.put(op, stamp);
+            }
+
+            assertEquals(count, ops.size());
+            assertEquals(expected, ops);
+            assertEquals(sorted, new ArrayList<>(ops.keySet()));
+
+            for (Op op : sorted) {
+                assertSame(expected.get(op), ops.get(op));
+            }
+        }
+    }
+
+    @Test
+    public void testIteratorRemove() {
+        for (int count = 1; count <= 16; count++) {
+            OpMap ops = new OpMap();
+
+            for (int i = 0; i < count; i++) {
+                ops.put(new OpAppend(new byte[]{(byte) i}), new Timestamp(new byte[]{(byte) i}));
+            }
+
+            // Keep every third op
+            int i = 0;
+
+            for (Iterator<Map.Entry<Op, Timestamp>> it = ops.entrySet().iterator(); it.hasNext(); i++) {
+                it.next();
+
+                if (i % 3 != 0) {
+                    it.remove();
+                }
+            }
+
+            assertEquals((count + 2) / 3, ops.size());
+
+            i = 0;
+
+            for (Op op : ops.keySet()) {
+                assertEquals(new OpAppend(new byte[]{(byte) i}), op);
+                i += 3;
+            }
+        }
+    }
+
+    @Test
+    public void testAssignedMapStillCanonical() {
+        Timestamp expected = new Timestamp(new byte[]{1});
+        Timestamp actual = new Timestamp(new byte[]{1});
+        HashMap<Op, Timestamp> unordered = new HashMap<>();
+
+        for (int i = 0; i < 16; i++) {
+            Op op = i % 2 == 0 ? new OpAppend(new byte[]{(byte) i}) : new OpPrepend(new byte[]{(byte) i});
+            expected.add(op);
+            unordered.put(op, new Timestamp(op.call(actual.msg)));
+        }
+
+        // A plain HashMap in the field is sorted where the order matters
+        actual.ops = unordered;
+        assertArrayEquals(expected.serialize(), actual.serialize());
+        assertEquals(expected, actual);
+        assertEquals(expected.strTree(0), actual.strTree(0));
+    }
+
+    @Test
+    public void testHashMapMethods() {
+        HashMap<Op, Timestamp> ops = new OpMap();
+        List<Op> sorted = new ArrayList<>();
+
+        for (int i = 0; i < 10; i++) {
+            Op op = i % 2 == 0 ? new OpAppend(new byte[]{(byte) (9 - i)}) : new OpPrepend(new byte[]{(byte) i});
+            ops.put(op, new Timestamp(new byte[]{(byte) i}));
+            sorted.add(op);
+        }
+
+        Collections.sort(sorted);
+
+        // Whatever HashMap does with the entries, they stay in the table the views iterate
+        @SuppressWarnings("unchecked")
+        HashMap<Op, Timestamp> copy = (HashMap<Op, Timestamp>) ops.clone();
+        assertEquals(sorted, new ArrayList<>(copy.keySet()));
+        assertEquals(ops, copy);
+
+        OpMap all = new OpMap(ops);
+        assertEquals(sorted, new ArrayList<>(all.keySet()));
+
+        List<Timestamp> values = new ArrayList<>();
+
+        for (Op op : sorted) {
+            values.add(ops.get(op));
+        }
+
+        assertEquals(values, new ArrayList<>(ops.values()));
+        assertTrue(ops.containsValue(values.get(3)));
+
+        assertTrue(ops.keySet().remove(sorted.get(0)));
+        assertFalse(ops.keySet().remove(sorted.get(0)));
+        assertEquals(sorted.subList(1, sorted.size()), new ArrayList<>(ops.keySet()));
+        assertEquals(sorted.get(1), ops.entrySet().iterator().next().getKey());
+    }
+}
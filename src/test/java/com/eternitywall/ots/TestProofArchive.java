@@ -0,0 +1,366 @@
+package com.eternitywall.ots;
+
+import com.eternitywall.ots.attestation.BitcoinBlockHeaderAttestation;
+import com.eternitywall.ots.attestation.PendingAttestation;
+import com.eternitywall.ots.op.OpAppend;
+import com.eternitywall.ots.op.OpRIPEMD160;
+import com.eternitywall.ots.op.OpSHA256;
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.bitcoinj.core.Utils.toBytes;
+import static org.junit.Assert.*;
+
+public class TestProofArchive {
+
+    private static File tempArchive() throws IOException {
+        File file = File.createTempFile("archive", ".otsa");
+        file.delete();
+        file.deleteOnExit();
+        new File(file.getPath() + ".idx").deleteOnExit();
+
+        return file;
+    }
+
+    /**
+     * Stamp a batch of random digests under one merkle tip, with two calendars above the tip.
+     */
+    private static List<DetachedTimestampFile> stampBatch(int count, Random random, MerkleBuilder builder) {
+        List<DetachedTimestampFile> proofs = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            byte[] digest = new byte[32];
+            random.nextBytes(digest);
+            DetachedTimestampFile proof = new DetachedTimestampFile(new OpSHA256(), new Timestamp(digest));
+            proofs.add(proof);
+            builder.add(OpenTimestamps.makeMerkleLeaf(proof));
+        }
+
+        Timestamp tip = builder.build();
+
+        for (String calendar : new String[]{"https://alice.example", "https://bob.example"}) {
+            Timestamp commitment = tip.add(new OpAppend(toBytes(calendar, "UTF-8"))).add(new OpSHA256());
+            commitment.attestations.add(new PendingAttestation(toBytes(calendar, "UTF-8")));
+        }
+
+        return proofs;
+    }
+
+    @Test
+    public void testBatchRoundTrip() throws IOException {
+        File file = tempArchive();
+        Random random = new Random(7);
+        MerkleBuilder builder = new MerkleBuilder();
+        List<DetachedTimestampFile> proofs = stampBatch(100, random, builder);
+        Timestamp tip = tipOf(proofs.get(0));
+
+        long separate = 0;
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            archive.add(proofs, tip);
+            assertEquals(proofs.size(), archive.size());
+
+            for (DetachedTimestampFile proof : proofs) {
+                byte[] serialized = proof.serialize();
+                separate += serialized.length;
+                assertArrayEquals(serialized, archive.get(proof.fileDigest()).serialize());
+            }
+        }
+
+        // The shared calendar path is only stored once
+        assertTrue(file.length() < separate);
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            assertEquals(proofs.size(), archive.size());
+
+            for (DetachedTimestampFile proof : proofs) {
+                assertArrayEquals(proof.serialize(), archive.get(proof.fileDigest()).serialize());
+            }
+
+            byte[] missing = new byte[32];
+            random.nextBytes(missing);
+            assertNull(archive.get(missing));
+        }
+    }
+
+    @Test
+    public void testSharedTipUpgrade() throws IOException {
+        File file = tempArchive();
+        List<DetachedTimestampFile> proofs = stampBatch(20, new Random(17), new MerkleBuilder());
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            archive.add(proofs);
+        }
+
+        long before = file.length();
+        Timestamp tip;
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            Timestamp first = tipOf(archive.get(proofs.get(0).fileDigest()));
+            tip = tipOf(archive.get(proofs.get(1).fileDigest()));
+            assertSame(first, tip);
+
+            // Upgrading the tip through one proof upgrades every proof of the batch
+            Timestamp commitment = tip.ops.values().iterator().next();
+            commitment.add(new OpSHA256()).attestations.add(new BitcoinBlockHeaderAttestation(358391));
+        }
+
+        // Only the tip was written again
+        long written = file.length() - before;
+        assertTrue(written < proofs.get(0).serialize().length);
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            for (DetachedTimestampFile proof : proofs) {
+                assertEquals(tip, tipOf(archive.get(proof.fileDigest())));
+            }
+        }
+
+        // Nothing is written back when the tip didn't change
+        try (ProofArchive archive = new ProofArchive(file)) {
+            archive.get(proofs.get(2).fileDigest());
+        }
+
+        assertEquals(before + written, file.length());
+    }
+
+    @Test
+    public void testUpgradeAfterCommit() throws IOException {
+        File file = tempArchive();
+        List<DetachedTimestampFile> proofs = stampBatch(5, new Random(23), new MerkleBuilder());
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            archive.add(proofs);
+        }
+
+        Timestamp tip;
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            tip = tipOf(archive.get(proofs.get(0).fileDigest()));
+            Timestamp commitment = tip.ops.values().iterator().next();
+            commitment.add(new OpSHA256()).attestations.add(new BitcoinBlockHeaderAttestation(358391));
+            archive.commit();
+
+            // Proofs read after the commit still share the tip read before it
+            assertSame(tip, tipOf(archive.get(proofs.get(1).fileDigest())));
+
+            // And an upgrade through the proof read before the commit is written by the next one
+            commitment.add(new OpSHA256()).attestations.add(new BitcoinBlockHeaderAttestation(358392));
+            archive.commit();
+
+            // Then once more, written on close
+            commitment.add(new OpRIPEMD160()).attestations.add(new BitcoinBlockHeaderAttestation(358393));
+        }
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            for (DetachedTimestampFile proof : proofs) {
+                assertEquals(tip, tipOf(archive.get(proof.fileDigest())));
+            }
+        }
+    }
+
+    private static Timestamp tipOf(DetachedTimestampFile proof) {
+        Timestamp tip = proof.timestamp;
+
+        while (tip.ops.size() == 1) {
+            tip = tip.ops.values().iterator().next();
+        }
+
+        return tip;
+    }
+
+    @Test
+    public void testUpgradeReplaces() throws IOException {
+        File file = tempArchive();
+        List<DetachedTimestampFile> proofs = stampBatch(3, new Random(11), new MerkleBuilder());
+        DetachedTimestampFile proof = proofs.get(1);
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            for (DetachedTimestampFile p : proofs) {
+                archive.add(p);
+            }
+        }
+
+        Timestamp upgraded = DetachedTimestampFile.deserialize(proof.serialize()).timestamp;
+        upgraded.add(new OpSHA256()).attestations.add(new BitcoinBlockHeaderAttestation(358391));
+        DetachedTimestampFile upgradedProof = new DetachedTimestampFile(new OpSHA256(), upgraded);
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            archive.add(upgradedProof);
+            assertArrayEquals(upgradedProof.serialize(), archive.get(proof.fileDigest()).serialize());
+        }
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            assertEquals(proofs.size(), archive.size());
+            assertArrayEquals(upgradedProof.serialize(), archive.get(proof.fileDigest()).serialize());
+            assertArrayEquals(proofs.get(0).serialize(), archive.get(proofs.get(0).fileDigest()).serialize());
+        }
+    }
+
+    @Test
+    public void testReindex() throws IOException {
+        File file = tempArchive();
+        List<DetachedTimestampFile> proofs = stampBatch(10, new Random(13), new MerkleBuilder());
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            for (DetachedTimestampFile proof : proofs) {
+                archive.add(proof);
+            }
+        }
+
+        assertTrue(new File(file.getPath() + ".idx").delete());
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            assertEquals(proofs.size(), archive.size());
+
+            for (DetachedTimestampFile proof : proofs) {
+                assertArrayEquals(proof.serialize(), archive.get(proof.fileDigest()).serialize());
+            }
+        }
+    }
+
+    @Test
+    public void testTornTail() throws IOException {
+        File file = tempArchive();
+        File indexFile = new File(file.getPath() + ".idx");
+        List<DetachedTimestampFile> proofs = stampBatch(15, new Random(19), new MerkleBuilder());
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            for (DetachedTimestampFile proof : proofs.subList(0, 10)) {
+                archive.add(proof);
+            }
+        }
+
+        byte[] committedIndex = Files.readAllBytes(indexFile.toPath());
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            for (DetachedTimestampFile proof : proofs.subList(10, 15)) {
+                archive.add(proof);
+            }
+        }
+
+        // A crash in the middle of the last record, before the index was rewritten
+        Files.write(indexFile.toPath(), committedIndex);
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        DetachedTimestampFile extra = stampBatch(1, new Random(23), new MerkleBuilder()).get(0);
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            // The records appended after the last commit are found again, but not the one cut short
+            assertEquals(14, archive.size());
+            assertNull(archive.get(proofs.get(14).fileDigest()));
+            archive.add(extra);
+        }
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            assertEquals(15, archive.size());
+
+            for (DetachedTimestampFile proof : proofs.subList(0, 14)) {
+                assertArrayEquals(proof.serialize(), archive.get(proof.fileDigest()).serialize());
+            }
+
+            assertArrayEquals(extra.serialize(), archive.get(extra.fileDigest()).serialize());
+        }
+
+        // The archive is whole again, so rebuilding the index drops nothing
+        assertTrue(indexFile.delete());
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            assertEquals(15, archive.size());
+        }
+    }
+
+    @Test
+    public void testCorruptRecordNotTruncated() throws IOException {
+        File file = tempArchive();
+        List<DetachedTimestampFile> proofs = stampBatch(5, new Random(29), new MerkleBuilder());
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            for (DetachedTimestampFile proof : proofs) {
+                archive.add(proof);
+            }
+        }
+
+        // Damage the length of the first record, with valid records after it
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.seek(ProofArchive.HEADER_MAGIC.length + 1 + 1);
+            raf.writeInt(1);
+        }
+
+        long length = file.length();
+        assertTrue(new File(file.getPath() + ".idx").delete());
+
+        try {
+            new ProofArchive(file).close();
+            fail();
+        } catch (IOException e) {
+            // Corrupt, not torn
+        }
+
+        assertEquals(length, file.length());
+    }
+
+    @Test
+    public void testCrashDuringTipUpgrade() throws IOException {
+        File file = tempArchive();
+        File indexFile = new File(file.getPath() + ".idx");
+        List<DetachedTimestampFile> proofs = stampBatch(10, new Random(31), new MerkleBuilder());
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            archive.add(proofs);
+        }
+
+        byte[] committedIndex = Files.readAllBytes(indexFile.toPath());
+        long committedLength = file.length();
+        Timestamp upgraded;
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            upgraded = tipOf(archive.get(proofs.get(0).fileDigest()));
+            Timestamp commitment = upgraded.ops.values().iterator().next();
+            commitment.add(new OpSHA256()).attestations.add(new BitcoinBlockHeaderAttestation(358391));
+        }
+
+        // The new tip record was written, but not the index
+        Files.write(indexFile.toPath(), committedIndex);
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            for (DetachedTimestampFile proof : proofs) {
+                assertEquals(upgraded, tipOf(archive.get(proof.fileDigest())));
+            }
+        }
+
+        // The new tip record was cut short: every proof keeps the old tip, untouched
+        Files.write(indexFile.toPath(), committedIndex);
+
+        try (RandomAccessFile raf = new RandomAccessFile(file, "rw")) {
+            raf.setLength(raf.length() - 3);
+        }
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            assertEquals(committedLength, file.length());
+
+            for (DetachedTimestampFile proof : proofs) {
+                assertArrayEquals(proof.serialize(), archive.get(proof.fileDigest()).serialize());
+            }
+
+            // And can still be upgraded
+            Timestamp commitment = tipOf(archive.get(proofs.get(0).fileDigest())).ops.values().iterator().next();
+            commitment.add(new OpSHA256()).attestations.add(new BitcoinBlockHeaderAttestation(358391));
+        }
+
+        try (ProofArchive archive = new ProofArchive(file)) {
+            for (DetachedTimestampFile proof : proofs) {
+                assertEquals(upgraded, tipOf(archive.get(proof.fileDigest())));
+            }
+        }
+    }
+}
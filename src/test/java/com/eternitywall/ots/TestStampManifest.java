@@ -0,0 +1,127 @@
+package com.eternitywall.ots;
+
+import org.junit.Test;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.Arrays;
+
+import static org.junit.Assert.*;
+
+public class TestStampManifest {
+
+    private static final String[] examples = {
+            "hello-world.txt.ots",
+            "incomplete.txt.ots",
+            "merkle1.txt.ots",
+            "merkle2.txt.ots",
+            "different-blockchains.txt.ots"
+    };
+
+    private static StampManifest exampleManifest() throws IOException {
+        StampManifest manifest = new StampManifest();
+
+        for (int i = 0; i < examples.length; i++) {
+            byte[] ots = Files.readAllBytes(Paths.get("examples", examples[i]));
+            manifest.put("dir" + (i % 2) + "/" + examples[i].replace(".ots", ""), DetachedTimestampFile.deserialize(ots));
+        }
+
+        return manifest;
+    }
+
+    @Test
+    public void testWriteAndLookup() throws IOException {
+        StampManifest manifest = exampleManifest();
+        File file = File.createTempFile("manifest", ".otsm");
+        file.deleteOnExit();
+        manifest.write(file);
+
+        for (String path : manifest.paths()) {
+            assertArrayEquals(path, manifest.get(path).serialize(), StampManifest.lookup(file, path).serialize());
+        }
+
+        assertNull(StampManifest.lookup(file, "dir0/missing.txt"));
+
+        StampManifest read = StampManifest.read(file);
+        assertEquals(manifest.paths(), read.paths());
+
+        for (String path : manifest.paths()) {
+            assertArrayEquals(path, manifest.get(path).serialize(), read.get(path).serialize());
+        }
+
+        file.delete();
+    }
+
+    @Test
+    public void testExpand() throws IOException {
+        StampManifest manifest = exampleManifest();
+        File directory = Files.createTempDirectory("manifest").toFile();
+        new File(directory, "dir0").mkdir();
+        new File(directory, "dir1").mkdir();
+
+        assertEquals(examples.length, manifest.expand(directory));
+        assertEquals(0, manifest.expand(directory));
+
+        for (String path : manifest.paths()) {
+            File ots = new File(directory, path + ".ots");
+            assertArrayEquals(path, manifest.get(path).serialize(), Files.readAllBytes(ots.toPath()));
+            ots.delete();
+        }
+
+        new File(directory, "dir0").delete();
+        new File(directory, "dir1").delete();
+        directory.delete();
+    }
+
+    @Test(expected = IOException.class)
+    public void testExpandOutsideDirectory() throws IOException {
+        StampManifest manifest = new StampManifest();
+        manifest.put("../escape.txt", exampleManifest().get("dir0/hello-world.txt"));
+        manifest.expand(Files.createTempDirectory("manifest").toFile());
+    }
+
+    @Test(expected = IOException.class)
+    public void testNotAManifest() throws IOException {
+        StampManifest.read(new File("examples/hello-world.txt.ots"));
+    }
+
+    @Test
+    public void testCorruptIndex() throws IOException {
+        File file = File.createTempFile("manifest", ".otsm");
+        file.deleteOnExit();
+        exampleManifest().write(file);
+        byte[] good = Files.readAllBytes(file.toPath());
+        int indexOffset = (int) ByteBuffer.wrap(good, good.length - 8, 8).getLong();
+        int firstEntry = indexOffset + 4;
+        int firstOffset = firstEntry + 4 + ByteBuffer.wrap(good).getInt(firstEntry);
+
+        // The count, the first path length, the first offset and the first proof length, each out of range
+        int[][] corruptions = {
+                {indexOffset, Integer.MAX_VALUE},
+                {indexOffset, -1},
+                {firstEntry, Integer.MAX_VALUE},
+                {firstEntry, -5},
+                {firstOffset + 4, Integer.MAX_VALUE},
+                {firstOffset + 8, Integer.MAX_VALUE},
+                {firstOffset + 8, -1}
+        };
+
+        for (int[] corruption : corruptions) {
+            byte[] bad = Arrays.copyOf(good, good.length);
+            ByteBuffer.wrap(bad).putInt(corruption[0], corruption[1]);
+            Files.write(file.toPath(), bad);
+
+            try {
+                StampManifest.read(file);
+                fail("Read with " + corruption[1] + " at " + corruption[0]);
+            } catch (IOException e) {
+                // Rejected before allocating anything
+            }
+        }
+
+        file.delete();
+    }
+}
@@ -0,0 +1,142 @@
+package com.eternitywall.ots;
+
+import com.eternitywall.ots.attestation.TimeAttestation;
+import com.eternitywall.ots.op.OpAppend;
+import com.eternitywall.ots.op.OpSHA1;
+import com.eternitywall.ots.op.OpSHA256;
+import org.junit.Test;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.security.MessageDigest;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestStreamVerifier {
+
+    private static List<String> events(byte[] ots) throws Exception {
+        final List<String> events = new ArrayList<>();
+
+        new StreamVerifier(ots).read(new StreamVerifier.Listener() {
+            @Override
+            public void onAttestation(TimeAttestation attestation, byte[] commitment) {
+                events.add(Utils.bytesToHex(commitment) + " " + attestation);
+            }
+        });
+
+        return events;
+    }
+
+    @Test
+    public void testSameAttestationsAsTree() throws Exception {
+        File[] examples = new File("examples").listFiles();
+        int files = 0;
+
+        for (File example : examples) {
+            if (!example.getName().endsWith(".ots") || example.getName().startsWith("bad")) {
+                continue;
+            }
+
+            byte[] ots = Files.readAllBytes(example.toPath());
+            DetachedTimestampFile detached = DetachedTimestampFile.deserialize(ots);
+            List<String> expected = new ArrayList<>();
+
+            for (Map.Entry<byte[], TimeAttestation> entry : detached.timestamp.allAttestations()) {
+                expected.add(Utils.bytesToHex(entry.getKey()) + " " + entry.getValue());
+            }
+
+            List<String> actual = events(ots);
+            Collections.sort(expected);
+            Collections.sort(actual);
+            assertEquals(example.getName(), expected, actual);
+
+            StreamVerifier verifier = new StreamVerifier(ots);
+            assertArrayEquals(detached.fileDigest(), verifier.getFileDigest());
+            assertEquals(detached.fileHashOp, verifier.getFileHashOp());
+            files++;
+        }
+
+        assertTrue(files > 5);
+    }
+
+    @Test
+    public void testMalformed() throws Exception {
+        byte[] ots = Files.readAllBytes(new File("examples/incomplete.txt.ots").toPath());
+
+        try {
+            events(Arrays.copyOf(ots, ots.length - 3));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Truncated
+        }
+
+        try {
+            events(Arrays.copyOf(ots, ots.length + 1));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // Trailing bytes
+        }
+
+        try {
+            new StreamVerifier(Arrays.copyOfRange(ots, 1, ots.length));
+            fail();
+        } catch (IllegalArgumentException e) {
+            // No magic
+        }
+    }
+
+    @Test
+    public void testEmptyArgumentLeavesDigestsClean() throws Exception {
+        byte[] msg = "hello".getBytes(StandardCharsets.UTF_8);
+        byte[] first = new byte[32];
+        byte[] second = new byte[32];
+        second[0] = 1;
+        byte[] sha1 = MessageDigest.getInstance("SHA-1").digest(msg);
+        byte[] sha256 = MessageDigest.getInstance("SHA-256").digest(Utils.arraysConcat(first, second));
+
+        // An append of nothing, which reads as a null argument, then sha1 and sha256
+        for (byte hash : new byte[]{OpSHA1._TAG, OpSHA256._TAG}) {
+            byte[] proof = {OpAppend._TAG, 0x00, hash, 0x00};
+
+            try {
+                StreamVerifier.read(new StreamDeserializationContext(proof), msg, new StreamVerifier.Listener() {
+                    @Override
+                    public void onAttestation(TimeAttestation attestation, byte[] commitment) {
+                    }
+                });
+                fail();
+            } catch (IllegalArgumentException e) {
+                // Missing argument
+            }
+
+            // The digests of this thread hash as if nothing had been fed to them
+            assertArrayEquals(sha1, new OpSHA1().call(msg));
+            assertArrayEquals(sha256, new OpSHA256().call(first, second));
+        }
+    }
+
+    @Test
+    public void testDigestMismatch() throws Exception {
+        byte[] ots = Files.readAllBytes(new File("examples/incomplete.txt.ots").toPath());
+
+        try {
+            OpenTimestamps.verify(ots, new byte[32]);
+            fail();
+        } catch (Exception e) {
+            assertTrue(e.getMessage().contains("File does not match original"));
+        }
+
+        // No block header attestation, nothing to verify
+        assertTrue(OpenTimestamps.verify(ots, new StreamVerifier(ots).getFileDigest()).isEmpty());
+
+        // Trailing bytes are ignored, as the tree based verify always did
+        byte[] trailing = Arrays.copyOf(ots, ots.length + 1);
+        assertTrue(OpenTimestamps.verify(trailing, new StreamVerifier(trailing).getFileDigest()).isEmpty());
+    }
+}
@@ -0,0 +1,105 @@
+package com.eternitywall.ots;
+
+import com.eternitywall.ots.attestation.PendingAttestation;
+import com.eternitywall.ots.op.OpAppend;
+import com.eternitywall.ots.op.OpSHA256;
+import org.json.JSONArray;
+import org.json.JSONObject;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.io.StringWriter;
+import java.nio.file.Files;
+import java.nio.file.Paths;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+public class TestTimestampJson {
+
+    private static DetachedTimestampFile example(String name) throws IOException {
+        return DetachedTimestampFile.deserialize(Files.readAllBytes(Paths.get("examples", name)));
+    }
+
+    @Test
+    public void testDifferentBlockchains() throws IOException {
+        DetachedTimestampFile detached = example("different-blockchains.txt.ots");
+        StringWriter out = new StringWriter();
+        TimestampJson.write(out, "different-blockchains.txt.ots", detached, true);
+        JSONObject json = new JSONObject(out.toString());
+
+        assertEquals("different-blockchains.txt.ots", json.getString("file"));
+        assertEquals("sha256", json.getString("hashOp"));
+        assertEquals(Utils.bytesToHex(detached.fileDigest()).toLowerCase(), json.getString("digest"));
+
+        // Every op is there, each with its parent written before it
+        JSONArray ops = json.getJSONArray("ops");
+
+        for (int i = 0; i < ops.length(); i++) {
+            JSONObject op = ops.getJSONObject(i);
+            assertEquals(i + 1, op.getInt("id"));
+            assertTrue(op.getInt("parent") < op.getInt("id"));
+            assertTrue(op.has("msg"));
+        }
+
+        // The attestations are the ones of the tree, with the messages they attest
+        JSONArray attestations = json.getJSONArray("attestations");
+        assertEquals(detached.timestamp.allAttestations().size(), attestations.length());
+
+        for (Map.Entry<byte[], ?> entry : detached.timestamp.allAttestations()) {
+            boolean found = false;
+
+            for (int i = 0; i < attestations.length(); i++) {
+                found |= attestations.getJSONObject(i).getString("msg").equals(Utils.bytesToHex(entry.getKey()).toLowerCase());
+            }
+
+            assertTrue(found);
+        }
+
+        JSONObject summary = json.getJSONObject("summary");
+        assertEquals(2, summary.getJSONArray("pending").length());
+        assertEquals(3283713, summary.getJSONArray("ethereum").getInt(0));
+        assertEquals(summary.getBoolean("complete"), detached.timestamp.isTimestampComplete());
+    }
+
+    @Test
+    public void testDigestsOptional() throws IOException {
+        StringWriter out = new StringWriter();
+        TimestampJson.write(out, example("incomplete.txt.ots").timestamp, false);
+        JSONObject json = new JSONObject(out.toString());
+
+        assertFalse(json.has("file"));
+        assertFalse(json.has("hashOp"));
+        assertFalse(json.getJSONArray("ops").getJSONObject(0).has("msg"));
+        assertFalse(json.getJSONObject("summary").getBoolean("complete"));
+        assertEquals("https://alice.btc.calendar.opentimestamps.org", json.getJSONObject("summary").getJSONArray("pending").getString(0));
+    }
+
+    @Test
+    public void testCanonicalOpOrder() throws IOException {
+        Timestamp canonical = new Timestamp(Utils.hexToBytes("00"));
+        Timestamp reversed = new Timestamp(Utils.hexToBytes("00"));
+        reversed.ops = new LinkedHashMap<>();
+
+        for (Timestamp timestamp : new Timestamp[]{canonical, reversed}) {
+            for (int i = 0; i < 3; i++) {
+                int arg = timestamp == canonical ? i : 2 - i;
+                Timestamp child = timestamp.add(new OpAppend(new byte[]{(byte) arg})).add(new OpSHA256());
+                child.attestations.add(new PendingAttestation(("https://calendar" + arg).getBytes()));
+            }
+        }
+
+        StringWriter canonicalOut = new StringWriter();
+        StringWriter reversedOut = new StringWriter();
+        TimestampJson.write(canonicalOut, canonical, true);
+        TimestampJson.write(reversedOut, reversed, true);
+
+        // The same ids whatever order the ops were added in, the appends in the order they are serialized
+        assertEquals(canonicalOut.toString(), reversedOut.toString());
+        JSONArray ops = new JSONObject(reversedOut.toString()).getJSONArray("ops");
+        assertEquals("00", ops.getJSONObject(0).getString("arg"));
+        assertEquals("01", ops.getJSONObject(2).getString("arg"));
+        assertEquals("02", ops.getJSONObject(4).getString("arg"));
+    }
+}
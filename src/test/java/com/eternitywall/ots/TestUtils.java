@@ -1,10 +1,19 @@
 package com.eternitywall.ots;
 
+import org.bitcoinj.core.NetworkParameters;
+import org.bitcoinj.core.Transaction;
 import org.junit.Test;
 
 import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Paths;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Deque;
+import java.util.List;
+import java.util.Random;
 
 import static org.junit.Assert.*;
 
@@ -102,4 +111,48 @@ public class TestUtils {
         Utils.arrayFill(a, (byte) 0);
         assertEquals("00000000000000000000", Utils.bytesToHex(a).toLowerCase());
     }
+
+    @Test
+    public void testIsBitcoinTransaction() throws Exception {
+        // Every message of a proof holding transactions, and random messages of small fields, decide as bitcoinj does
+        List<byte[]> messages = new ArrayList<>();
+        Deque<Timestamp> timestamps = new ArrayDeque<>();
+        timestamps.push(DetachedTimestampFile.deserialize(Files.readAllBytes(Paths.get("examples/merkle2.txt.ots"))).timestamp);
+
+        while (!timestamps.isEmpty()) {
+            Timestamp timestamp = timestamps.pop();
+            messages.add(timestamp.msg);
+            timestamps.addAll(timestamp.ops.values());
+        }
+
+        Random random = new Random(41);
+
+        for (int i = 0; i < 100000; i++) {
+            byte[] msg = new byte[random.nextInt(100)];
+
+            for (int j = 0; j < msg.length; j++) {
+                msg[j] = (byte) (random.nextInt(4) == 0 ? random.nextInt(256) : random.nextInt(3));
+            }
+
+            messages.add(msg);
+        }
+
+        int transactions = 0;
+
+        for (byte[] msg : messages) {
+            boolean parsed;
+
+            try {
+                new Transaction(NetworkParameters.prodNet(), msg);
+                parsed = true;
+            } catch (Exception e) {
+                parsed = false;
+            }
+
+            assertEquals(Utils.bytesToHex(msg), parsed, Utils.isBitcoinTransaction(msg));
+            transactions += parsed ? 1 : 0;
+        }
+
+        assertTrue(transactions > 100);
+    }
 }
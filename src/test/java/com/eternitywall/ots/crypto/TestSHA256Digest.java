@@ -0,0 +1,209 @@
+package com.eternitywall.ots.crypto;
+
+import com.eternitywall.ots.Utils;
+import org.junit.Test;
+
+import java.security.MessageDigest;
+import java.util.Arrays;
+import java.util.Random;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.fail;
+
+public class TestSHA256Digest {
+
+    private static byte[] hash(SHA256Digest digest, byte[] msg) {
+        byte[] out = new byte[digest.getDigestSize()];
+        digest.update(msg, 0, msg.length);
+        digest.doFinal(out, 0);
+
+        return out;
+    }
+
+    @Test
+    public void testKnownAnswers() {
+        assertEquals("e3b0c44298fc1c149afbf4c8996fb92427ae41e4649b934ca495991b7852b855",
+                Utils.bytesToHex(hash(new SHA256Digest(), new byte[0])).toLowerCase());
+        assertEquals("ba7816bf8f01cfea414140de5dae2223b00361a396177a9cb410ff61f20015ad",
+                Utils.bytesToHex(hash(new SHA256Digest(), "abc".getBytes())).toLowerCase());
+    }
+
+    @Test
+    public void testSameAsMessageDigest() throws Exception {
+        MessageDigest expected = MessageDigest.getInstance("SHA-256");
+        SHA256Digest digest = new SHA256Digest();
+        Random random = new Random(42);
+
+        // Every length around the padding boundaries of one and two blocks
+        for (int length = 0; length <= 200; length++) {
+            byte[] msg = new byte[length];
+            random.nextBytes(msg);
+            assertArrayEquals(expected.digest(msg), hash(digest, msg));
+        }
+    }
+
+    @Test
+    public void testCopyAndReset() throws Exception {
+        MessageDigest expected = MessageDigest.getInstance("SHA-256");
+        Random random = new Random(42);
+
+        for (int length : new int[]{1, 63, 64, 65, 130}) {
+            byte[] prefix = new byte[length];
+            byte[] msg = new byte[33];
+            random.nextBytes(prefix);
+            random.nextBytes(msg);
+
+            SHA256Digest digest = new SHA256Digest();
+            digest.update(prefix, 0, prefix.length);
+            Memoable state = digest.copy();
+            expected.update(prefix);
+            byte[] hash = expected.digest(msg);
+            assertArrayEquals(hash, hash(digest, msg));
+
+            // Restored over a digest in the middle of another message
+            SHA256Digest other = new SHA256Digest();
+            other.update(msg, 0, 7);
+            other.reset(state);
+            assertArrayEquals(hash, hash(other, msg));
+            assertArrayEquals(hash, hash((SHA256Digest) state, msg));
+        }
+    }
+
+    @Test
+    public void testMidstateCache() throws Exception {
+        MessageDigest expected = MessageDigest.getInstance("SHA-256");
+        SHA256MidstateCache cache = new SHA256MidstateCache(2);
+        Random random = new Random(42);
+        byte[][] prefixes = {new byte[32], new byte[64], new byte[100], new byte[200]};
+
+        for (byte[] prefix : prefixes) {
+            random.nextBytes(prefix);
+        }
+
+        for (int i = 0; i < 20; i++) {
+            byte[] prefix = prefixes[i % prefixes.length];
+            byte[] msg = new byte[i];
+            random.nextBytes(msg);
+            expected.update(prefix);
+            assertArrayEquals(expected.digest(msg), cache.hash(prefix, msg));
+        }
+
+        // Short prefixes aren't kept, and no more than the capacity
+        assertEquals(2, cache.size());
+    }
+
+    @Test
+    public void testMidstateCacheSharedByThreads() throws Exception {
+        final SHA256MidstateCache cache = new SHA256MidstateCache(1024);
+        final byte[][] prefixes = new byte[100][];
+        Random random = new Random(42);
+
+        for (int i = 0; i < prefixes.length; i++) {
+            prefixes[i] = new byte[64 + i];
+            random.nextBytes(prefixes[i]);
+        }
+
+        // A prefix is only kept once it comes back
+        for (byte[] prefix : prefixes) {
+            cache.hash(prefix, new byte[32]);
+        }
+
+        assertEquals(0, cache.size());
+
+        Thread[] threads = new Thread[4];
+        final boolean[] failed = new boolean[1];
+
+        for (int t = 0; t < threads.length; t++) {
+            final int seed = t;
+            threads[t] = new Thread() {
+                @Override
+                public void run() {
+                    try {
+                        MessageDigest expected = MessageDigest.getInstance("SHA-256");
+                        Random random = new Random(seed);
+
+                        for (int i = 0; i < 2000; i++) {
+                            byte[] prefix = prefixes[random.nextInt(prefixes.length)];
+                            byte[] msg = new byte[random.nextInt(100)];
+                            random.nextBytes(msg);
+                            expected.update(prefix);
+
+                            if (!Arrays.equals(expected.digest(msg), cache.hash(prefix, msg))) {
+                                failed[0] = true;
+                            }
+                        }
+                    } catch (Exception e) {
+                        failed[0] = true;
+                    }
+                }
+            };
+            threads[t].start();
+        }
+
+        for (Thread thread : threads) {
+            thread.join();
+        }
+
+        assertFalse(failed[0]);
+        assertEquals(prefixes.length, cache.size());
+    }
+
+    @Test
+    public void testPair() throws Exception {
+        MessageDigest expected = MessageDigest.getInstance("SHA-256");
+        Random random = new Random(42);
+        byte[] left = new byte[32];
+        byte[] right = new byte[32];
+        byte[] in = new byte[70];
+        byte[] out = new byte[40];
+
+        for (int i = 0; i < 100; i++) {
+            random.nextBytes(left);
+            random.nextBytes(right);
+            expected.update(left);
+            assertArrayEquals(expected.digest(right), SHA256Pair.hash(left, right));
+
+            random.nextBytes(in);
+            SHA256Pair.hash(in, 3, out, 5);
+            expected.update(in, 3, 64);
+            assertArrayEquals(expected.digest(), Arrays.copyOfRange(out, 5, 37));
+        }
+    }
+
+    @Test
+    public void testLanes() throws Exception {
+        MessageDigest expected = MessageDigest.getInstance("SHA-256");
+        Random random = new Random(42);
+
+        // The scalar lanes, and the vectorized ones when this VM runs them
+        for (SHA256Lanes lanes : new SHA256Lanes[]{new SHA256Lanes(), SHA256Lanes.newInstance()}) {
+            // Padding of one and two blocks, and counts that leave some lanes empty
+            for (int length : new int[]{0, 32, 55, 56, 64, 100}) {
+                int count = SHA256Lanes.LANES + 3;
+                byte[][] msgs = new byte[count + 1][length];
+                byte[][] out = new byte[count + 1][];
+
+                for (byte[] msg : msgs) {
+                    random.nextBytes(msg);
+                }
+
+                lanes.hash(msgs, 1, count, out);
+
+                for (int i = 1; i <= count; i++) {
+                    assertArrayEquals(lanes.getClass().getSimpleName(), expected.digest(msgs[i]), out[i]);
+                }
+            }
+
+            try {
+                lanes.hash(new byte[][]{new byte[32], new byte[33]}, 0, 2, new byte[2][]);
+                fail();
+            } catch (IllegalArgumentException e) {
+                // Different lengths
+            }
+        }
+
+        assertEquals(SHA256Lanes.VECTORIZED, !SHA256Lanes.newInstance().getClass().equals(SHA256Lanes.class));
+    }
+}
@@ -3,10 +3,21 @@ package com.eternitywall.ots.op;
 import com.eternitywall.ots.DetachedTimestampFile;
 import com.eternitywall.ots.StreamDeserializationContext;
 import com.eternitywall.ots.Utils;
+import com.eternitywall.ots.crypto.SHA256Pair;
 import org.junit.Test;
 
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Random;
+
 import static org.junit.Assert.assertArrayEquals;
 import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
 
 public class TestOps {
 
@@ -42,6 +53,111 @@ public class TestOps {
                      Utils.bytesToHex(result).toLowerCase());
     }
 
+    @Test
+    public void testCallThenHash() {
+        Random random = new Random(44);
+        OpCrypto[] hashes = {new OpSHA1(), new OpSHA256(), new OpRIPEMD160(), new OpKECCAK256()};
+
+        for (int i = 0; i < 100; i++) {
+            byte[] msg = new byte[random.nextInt(100)];
+            byte[] arg = new byte[1 + random.nextInt(100)];
+            random.nextBytes(msg);
+            random.nextBytes(arg);
+
+            for (OpCrypto hash : hashes) {
+                for (OpBinary op : new OpBinary[]{new OpAppend(arg), new OpPrepend(arg)}) {
+                    assertArrayEquals(hash.call(op.call(msg)), op.callThenHash(msg, hash));
+                }
+            }
+        }
+    }
+
+    @Test
+    public void testSha256PairDigest() throws NoSuchAlgorithmException {
+        Random random = new Random(45);
+        OpSHA256 sha256 = new OpSHA256();
+        MessageDigest digest = MessageDigest.getInstance("SHA-256");
+
+        for (int i = 0; i < 10; i++) {
+            byte[] left = new byte[32];
+            byte[] right = new byte[32];
+            random.nextBytes(left);
+            random.nextBytes(right);
+            byte[] msg = Utils.arraysConcat(left, right);
+            byte[] expected = digest.digest(msg);
+
+            byte[] pair = new byte[SHA256Pair.DIGEST_LENGTH];
+            SHA256Pair.hash(msg, 0, pair, 0);
+            assertArrayEquals(expected, pair);
+            assertArrayEquals(expected, SHA256Pair.hash(left, right));
+            assertArrayEquals(expected, sha256.call(msg));
+            assertArrayEquals(expected, sha256.call(left, right));
+        }
+    }
+
+    @Test
+    public void testUnarySingletons() {
+        for (byte tag : new byte[]{OpSHA1._TAG, OpSHA256._TAG, OpRIPEMD160._TAG, OpKECCAK256._TAG}) {
+            Op op = Op.deserialize(new StreamDeserializationContext(new byte[]{tag}));
+            assertSame(OpUnary.getInstance(tag), op);
+            assertEquals(tag, op._TAG());
+        }
+
+        assertNull(OpUnary.getInstance(OpAppend._TAG));
+
+        // The shared keccak256 instance holds no digest state between calls
+        Op keccak = OpUnary.getInstance(OpKECCAK256._TAG);
+        assertArrayEquals(keccak.call(Utils.hexToBytes("80")), keccak.call(Utils.hexToBytes("80")));
+    }
+
+    @Test
+    public void testBinaryPool() {
+        byte[] serialized = Utils.hexToBytes("f003aabbcc");
+        OpBinaryPool pool = new OpBinaryPool();
+
+        Op unpooled1 = Op.deserialize(new StreamDeserializationContext(serialized));
+        Op unpooled2 = Op.deserialize(new StreamDeserializationContext(serialized));
+        assertEquals(unpooled1, unpooled2);
+        assertNotSame(unpooled1, unpooled2);
+
+        Op pooled1 = Op.deserialize(new StreamDeserializationContext(serialized, pool));
+        Op pooled2 = Op.deserialize(new StreamDeserializationContext(serialized, pool));
+        assertSame(pooled1, pooled2);
+        assertEquals(new OpAppend(Utils.hexToBytes("aabbcc")), pooled1);
+
+        // Same argument, different operation
+        Op prepend = Op.deserialize(new StreamDeserializationContext(Utils.hexToBytes("f103aabbcc"), pool));
+        assertEquals(new OpPrepend(Utils.hexToBytes("aabbcc")), prepend);
+        assertEquals(2, pool.size());
+    }
+
+    @Test
+    public void testHashFile() throws IOException, NoSuchAlgorithmException {
+        // Not a multiple of any buffer or region size
+        byte[] data = new byte[3 * 1048576 + 12345];
+        new Random(1).nextBytes(data);
+
+        File file = File.createTempFile("hashfd", ".bin");
+        file.deleteOnExit();
+
+        try (FileOutputStream out = new FileOutputStream(file)) {
+            out.write(data);
+        }
+
+        try {
+            for (byte tag : new byte[]{OpSHA1._TAG, OpSHA256._TAG, OpRIPEMD160._TAG, OpKECCAK256._TAG}) {
+                OpCrypto op = (OpCrypto) OpUnary.getInstance(tag);
+                byte[] expected = op.call(data);
+
+                assertArrayEquals(op._TAG_NAME(), expected, op.hashFd(file));
+                assertArrayEquals(op._TAG_NAME(), expected, op.hashFd(file, Long.MAX_VALUE, 1048576));
+                assertArrayEquals(op._TAG_NAME(), expected, op.hashFd(file, 0, 1048576));
+            }
+        } finally {
+            file.delete();
+        }
+    }
+
     @Test
     public void testAppend() {
         byte[] zeroes = Utils.hexToBytes("00");